@@ -0,0 +1,150 @@
+package com.arqaam.logframelab.configuration;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request factory that aborts requests still running after the deadline. Connect and read timeouts only limit
+ * each step, so an upstream sending the response slowly could otherwise hold the connection indefinitely.
+ */
+class DeadlineClientHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    private final Duration deadline;
+    private final ScheduledExecutorService scheduler;
+    /** Request being created on the thread, between postProcessHttpRequest and the end of createRequest */
+    private final ThreadLocal<HttpUriRequest> creating = new ThreadLocal<>();
+
+    DeadlineClientHttpRequestFactory(HttpClient httpClient, Duration deadline, String name) {
+        super(httpClient);
+        this.deadline = deadline;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        try {
+            ClientHttpRequest request = super.createRequest(uri, httpMethod);
+            return new DeadlineRequest(request, creating.get());
+        } finally {
+            creating.remove();
+        }
+    }
+
+    @Override
+    protected void postProcessHttpRequest(HttpUriRequest request) {
+        creating.set(request);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        scheduler.shutdownNow();
+        super.destroy();
+    }
+
+    private class DeadlineRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest delegate;
+        private final HttpUriRequest httpRequest;
+
+        private DeadlineRequest(ClientHttpRequest delegate, HttpUriRequest httpRequest) {
+            this.delegate = delegate;
+            this.httpRequest = httpRequest;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            ScheduledFuture<?> abort = scheduler.schedule(httpRequest::abort, deadline.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                return new DeadlineResponse(delegate.execute(), abort);
+            } catch (IOException | RuntimeException e) {
+                abort.cancel(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public String getMethodValue() {
+            return delegate.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+    }
+
+    /**
+     * Keeps the deadline until the body is read and the response closed
+     */
+    private static class DeadlineResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final ScheduledFuture<?> abort;
+
+        private DeadlineResponse(ClientHttpResponse delegate, ScheduledFuture<?> abort) {
+            this.delegate = delegate;
+            this.abort = abort;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            abort.cancel(false);
+            delegate.close();
+        }
+    }
+}
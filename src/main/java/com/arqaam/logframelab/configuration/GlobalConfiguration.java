@@ -5,7 +5,6 @@ import io.swagger.models.auth.In;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
-import org.springframework.web.client.RestTemplate;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
 import springfox.documentation.service.ApiInfo;
@@ -38,8 +37,4 @@ public class GlobalConfiguration {
                 .build()
                 .securitySchemes(Collections.singletonList(new ApiKey("jwtToken", HttpHeaders.AUTHORIZATION, In.HEADER.name())));
     }
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
 }
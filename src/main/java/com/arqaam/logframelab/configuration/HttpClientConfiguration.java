@@ -0,0 +1,81 @@
+package com.arqaam.logframelab.configuration;
+
+import com.arqaam.logframelab.model.properties.HttpClientProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Http clients used to call the upstream APIs. Each upstream gets its own connection pool, so a slow
+ * upstream can only use its own connections and requests to it fail once no connection is free in time.
+ * Pool usage is published as httpcomponents.httpclient.pool.* metrics tagged with the upstream name.
+ */
+@Configuration
+public class HttpClientConfiguration {
+
+    public static final String MACHINE_LEARNING = "machineLearning";
+    public static final String WORLD_BANK = "worldBank";
+
+    private final HttpClientProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public HttpClientConfiguration(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean(destroyMethod = "destroy")
+    DeadlineClientHttpRequestFactory machineLearningRequestFactory() {
+        return requestFactory(MACHINE_LEARNING, properties.getMachineLearning());
+    }
+
+    @Bean(destroyMethod = "destroy")
+    DeadlineClientHttpRequestFactory worldBankRequestFactory() {
+        return requestFactory(WORLD_BANK, properties.getWorldBank());
+    }
+
+    @Bean
+    public RestTemplate machineLearningRestTemplate(@Qualifier("machineLearningRequestFactory") DeadlineClientHttpRequestFactory requestFactory) {
+        return new RestTemplate(requestFactory);
+    }
+
+    @Bean
+    public RestTemplate worldBankRestTemplate(@Qualifier("worldBankRequestFactory") DeadlineClientHttpRequestFactory requestFactory) {
+        return new RestTemplate(requestFactory);
+    }
+
+    private DeadlineClientHttpRequestFactory requestFactory(String name, HttpClientProperties.Upstream upstream) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(upstream.getMaxConnections());
+        // Each upstream is a single host
+        connectionManager.setDefaultMaxPerRoute(upstream.getMaxConnections());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+
+        long keepAlive = upstream.getKeepAlive().toMillis();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) upstream.getConnectTimeout().toMillis())
+                        .setConnectionRequestTimeout((int) upstream.getConnectionRequestTimeout().toMillis())
+                        .setSocketTimeout((int) upstream.getReadTimeout().toMillis())
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive) : keepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+                .build();
+        return new DeadlineClientHttpRequestFactory(httpClient, upstream.getDeadline(), name);
+    }
+}
@@ -0,0 +1,49 @@
+package com.arqaam.logframelab.configuration;
+
+import com.arqaam.logframelab.util.Logging;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.core.registry.EntryRemovedEvent;
+import io.github.resilience4j.core.registry.EntryReplacedEvent;
+import io.github.resilience4j.core.registry.RegistryEventConsumer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Circuit breakers and bulkheads of the upstream APIs are configured under resilience4j.* in the properties.
+ * Their state is published as resilience4j.* metrics and in the health endpoint; this adds a count of the
+ * state transitions of each circuit breaker, and logs them.
+ */
+@Configuration
+public class ResilienceConfiguration implements Logging {
+
+    @Bean
+    public RegistryEventConsumer<CircuitBreaker> circuitBreakerTransitions(MeterRegistry meterRegistry) {
+        return new RegistryEventConsumer<CircuitBreaker>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<CircuitBreaker> event) {
+                CircuitBreaker circuitBreaker = event.getAddedEntry();
+                circuitBreaker.getEventPublisher().onStateTransition(transition -> {
+                    logger().warn("Circuit breaker {} changed from {} to {}", circuitBreaker.getName(),
+                            transition.getStateTransition().getFromState(), transition.getStateTransition().getToState());
+                    Counter.builder("logframelab.circuitbreaker.transitions")
+                            .description("State transitions of the circuit breakers")
+                            .tag("name", circuitBreaker.getName())
+                            .tag("from", transition.getStateTransition().getFromState().name())
+                            .tag("to", transition.getStateTransition().getToState().name())
+                            .register(meterRegistry).increment();
+                });
+            }
+
+            @Override
+            public void onEntryRemovedEvent(EntryRemovedEvent<CircuitBreaker> event) {
+            }
+
+            @Override
+            public void onEntryReplacedEvent(EntryReplacedEvent<CircuitBreaker> event) {
+            }
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.arqaam.logframelab.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the scheduled tasks of the application (e.g. flushing buffered counters)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
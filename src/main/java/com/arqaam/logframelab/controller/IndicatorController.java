@@ -10,6 +10,11 @@ import com.arqaam.logframelab.model.projection.CounterSectorLevel;
 import com.arqaam.logframelab.service.IndicatorService;
 import com.arqaam.logframelab.service.MachineLearningService;
 import com.arqaam.logframelab.service.StatisticService;
+import com.arqaam.logframelab.service.catalogue.ReferenceDataCache;
+import com.arqaam.logframelab.service.scan.ScanJob;
+import com.arqaam.logframelab.service.scan.ScanJobService;
+import com.arqaam.logframelab.service.template.TemplateRegistry;
+import com.arqaam.logframelab.service.worksheet.IndicatorDiffImporter;
 import com.arqaam.logframelab.util.Constants;
 import com.arqaam.logframelab.util.Logging;
 import com.arqaam.logframelab.util.Utils;
@@ -18,21 +23,25 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.io.ByteArrayOutputStream;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @CrossOrigin("*")
@@ -45,13 +54,23 @@ public class IndicatorController implements Logging {
     private final MachineLearningService machineLearningService;
     private final StatisticService statisticService;
     private final Utils utils;
+    private final TemplateRegistry templateRegistry;
+    private final ReferenceDataCache referenceDataCache;
+    private final ScanJobService scanJobService;
+    private final IndicatorDiffImporter diffImporter;
 
     public IndicatorController(IndicatorService indicatorService, MachineLearningService machineLearningService,
-                               StatisticService statisticService, Utils utils) {
+                               StatisticService statisticService, Utils utils, TemplateRegistry templateRegistry,
+                               ReferenceDataCache referenceDataCache, ScanJobService scanJobService,
+                               IndicatorDiffImporter diffImporter) {
         this.indicatorService = indicatorService;
         this.machineLearningService = machineLearningService;
         this.statisticService = statisticService;
         this.utils = utils;
+        this.templateRegistry = templateRegistry;
+        this.referenceDataCache = referenceDataCache;
+        this.scanJobService = scanJobService;
+        this.diffImporter = diffImporter;
     }
 
     @PostMapping(value = "upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -68,11 +87,57 @@ public class IndicatorController implements Logging {
            throw new WrongFileExtensionException();
         }
 
-        List<IndicatorResponse> response  = this.indicatorService.scanForIndicators(utils.retrieveTextFromDocument(file), filter);
+        List<IndicatorResponse> response  = this.indicatorService.scanForIndicators(utils.retrieveTextFromDocument(file), filter,
+                scanned -> utils.sendProgressMessage((float) (scanned * 100)));
 
         return  ResponseEntity.ok().body(response);
     }
 
+    @PostMapping(value = "upload/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "${IndicatorController.submitScanJob.value}", nickname = "submitScanJob", response = ScanJobResponse.class)
+    @ApiResponses({
+            @ApiResponse(code = 202, message = "Scan job was queued", response = ScanJobResponse.class),
+            @ApiResponse(code = 409, message = "Wrong file extension", response = Error.class),
+            @ApiResponse(code = 503, message = "Too many documents are being scanned", response = Error.class),
+            @ApiResponse(code = 500, message = "Failed to upload the file", response = Error.class)
+    })
+    public ResponseEntity<ScanJobResponse> submitScanJob(@RequestPart("file") MultipartFile file, @RequestPart("filter") FiltersDto filter) {
+        logger().info("Submitting scan of Word File. File Name: {}", file.getOriginalFilename());
+        if(!file.getOriginalFilename().toLowerCase().matches(".+(\\.docx$|\\.doc$)")){
+            logger().error("Failed to upload file since it had the wrong file extension. File Name: {}", file.getOriginalFilename());
+            throw new WrongFileExtensionException();
+        }
+        ScanJob job = scanJobService.submit(file, filter);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.getId()).toUri())
+                .body(ScanJobResponse.from(job));
+    }
+
+    @GetMapping(value = "upload/jobs/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "${IndicatorController.getScanJob.value}", nickname = "getScanJob", response = ScanJobResponse.class)
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Scan job was retrieved", response = ScanJobResponse.class),
+            @ApiResponse(code = 404, message = "Scan job not found", response = Error.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred", response = Error.class)
+    })
+    public ResponseEntity<ScanJobResponse> getScanJob(@PathVariable String id) {
+        logger().info("Retrieving scan job with id: {}", id);
+        return ResponseEntity.ok(ScanJobResponse.from(scanJobService.getJob(id)));
+    }
+
+    @GetMapping(value = "upload/jobs/{id}/result", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "${IndicatorController.getScanJobResult.value}", nickname = "getScanJobResult", response = IndicatorResponse.class, responseContainer = "List")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Indicators found in the document", response = IndicatorResponse.class, responseContainer = "List"),
+            @ApiResponse(code = 404, message = "Scan job not found", response = Error.class),
+            @ApiResponse(code = 500, message = "Failed to scan the document", response = Error.class)
+    })
+    public CompletableFuture<List<IndicatorResponse>> getScanJobResult(@PathVariable String id) {
+        logger().info("Waiting for the result of scan job with id: {}", id);
+        // Completed asynchronously, so waiting for a running job doesn't hold a servlet thread
+        return scanJobService.getJob(id).getResult();
+    }
+
     @PostMapping(value = "download", consumes = MediaType.APPLICATION_JSON_VALUE)
     @ApiOperation(value = "${IndicatorController.downloadIndicators.value}", nickname = "downloadIndicators", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
     @ApiResponses({
@@ -81,8 +146,9 @@ public class IndicatorController implements Logging {
             @ApiResponse(code = 409, message = "Failed to download indicators. It cannot be empty", response = Error.class),
             @ApiResponse(code = 500, message = "Unexpected Error", response = Error.class)
     })
-    public ResponseEntity<Resource> downloadIndicators(@RequestBody IndicatorDownloadRequest request,
-                                                       @RequestParam(value = "format", defaultValue = Constants.WORD_FILE_EXTENSION) String format) {
+    public void downloadIndicators(@RequestBody IndicatorDownloadRequest request,
+                                   @RequestParam(value = "format", defaultValue = Constants.WORD_FILE_EXTENSION) String format,
+                                   HttpServletResponse response) throws IOException {
 
         logger().info("Downloading indicators. format {}, Indicators: {}, Statements: {}", format,
                 request.getIndicators(), request.getStatements());
@@ -101,27 +167,11 @@ public class IndicatorController implements Logging {
                         return y.getStatement().equalsIgnoreCase(x.getStatement());
                     })).collect(Collectors.toList());
         }
-        ByteArrayOutputStream outputStream;
         String extension = Constants.WORD_FILE_EXTENSION;
         switch (format.toUpperCase()) {
             case Constants.XLSX_FORMAT:
-                outputStream = indicatorService.exportIndicatorsInWorksheet(request.getIndicators(), statements);
-                extension = Constants.WORKSHEET_FILE_EXTENSION;
-                statisticService.addDownloadStatistic(Constants.XLSX_FORMAT);
-                break;
             case Constants.DFID_FORMAT:
-                outputStream = indicatorService.exportIndicatorsDFIDFormat(request.getIndicators(), statements);
                 extension = Constants.WORKSHEET_FILE_EXTENSION;
-                statisticService.addDownloadStatistic(Constants.DFID_FORMAT);
-                break;
-            case Constants.PRM_FORMAT:
-                outputStream = indicatorService.exportIndicatorsPRMFormat(request.getIndicators());
-                statisticService.addDownloadStatistic(Constants.PRM_FORMAT);
-                break;
-            case Constants.WORD_FORMAT:
-            default:
-                outputStream = indicatorService.exportIndicatorsInWordFile(request.getIndicators(), statements);
-                statisticService.addDownloadStatistic(Constants.WORD_FORMAT);
                 break;
         }
 
@@ -132,36 +182,64 @@ public class IndicatorController implements Logging {
             mimeType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
             //  mimeType = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
         }
-        HttpHeaders httpHeaders = new HttpHeaders();
-        httpHeaders.set("filename", "indicators_export" + extension);
-        httpHeaders.set("Access-Control-Expose-Headers", "*");
-        httpHeaders.set("Content-Disposition", "inline; filename=\"indicators_export" +extension +"\"");
+        String exportFormat;
+        switch (format.toUpperCase()) {
+            case Constants.XLSX_FORMAT:
+            case Constants.DFID_FORMAT:
+            case Constants.PRM_FORMAT:
+                exportFormat = format.toUpperCase();
+                break;
+            default:
+                exportFormat = Constants.WORD_FORMAT;
+        }
+        if (!Constants.XLSX_FORMAT.equals(exportFormat)) {
+            // Fails before anything is written, so the error is still sent with its status
+            try {
+                templateRegistry.getBytes(TemplateRegistry.templateName(exportFormat, extension));
+            } catch (IOException e) {
+                logger().error("Failed to export the indicators since the {} template was not found", exportFormat);
+                throw new TemplateNotFoundException();
+            }
+        }
 
-        return ResponseEntity.ok().headers(httpHeaders).contentLength(outputStream.size())
-                .contentType(MediaType.parseMediaType(mimeType))
-                .body(new ByteArrayResource(outputStream.toByteArray()));
-    }
-/* This remains here in case the changes that were done end up not working. After tested, this should be removed.
-//    public void downloadIndicators(HttpServletRequest request, HttpServletResponse response, @RequestBody List<IndicatorResponse> indicators) throws IOException {
-//        ByteArrayOutputStream outputStream = indicatorService.exportIndicatorsInWordFile(indicators);
-//        if (outputStream != null) {
-//            //get the mimetype
-//            String mimeType = URLConnection.guessContentTypeFromName("indicators_export.docx");
-//            if (mimeType == null) {
-//                //unknown mimetype so set the mimetype to application/octet-stream
-//                mimeType = "application/octet-stream";
-//              //  mimeType = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
-//            }
-//            response.setContentType(mimeType);
-//            response.setHeader("filename", "indicators_export.docx");
-//            response.setHeader("Access-Control-Expose-Headers", "*");
-//            response.setHeader("Content-Disposition", String.format("inline; filename=\"indicators_export.docx\""));
-//            response.setContentLength(outputStream.size());
-//            InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
-//            FileCopyUtils.copy(inputStream, response.getOutputStream());
-//        }
+        // The document is written straight to the response without a content length, so it is sent chunked
+        // and never copied into an intermediate buffer. The headers are only set once the export starts writing,
+        // after the indicators were loaded and the template filled
+        String fileName = "indicators_export" + extension;
+        String contentType = mimeType;
+        DeferredResponseOutputStream outputStream = new DeferredResponseOutputStream(() -> {
+            response.setContentType(contentType);
+            response.setHeader("filename", fileName);
+            response.setHeader("Access-Control-Expose-Headers", "*");
+            response.setHeader("Content-Disposition", "inline; filename=\"" + fileName + "\"");
+            return response.getOutputStream();
+        });
+        try {
+            switch (exportFormat) {
+                case Constants.XLSX_FORMAT:
+                    indicatorService.exportIndicatorsInWorksheet(request.getIndicators(), statements, outputStream);
+                    break;
+                case Constants.DFID_FORMAT:
+                    indicatorService.exportIndicatorsDFIDFormat(request.getIndicators(), statements, outputStream);
+                    break;
+                case Constants.PRM_FORMAT:
+                    indicatorService.exportIndicatorsPRMFormat(request.getIndicators(), outputStream);
+                    break;
+                default:
+                    indicatorService.exportIndicatorsInWordFile(request.getIndicators(), statements, outputStream);
+                    break;
+            }
+            outputStream.flush();
+        } catch (IOException | RuntimeException e) {
+            // Drops the headers and the bytes still buffered, so the error handler can send the error instead.
+            // Once committed, the exception aborts the chunked response and the client sees it as incomplete
+            if (!response.isCommitted()) {
+                response.reset();
+            }
+            throw e;
+        }
+        statisticService.addDownloadStatistic(exportFormat);
     }
-*/
 
     @PostMapping(value = "import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     @ApiOperation(value = "${IndicatorController.importIndicatorFile.value}", nickname = "importIndicatorFile", response = IndicatorResponse.class, responseContainer = "List")
@@ -180,15 +258,40 @@ public class IndicatorController implements Logging {
         return ResponseEntity.ok(indicatorService.importIndicators(file));
     }
 
+    @PostMapping(value = "import/diff", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "${IndicatorController.importIndicatorChanges.value}", nickname = "importIndicatorChanges", response = ImportSummary.class)
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Changes of the indicators were imported", response = ImportSummary.class),
+            @ApiResponse(code = 409, message = "Wrong file extension", response = Error.class),
+            @ApiResponse(code = 500, message = "Failed to import indicators", response = Error.class)
+    })
+    public ResponseEntity<ImportSummary> importIndicatorChanges(@RequestParam("file") MultipartFile file,
+                                                                @RequestParam(value = "removeMissing", defaultValue = "false") boolean removeMissing) {
+        logger().info("Import the changes of Indicators from a worksheet File. File Name: {}, remove missing: {}",
+                file.getOriginalFilename(), removeMissing);
+        if(!file.getOriginalFilename().endsWith(Constants.WORKSHEET_FILE_EXTENSION)){
+            logger().error("Failed to upload file since it had the wrong file extension. File Name: {}", file.getOriginalFilename());
+            throw new WrongFileExtensionException();
+        }
+        return ResponseEntity.ok(diffImporter.importChanges(file, removeMissing));
+    }
+
     @GetMapping("filters")
     @ApiOperation(value = "${IndicatorController.getFilters.value}", nickname = "getFilters", response = FiltersDto.class)
     @ApiResponses({
             @ApiResponse(code = 200, message = "Retrieved filters", response = FiltersDto.class),
+            @ApiResponse(code = 304, message = "Filters didn't change since the version in If-None-Match"),
             @ApiResponse(code = 500, message = "Unexpected error occurred", response = Error.class)
     })
-    public ResponseEntity<FiltersDto> getFilters(@RequestParam(value = "all", defaultValue = "0") String getAll ) {
+    public ResponseEntity<FiltersDto> getFilters(@RequestParam(value = "all", defaultValue = "0") String getAll, WebRequest request) {
         logger().info("Retrieving filters. All: {}", getAll);
-        return ResponseEntity.ok(indicatorService.getFilters(getAll.equalsIgnoreCase("1")));
+        boolean all = getAll.equalsIgnoreCase("1");
+        ReferenceDataCache.Entry<FiltersDto> filters = referenceDataCache.get(all ? "filters-all" : "filters",
+                () -> indicatorService.getFilters(all));
+        if (request.checkNotModified(filters.getETag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(filters.getETag()).body(filters.getValue());
     }
 
 
@@ -224,7 +327,7 @@ public class IndicatorController implements Logging {
     public ResponseEntity<Resource> getTemplate(@PathVariable(value = "name") String name) {
 
         logger().info("Retrieving template with name {}", name);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] template;
         String extension = Constants.WORD_FILE_EXTENSION;
         name = name.toUpperCase();
 
@@ -236,7 +339,7 @@ public class IndicatorController implements Logging {
         }
 
         try {
-            outputStream.write(new ClassPathResource(name+"_Template"+ extension).getInputStream().readAllBytes());
+            template = templateRegistry.getBytes(TemplateRegistry.templateName(name, extension));
         } catch (IOException e) {
             logger().error("Failed to retrieve template since it was not found with name: {} and extension: {}", name, extension);
             throw new TemplateNotFoundException();
@@ -255,9 +358,9 @@ public class IndicatorController implements Logging {
         httpHeaders.set("Access-Control-Expose-Headers", "*");
         httpHeaders.set("Content-Disposition", "inline; filename=\""+ fileName +"\"");
 
-        return ResponseEntity.ok().headers(httpHeaders).contentLength(outputStream.size())
+        return ResponseEntity.ok().headers(httpHeaders).contentLength(template.length)
                 .contentType(MediaType.parseMediaType(mimeType))
-                .body(new ByteArrayResource(outputStream.toByteArray()));
+                .body(new ByteArrayResource(template));
     }
 
     @GetMapping("total-number")
@@ -281,4 +384,52 @@ public class IndicatorController implements Logging {
         logger().info("Retrieving the count of indicators per level and sector");
         return ResponseEntity.ok(indicatorService.getIndicatorsByLevelAndSector());
     }
+
+    /**
+     * Output stream that only opens the stream it writes to, and thus commits the response, on the first write
+     */
+    private static final class DeferredResponseOutputStream extends OutputStream {
+
+        private final ResponseStreamOpener opener;
+        private OutputStream target;
+
+        private DeferredResponseOutputStream(ResponseStreamOpener opener) {
+            this.opener = opener;
+        }
+
+        private OutputStream target() throws IOException {
+            if (target == null) {
+                target = opener.open();
+            }
+            return target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The servlet container closes the response stream
+            flush();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseStreamOpener {
+        OutputStream open() throws IOException;
+    }
 }
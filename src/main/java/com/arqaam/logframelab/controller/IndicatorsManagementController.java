@@ -5,7 +5,9 @@ import com.arqaam.logframelab.controller.dto.IndicatorRequestDto;
 import com.arqaam.logframelab.controller.dto.IndicatorsRequestDto;
 import com.arqaam.logframelab.exception.IndicatorNotFoundException;
 import com.arqaam.logframelab.model.Error;
+import com.arqaam.logframelab.model.ImportSummary;
 import com.arqaam.logframelab.model.IndicatorResponse;
+import com.arqaam.logframelab.model.NearDuplicate;
 import com.arqaam.logframelab.model.persistence.Indicator;
 import com.arqaam.logframelab.service.IndicatorService;
 import com.arqaam.logframelab.service.IndicatorsManagementService;
@@ -19,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
+import java.util.List;
 import java.util.Optional;
 
 @CrossOrigin(origins = "*")
@@ -91,6 +94,16 @@ public class IndicatorsManagementController implements Logging {
     return ResponseEntity.ok(indicatorsManagementService.saveIndicator(request));
   }
 
+  @PostMapping(value = "near-duplicates", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+  @ApiOperation(value = "${IndicatorManagementController.getNearDuplicates.value}", nickname = "getNearDuplicates",
+          authorizations = { @Authorization(value="jwtToken") })
+  @ApiResponses({
+          @ApiResponse(code = 200, message = "Near duplicates were retrieved", response = NearDuplicate.class, responseContainer = "List"),
+  })
+  public ResponseEntity<List<NearDuplicate>> getNearDuplicates(@RequestBody IndicatorRequestDto request) {
+    return ResponseEntity.ok(indicatorsManagementService.getNearDuplicates(request));
+  }
+
   @DeleteMapping(value = "{id}")
   @ApiOperation(value = "${IndicatorManagementController.deleteIndicator.value}", nickname = "deleteIndicator", authorizations = { @Authorization(value="jwtToken") })
   @ApiResponses({
@@ -107,12 +120,11 @@ public class IndicatorsManagementController implements Logging {
   @PostMapping(value = "upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
   @ApiOperation(value = "${IndicatorManagementController.uploadIndicatorFile.value}", nickname = "uploadIndicatorFile", authorizations = { @Authorization(value="jwtToken") })
   @ApiResponses({
-          @ApiResponse(code = 200, message = "Uploads temporary indicators"),
+          @ApiResponse(code = 200, message = "Uploads temporary indicators", response = ImportSummary.class),
           @ApiResponse(code = 500, message = "Failed to open worksheet", response = Error.class),
   })
-  public ResponseEntity<?> uploadIndicatorFile(@RequestParam("file") MultipartFile file) {
-    indicatorsManagementService.processFileWithTempIndicators(file);
-    return ResponseEntity.ok().build();
+  public ResponseEntity<ImportSummary> uploadIndicatorFile(@RequestParam("file") MultipartFile file) {
+    return ResponseEntity.ok(indicatorsManagementService.processFileWithTempIndicators(file));
   }
 
   @GetMapping(value = "approvals", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -1,6 +1,5 @@
 package com.arqaam.logframelab.controller;
 
-import com.arqaam.logframelab.exception.IndicatorNotFoundException;
 import com.arqaam.logframelab.model.Error;
 import com.arqaam.logframelab.model.MLStatementQualityRequest;
 import com.arqaam.logframelab.model.MLStatementResponse;
@@ -10,9 +9,12 @@ import com.arqaam.logframelab.model.MLStatementResponse.MLStatement;
 import com.arqaam.logframelab.model.persistence.Indicator;
 import com.arqaam.logframelab.service.IndicatorService;
 import com.arqaam.logframelab.service.MachineLearningService;
+import com.arqaam.logframelab.service.scan.ChunkedScanService;
+import com.arqaam.logframelab.service.similarity.SimilarityService;
 import com.arqaam.logframelab.util.Logging;
 import com.arqaam.logframelab.util.Utils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -22,7 +24,10 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -32,6 +37,8 @@ import java.util.stream.Collectors;
 @Api(tags = "Machine Learning")
 public class MachineLearningController implements Logging {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     private IndicatorService indicatorService;
 
@@ -41,6 +48,15 @@ public class MachineLearningController implements Logging {
     @Autowired
     private Utils utils;
 
+    @Autowired
+    private SimilarityService similarityService;
+
+    @Autowired
+    private ChunkedScanService chunkedScanService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping(value = "similarity", produces = MediaType.APPLICATION_JSON_VALUE)
     @ApiOperation(value = "${MachineLearningController.getSimilarIndicators.value}", nickname = "getSimilarIndicators",
             response = SimilarityResponse.class, responseContainer = "List")
@@ -50,24 +66,34 @@ public class MachineLearningController implements Logging {
     })
     public ResponseEntity<List<SimilarityResponse>> getSimilarIndicators(@RequestParam Double threshold) {
         logger().info("Starting to retrieve similar indicators with threshold {}", threshold);
-        List<SimilarityResponse> response = new ArrayList<>();
-        List<Indicator> indicatorUnchecked = indicatorService.getIndicatorsWithSimilarity(false);
-        List<Long> indicatorsIds;
-        for(Indicator indicator : indicatorUnchecked) {
-            indicatorsIds = machineLearningService.getSimilarIndicators(indicator.getName(), threshold);
-            if(indicatorsIds.isEmpty()) {
-                response.add(new SimilarityResponse(indicator, Collections.emptyList()));
-            } else {
-                try {
-                    response.add(new SimilarityResponse(indicator, indicatorService.getIndicatorWithId(indicatorsIds)));
-                }catch(IndicatorNotFoundException e) {
-                    response.add(new SimilarityResponse(indicator, Collections.emptyList()));
-                    logger().warn("Indicators were not found: {}", indicatorsIds);
-                }
-            }
-        }
+        return ResponseEntity.ok(similarityService.getSimilarIndicators(threshold));
+    }
 
-        return ResponseEntity.ok(response);
+    @GetMapping(value = "similarity", produces = NDJSON_VALUE)
+    @ApiOperation(value = "${MachineLearningController.streamSimilarIndicators.value}", nickname = "streamSimilarIndicators",
+            response = SimilarityResponse.class, responseContainer = "List")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Similar indicators are sent one per line as they are checked", response = SimilarityResponse.class, responseContainer = "List"),
+            @ApiResponse(code = 500, message = "Unexpected error occurred", response = Error.class)
+    })
+    public ResponseEntity<StreamingResponseBody> streamSimilarIndicators(@RequestParam Double threshold) {
+        logger().info("Starting to stream similar indicators with threshold {}", threshold);
+        StreamingResponseBody body = outputStream -> {
+            try {
+                similarityService.streamSimilarIndicators(threshold, similarity -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(similarity));
+                        outputStream.write('\n');
+                        outputStream.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
     }
 
     @PostMapping(value = "indicators", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -80,7 +106,7 @@ public class MachineLearningController implements Logging {
         logger().info("Starting the scan for indicators in the text");
         String text = utils.retrieveTextFromDocument(file);
         logger().info("Text was retrieved from the document");
-        List<MLScanIndicator> mlIndicators = machineLearningService.scanForIndicators(text, null);
+        List<MLScanIndicator> mlIndicators = chunkedScanService.scan(text, null);
         logger().info("Retrieved the indicators and its score found in the text");
         List<Indicator> indicatorList = indicatorService.getIndicatorWithId(mlIndicators.stream().map(MLScanIndicator::getId).collect(Collectors.toList()));
         for (int i = 0; i < indicatorList.size(); i++) {
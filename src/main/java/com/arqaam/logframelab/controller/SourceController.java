@@ -5,15 +5,18 @@ import com.arqaam.logframelab.model.persistence.Source;
 import com.arqaam.logframelab.model.persistence.Statistic;
 import com.arqaam.logframelab.service.SourceService;
 import com.arqaam.logframelab.service.StatisticService;
+import com.arqaam.logframelab.service.catalogue.ReferenceDataCache;
 import com.arqaam.logframelab.util.Logging;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -25,16 +28,23 @@ public class SourceController implements Logging {
 
     @Autowired
     private SourceService sourceService;
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
 
     @GetMapping(value = "", produces = MediaType.APPLICATION_JSON_VALUE)
     @ApiOperation(value = "${SourceController.retrieveAllSources.value}", nickname = "retrieveAllSources", response = Source.class, responseContainer = "List")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Sources were retrieved", response = Source.class, responseContainer = "List"),
+            @ApiResponse(code = 304, message = "Sources didn't change since the version in If-None-Match"),
             @ApiResponse(code = 500, message = "Unexpected error occurred", response = Error.class)
     })
-    public ResponseEntity<List<Source>> retrieveAllSources() {
+    public ResponseEntity<List<Source>> retrieveAllSources(WebRequest request) {
         logger().info("Retrieving all sources");
-        return ResponseEntity.ok(sourceService.getSources());
+        ReferenceDataCache.Entry<List<Source>> sources = referenceDataCache.get("sources", sourceService::getSources);
+        if (request.checkNotModified(sources.getETag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(sources.getETag()).body(sources.getValue());
     }
 
     @GetMapping(value = "{id}", produces = MediaType.APPLICATION_JSON_VALUE)
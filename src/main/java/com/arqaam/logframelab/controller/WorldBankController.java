@@ -10,10 +10,12 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +26,9 @@ import java.util.Map;
 @Api(tags = "World Bank Data")
 public class WorldBankController implements Logging {
 
+    /** The countries rarely change, so clients may keep them for a day */
+    private static final Duration COUNTRIES_MAX_AGE = Duration.ofDays(1);
+
     @Autowired
     private IndicatorService indicatorService;
 
@@ -38,7 +43,8 @@ public class WorldBankController implements Logging {
     })
     public ResponseEntity<Map<String, String>> retrieveCountries() {
         logger().info("Retrieving World Bank available countries");
-        return ResponseEntity.ok(worldBankService.getCountries());
+        return ResponseEntity.ok().cacheControl(CacheControl.maxAge(COUNTRIES_MAX_AGE).cachePublic())
+                .body(worldBankService.getCountries());
     }
 
     @GetMapping(value = "values", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -56,5 +62,20 @@ public class WorldBankController implements Logging {
         return ResponseEntity.ok(worldBankService.getIndicatorValues(indicatorService.getIndicator(indicatorId), countryId, years));
     }
 
+    @GetMapping(value = "values/bulk", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "${WorldBankController.retrieveIndicatorsValues.value}", nickname = "retrieveIndicatorsValues", response = HashMap.class)
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Values for the indicators were retrieved successfully. Indicators without values are left out", response = HashMap.class),
+            @ApiResponse(code = 404, message = "None of the indicators were found", response = Error.class),
+            @ApiResponse(code = 500, message = "Unexpected error occurred", response = Error.class)
+    })
+    public ResponseEntity<Map<Long, List<WorldBankIndicator>>> retrieveIndicatorsValues(@RequestParam List<Long> indicatorIds,
+                                                                                       @RequestParam String countryId,
+                                                                                       @RequestParam(required = false) List<Integer> years) {
+
+        logger().info("Retrieving world bank data with indicatorIds: {}, countryId: {}, years: {}", indicatorIds, countryId, years);
+        return ResponseEntity.ok(worldBankService.getIndicatorsValues(indicatorService.getIndicatorWithId(indicatorIds), countryId, years));
+    }
+
 
 }
@@ -0,0 +1,5 @@
+package com.arqaam.logframelab.exception;
+
+public class ScanJobNotFoundException extends RuntimeException {
+    public ScanJobNotFoundException() {super();}
+}
@@ -0,0 +1,5 @@
+package com.arqaam.logframelab.exception;
+
+public class ScanQueueFullException extends RuntimeException {
+    public ScanQueueFullException() {super();}
+}
@@ -0,0 +1,30 @@
+package com.arqaam.logframelab.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number of indicators of an uploaded file that were inserted, updated, skipped as duplicates or unchanged,
+ * and removed since they were missing from the file
+ */
+@Data
+@NoArgsConstructor
+public class ImportSummary {
+
+    private int inserted;
+    private int updated;
+    private int skipped;
+    private int removed;
+    /** Names of the inserted indicators that are near duplicates of approved ones, with the ids of those */
+    private Map<String, List<Long>> nearDuplicates = new LinkedHashMap<>();
+
+    public ImportSummary(int inserted, int updated, int skipped) {
+        this.inserted = inserted;
+        this.updated = updated;
+        this.skipped = skipped;
+    }
+}
@@ -0,0 +1,15 @@
+package com.arqaam.logframelab.model;
+
+import com.arqaam.logframelab.model.persistence.Indicator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearDuplicate {
+    private Indicator indicator;
+    /** Estimated similarity of the names and descriptions, between 0 and 1 */
+    private Double similarity;
+}
@@ -0,0 +1,29 @@
+package com.arqaam.logframelab.model;
+
+import com.arqaam.logframelab.service.scan.ScanJob;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanJobResponse {
+    private String id;
+    private ScanJob.Status status;
+    private Integer progress;
+    private List<IndicatorResponse> indicators;
+
+    public static ScanJobResponse from(ScanJob job) {
+        ScanJobResponse response = ScanJobResponse.builder().id(job.getId()).status(job.getStatus())
+                .progress(job.getProgress()).build();
+        if (job.getStatus() == ScanJob.Status.DONE) {
+            response.setIndicators(job.getResult().join());
+        }
+        return response;
+    }
+}
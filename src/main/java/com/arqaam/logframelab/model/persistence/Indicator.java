@@ -1,6 +1,8 @@
 package com.arqaam.logframelab.model.persistence;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -11,14 +13,23 @@ import java.util.Set;
 @Entity(name = "Indicator")
 @Table(name = "IND_INDICATOR")
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode
 public class Indicator {
 
+    /** Allocated in blocks from the ID_GENERATOR table, which allows the inserts of imports to be batched */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "indicator_id")
+    @GenericGenerator(name = "indicator_id", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+            @Parameter(name = "table_name", value = "ID_GENERATOR"),
+            @Parameter(name = "segment_column_name", value = "SEQUENCE_NAME"),
+            @Parameter(name = "value_column_name", value = "NEXT_VAL"),
+            @Parameter(name = "segment_value", value = "IND_INDICATOR"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Long id;
 
     @Column(name = "NAME", length = 350)
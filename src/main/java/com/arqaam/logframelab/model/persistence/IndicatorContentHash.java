@@ -0,0 +1,28 @@
+package com.arqaam.logframelab.model.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Hash of the content of an indicator as last imported from the master worksheet, by its normalized name
+ */
+@Entity(name = "IndicatorContentHash")
+@Table(name = "INDICATOR_CONTENT_HASH")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndicatorContentHash {
+
+    @Id
+    @Column(name = "INDICATOR_ID")
+    private Long indicatorId;
+
+    @Column(name = "NORMALIZED_NAME", length = 350, nullable = false)
+    private String normalizedName;
+
+    @Column(name = "CONTENT_HASH", length = 64, nullable = false)
+    private String contentHash;
+}
@@ -0,0 +1,39 @@
+package com.arqaam.logframelab.model.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Similarity between an indicator and another one, as computed by the Machine Learning API
+ */
+@Entity(name = "IndicatorSimilarity")
+@Table(name = "INDICATOR_SIMILARITY")
+@IdClass(IndicatorSimilarity.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndicatorSimilarity {
+
+    @Id
+    @Column(name = "INDICATOR_ID")
+    private Long indicatorId;
+
+    @Id
+    @Column(name = "SIMILAR_ID")
+    private Long similarId;
+
+    @Column(name = "SCORE", nullable = false)
+    private Double score;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long indicatorId;
+        private Long similarId;
+    }
+}
@@ -0,0 +1,29 @@
+package com.arqaam.logframelab.model.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Name the similarity of an indicator was computed with. The similarity is stale when the name changed
+ */
+@Entity(name = "IndicatorSimilarityState")
+@Table(name = "INDICATOR_SIMILARITY_STATE")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndicatorSimilarityState {
+
+    @Id
+    @Column(name = "INDICATOR_ID")
+    private Long indicatorId;
+
+    @Column(name = "NAME", length = 350)
+    private String name;
+
+    @Column(name = "COMPUTED_AT", nullable = false)
+    private Date computedAt;
+}
@@ -0,0 +1,44 @@
+package com.arqaam.logframelab.model.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Values of a World Bank indicator for a country in every year, as last fetched from the World Bank API
+ */
+@Entity(name = "WorldBankSeries")
+@Table(name = "WORLD_BANK_SERIES")
+@IdClass(WorldBankSeries.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorldBankSeries {
+
+    @Id
+    @Column(name = "COUNTRY_ID", length = 10)
+    private String countryId;
+
+    @Id
+    @Column(name = "INDICATOR_CODE", length = 100)
+    private String indicatorCode;
+
+    /** JSON object of year to value */
+    @Column(name = "SERIES", nullable = false, columnDefinition = "TEXT")
+    private String series;
+
+    @Column(name = "FETCHED_AT", nullable = false)
+    private Date fetchedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String countryId;
+        private String indicatorCode;
+    }
+}
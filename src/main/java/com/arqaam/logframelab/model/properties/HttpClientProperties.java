@@ -0,0 +1,32 @@
+package com.arqaam.logframelab.model.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties("logframelab.http-client")
+public class HttpClientProperties {
+
+    private Upstream machineLearning = new Upstream();
+    private Upstream worldBank = new Upstream();
+
+    @Data
+    public static class Upstream {
+
+        /** Connections kept open to the upstream, requests beyond it wait for a free one */
+        private Integer maxConnections = 20;
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        /** Time to wait for a free connection of the pool */
+        private Duration connectionRequestTimeout = Duration.ofSeconds(2);
+        /** Time to wait for data on an open connection */
+        private Duration readTimeout = Duration.ofSeconds(30);
+        /** Time limit of the whole request, from sending it to reading the response */
+        private Duration deadline = Duration.ofSeconds(60);
+        /** Time an idle connection is kept open when the upstream doesn't say */
+        private Duration keepAlive = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,9 @@
+package com.arqaam.logframelab.repository;
+
+import com.arqaam.logframelab.model.persistence.IndicatorContentHash;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IndicatorContentHashRepository extends JpaRepository<IndicatorContentHash, Long> {
+}
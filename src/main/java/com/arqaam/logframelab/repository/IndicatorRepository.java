@@ -3,7 +3,6 @@ package com.arqaam.logframelab.repository;
 import com.arqaam.logframelab.model.persistence.Indicator;
 import com.arqaam.logframelab.model.projection.CounterSectorLevel;
 import com.arqaam.logframelab.model.projection.IndicatorFilters;
-import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -13,6 +12,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
 import java.util.List;
@@ -25,6 +25,14 @@ public interface IndicatorRepository extends JpaRepository<Indicator, Long>, Jpa
 
   List<Indicator> findAllByTempEquals(Boolean temp);
 
+  /**
+   * Retrieves all the approved indicators with level, sources, SDG and CRS codes fetched in a single query
+   * @return List of approved indicators ordered by id
+   */
+  @Query(value = "select distinct ind from Indicator ind left join fetch ind.level left join fetch ind.source "
+      + "left join fetch ind.sdgCode left join fetch ind.crsCode where ind.temp = false order by ind.id")
+  List<Indicator> findAllApprovedWithAssociations();
+
   /**
    * Searches for the top 50 indicators with similarity-check given by argument
    * @param checked Status of similarity-check
@@ -34,6 +42,9 @@ public interface IndicatorRepository extends JpaRepository<Indicator, Long>, Jpa
 
   List<Indicator> findAllByIdIn(Collection<Long> id);
 
+  @Query(value = "select ind.id from Indicator ind where ind.id in :ids")
+  List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
   @Query(value = "select * from IND_INDICATOR where SECTOR in (:sector)", nativeQuery = true)
   List<Indicator> getIndicatorsBySectors(@Param("sector") List<String> sectorsList);
 
@@ -68,8 +79,16 @@ public interface IndicatorRepository extends JpaRepository<Indicator, Long>, Jpa
   @Query(value = "UPDATE Indicator ind set ind.temp = false WHERE ind.id in :ids")
   void updateToApproved(@Param("ids") Collection<Long> ids);
 
-  @Override
-  <S extends Indicator> boolean exists(Example<S> example);
+  /**
+   * Adds the amount to the number of times the indicators were downloaded
+   * @param ids Ids of the indicators
+   * @param amount Number of downloads to be added
+   * @return Number of indicators updated
+   */
+  @Transactional
+  @Modifying
+  @Query(value = "UPDATE Indicator ind set ind.timesDownloaded = ind.timesDownloaded + :amount WHERE ind.id in :ids")
+  int incrementTimesDownloaded(@Param("ids") Collection<Long> ids, @Param("amount") Long amount);
 
   /**
    * Returns all indicators that have a name in the iterable
@@ -78,6 +97,14 @@ public interface IndicatorRepository extends JpaRepository<Indicator, Long>, Jpa
    */
   List<Indicator> findAllByNameIn(Iterable<String> names);
 
+  /**
+   * Returns all indicators whose name, trimmed and in lower case, is in the collection
+   * @param names Normalized names to be searched
+   * @return Indicators that have the names searched
+   */
+  @Query(value = "SELECT ind FROM Indicator ind WHERE LOWER(TRIM(ind.name)) IN :names")
+  List<Indicator> findAllByNormalizedNameIn(@Param("names") Collection<String> names);
+
   /**
    * Retrieves indicator with correspondent name
    * @param name Name of the indicator to be searched
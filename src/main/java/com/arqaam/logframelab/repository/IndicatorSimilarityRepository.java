@@ -0,0 +1,25 @@
+package com.arqaam.logframelab.repository;
+
+import com.arqaam.logframelab.model.persistence.IndicatorSimilarity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface IndicatorSimilarityRepository extends JpaRepository<IndicatorSimilarity, IndicatorSimilarity.Key> {
+
+    List<IndicatorSimilarity> findAllByIndicatorIdInAndScoreGreaterThanEqualOrderByScoreDesc(Collection<Long> indicatorIds, Double score);
+
+    @Modifying
+    @Query("DELETE FROM IndicatorSimilarity s WHERE s.indicatorId = :indicatorId")
+    void deleteAllByIndicatorId(@Param("indicatorId") Long indicatorId);
+
+    @Modifying
+    @Query("DELETE FROM IndicatorSimilarity s WHERE s.similarId = :similarId")
+    void deleteAllBySimilarId(@Param("similarId") Long similarId);
+}
@@ -0,0 +1,24 @@
+package com.arqaam.logframelab.repository;
+
+import com.arqaam.logframelab.model.persistence.IndicatorSimilarityState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface IndicatorSimilarityStateRepository extends JpaRepository<IndicatorSimilarityState, Long> {
+
+    /**
+     * Retrieves the indicators whose similar indicators were never computed or were computed for a different name
+     * @param afterId Only indicators with a greater id are returned
+     * @param limit Maximum number of ids
+     * @return Ids in ascending order
+     */
+    @Query(value = "SELECT ind.ID FROM IND_INDICATOR ind LEFT JOIN INDICATOR_SIMILARITY_STATE st ON st.INDICATOR_ID = ind.ID "
+            + "WHERE ind.ID > :afterId AND (st.INDICATOR_ID IS NULL OR COALESCE(st.NAME, '') <> COALESCE(ind.NAME, '')) "
+            + "ORDER BY ind.ID LIMIT :limit", nativeQuery = true)
+    List<Number> findStaleIndicatorIds(@Param("afterId") Long afterId, @Param("limit") Integer limit);
+}
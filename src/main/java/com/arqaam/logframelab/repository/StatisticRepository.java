@@ -2,7 +2,11 @@ package com.arqaam.logframelab.repository;
 
 import com.arqaam.logframelab.model.persistence.Statistic;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.Optional;
@@ -11,4 +15,16 @@ import java.util.Optional;
 public interface StatisticRepository extends JpaRepository<Statistic, String> {
 
     Optional<Statistic> findByDate(Date date);
+
+    /**
+     * Adds the downloads to the statistic of the date
+     * @return Number of statistics updated, 0 if there isn't one for the date
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE STATISTIC s set s.downloadWordTemplate = s.downloadWordTemplate + :word, "
+            + "s.downloadDFIDTemplate = s.downloadDFIDTemplate + :dfid, s.downloadXLSXTemplate = s.downloadXLSXTemplate + :xlsx, "
+            + "s.downloadPRMTemplate = s.downloadPRMTemplate + :prm WHERE s.date = :date")
+    int incrementDownloads(@Param("date") Date date, @Param("word") Integer word, @Param("dfid") Integer dfid,
+                           @Param("xlsx") Integer xlsx, @Param("prm") Integer prm);
 }
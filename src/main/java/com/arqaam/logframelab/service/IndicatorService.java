@@ -11,6 +11,16 @@ import com.arqaam.logframelab.model.persistence.*;
 import com.arqaam.logframelab.model.projection.CounterSectorLevel;
 import com.arqaam.logframelab.model.projection.IndicatorFilters;
 import com.arqaam.logframelab.repository.*;
+import com.arqaam.logframelab.service.catalogue.CatalogueChangedEvent;
+import com.arqaam.logframelab.service.catalogue.CatalogueSnapshot;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.service.catalogue.IndicatorFilter;
+import com.arqaam.logframelab.service.counter.IndicatorDownloadCounter;
+import com.arqaam.logframelab.service.scan.ChunkedScanService;
+import com.arqaam.logframelab.service.template.TemplateRegistry;
+import com.arqaam.logframelab.service.worksheet.IndicatorBatchWriter;
+import com.arqaam.logframelab.service.worksheet.WorksheetReader;
+import com.arqaam.logframelab.service.worksheet.WorksheetText;
 import com.arqaam.logframelab.util.Constants;
 import com.arqaam.logframelab.util.DocManipulationUtil;
 import com.arqaam.logframelab.util.Logging;
@@ -18,14 +28,16 @@ import com.arqaam.logframelab.util.Utils;
 import org.apache.logging.log4j.util.Strings;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xwpf.usermodel.*;
 import org.apache.xmlbeans.XmlCursor;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STBorder;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
@@ -34,7 +46,12 @@ import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Predicate;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.DoubleConsumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static java.util.Objects.isNull;
@@ -50,26 +67,44 @@ public class IndicatorService implements Logging {
   private static final Integer TOTAL_PERCENTAGE = 100;
   private static final Integer TOTAL_PERCENTAGE_OF_SCANNING = 70;
   private static final Integer TOTAL_PERCENTAGE_OF_SMALL_TASKS = 5;
+  /** Number of rows kept in memory while writing a worksheet */
+  private static final int WORKSHEET_ROW_WINDOW = 100;
+  /** Widest column allowed by Excel, in characters */
+  private static final int MAX_COLUMN_WIDTH_CHARS = 255;
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
   private final IndicatorRepository indicatorRepository;
 
   private final LevelRepository levelRepository;
   private final SourceRepository sourceRepository;
   private final SDGCodeRepository sdgCodeRepository;
   private final CRSCodeRepository crsCodeRepository;
-  private final MachineLearningService machineLearningService;
+  private final ChunkedScanService chunkedScanService;
+  private final IndicatorCatalogue indicatorCatalogue;
+  private final ApplicationEventPublisher eventPublisher;
+  private final TemplateRegistry templateRegistry;
+  private final IndicatorDownloadCounter downloadCounter;
+  private final IndicatorBatchWriter batchWriter;
 
   private final Utils utils;
 
   public IndicatorService(IndicatorRepository indicatorRepository, LevelRepository levelRepository,
                           SourceRepository sourceRepository, SDGCodeRepository sdgCodeRepository,
-                          CRSCodeRepository crsCodeRepository, MachineLearningService machineLearningService, Utils utils) {
+                          CRSCodeRepository crsCodeRepository, ChunkedScanService chunkedScanService, Utils utils,
+                          IndicatorCatalogue indicatorCatalogue, ApplicationEventPublisher eventPublisher,
+                          TemplateRegistry templateRegistry, IndicatorDownloadCounter downloadCounter,
+                          IndicatorBatchWriter batchWriter) {
     this.indicatorRepository = indicatorRepository;
     this.levelRepository = levelRepository;
     this.sourceRepository = sourceRepository;
     this.sdgCodeRepository = sdgCodeRepository;
     this.crsCodeRepository = crsCodeRepository;
-      this.machineLearningService = machineLearningService;
+      this.chunkedScanService = chunkedScanService;
       this.utils = utils;
+      this.indicatorCatalogue = indicatorCatalogue;
+      this.eventPublisher = eventPublisher;
+      this.templateRegistry = templateRegistry;
+      this.downloadCounter = downloadCounter;
+      this.batchWriter = batchWriter;
   }
 
   /**
@@ -148,77 +183,6 @@ public class IndicatorService implements Logging {
     return result;
   }*/
 
-    /**
-     * Search for indicators keywords in the given text and return the found indicators
-     * @param text Text to be searched
-     * @param maxIndicatorLength Max number of words to be searched at the same time (Its the size of the biggest keyword)
-     * @param progress Progress value to be sent through the web socket
-     * @param indicatorsList List of indicators to be searched
-     * @return Map of the with the indicator id as key and indicator as value
-     */
-  /*protected Map<Long, Indicator> searchForIndicatorsInText(String text, Integer maxIndicatorLength, Integer progress, List<Indicator> indicatorsList){
-      utils.sendProgressMessage(progress+=TOTAL_PERCENTAGE_OF_SMALL_TASKS);
-      Map<Long, Indicator> mapResult = new HashMap<>();
-      List<String> wordsToScan = new ArrayList<>();
-      Matcher matcher = Pattern.compile("\\w+").matcher(text);
-      int totalMatches = 0, i = 0;
-
-      //TODO: Change to matcher function once java upgraded to 11
-      while(matcher.find()){
-          totalMatches++;
-      }
-      matcher.reset();
-
-      double fraction = (double)TOTAL_PERCENTAGE_OF_SCANNING/(double)totalMatches;
-      // Inverted of the fraction is the number of matches that it takes to reach the 1% of the TOTAL_PERCENTAGE_OF_SCANNING
-      int countUntilSend = fraction > 1 ? (int) fraction : (int) (1/fraction);
-      logger().debug("Total number of matches: {}, fraction: {}, countUntilSend: {}", totalMatches, fraction, countUntilSend);
-      while(matcher.find()){
-          i++;
-          wordsToScan.add(matcher.group());
-          if (wordsToScan.size() == maxIndicatorLength) {
-              // Count until the inverted of the fraction
-              if(i==countUntilSend){
-                  // Send progress value through the web socket(it always increase only by 1%)
-                  utils.sendProgressMessage(progress++);
-                  // Restart the counter to reach the fraction value
-                  i = 0;
-              }
-              checkIndicators(wordsToScan, indicatorsList, mapResult);
-              wordsToScan = new ArrayList<>();
-          }
-      }
-      return mapResult;
-  }*/
-  /**
-     * Fills a list of indicators that contain certain words
-     * @param wordsToScan Words to find in the indicators' keyword list
-     * @param indicators Indicators to be analyzed
-     * @param mapResult Map Indicators' Id and IndicatorResponses
-     */
-    /*protected void checkIndicators(List<String> wordsToScan, List<Indicator> indicators,
-                                   Map<Long, Indicator> mapResult) {
-        logger().debug("Check Indicators with wordsToScan: {}, indicators: {}, mapResult: {}",
-                wordsToScan, indicators, mapResult);
-        String wordsStr = wordsToScan.stream()
-                .collect(Collectors.joining(" ", " ", " "));
-        // key1 key2 key3 compared to ke,key1,key2 key3
-        for(Indicator indicator : indicators) {
-            if (indicator.getKeywordsList() != null && !indicator.getKeywordsList().isEmpty()) {
-                for(String currentKey : indicator.getKeywordsList()) {
-                    if (wordsStr.toLowerCase().contains(" " + currentKey.toLowerCase() + " ")) {
-                        // new indicator found
-                        if (mapResult.containsKey(indicator.getId())) {
-                            mapResult.get(indicator.getId()).setNumTimes(mapResult.get(indicator.getId()).getNumTimes()+1);
-                        }else {
-                            mapResult.put(indicator.getId(), indicator);
-                        }
-                    }
-                }
-            }
-        }
-    }*/
-
     /**
      * Export Indicators in a word template (.docx) file
      * @param indicatorResponses List of indicator responses to fill the template
@@ -226,47 +190,71 @@ public class IndicatorService implements Logging {
      */
     public ByteArrayOutputStream exportIndicatorsInWordFile(List<IndicatorResponse> indicatorResponses,
                                                             List<StatementResponse> statements) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         try {
-            logger().info("Starting to export the indicators to the word template. IndicatorResponses: {}", indicatorResponses);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            List<Level> levels = levelRepository.findAllByOrderByPriority();
-            List<Indicator> indicatorList = indicatorRepository.findAllById(indicatorResponses.stream()
-                    .mapToLong(IndicatorResponse::getId).boxed().collect(Collectors.toList()));
+            exportIndicatorsInWordFile(indicatorResponses, statements, outputStream);
+        } catch (IOException e) {
+            // never thrown when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return outputStream;
+    }
 
-            List<Indicator> impactIndicators = new ArrayList<>();
-            List<Indicator> outcomeIndicators = new ArrayList<>();
-            List<Indicator> outputIndicators = new ArrayList<>();
-            for (Indicator indicator : indicatorList) {
-                indicatorResponses.stream().filter(x -> x.getId() == indicator.getId()).findFirst().ifPresent(ind -> {
-                    if (!StringUtils.isEmpty(ind.getValue()))
-                        indicator.setValue(ind.getValue());
-                    if (!StringUtils.isEmpty(ind.getDate()))
-                        indicator.setDate(ind.getDate());
-                    indicator.setStatement(ind.getStatement());
-                });
+    /**
+     * Export Indicators in a word template (.docx) file, writing it to the output stream
+     * @param indicatorResponses List of indicator responses to fill the template
+     * @param outputStream Stream to which the filled template is written. It isn't closed
+     * @throws IOException If the stream can't be written to
+     */
+    public void exportIndicatorsInWordFile(List<IndicatorResponse> indicatorResponses,
+                                           List<StatementResponse> statements, OutputStream outputStream) throws IOException {
+        logger().info("Starting to export the indicators to the word template. IndicatorResponses: {}", indicatorResponses);
+        List<Level> levels = levelRepository.findAllByOrderByPriority();
+        List<Indicator> indicatorList = indicatorRepository.findAllById(indicatorResponses.stream()
+                .mapToLong(IndicatorResponse::getId).boxed().collect(Collectors.toList()));
 
-                // Can't do switch because the values aren't known before runtime
-                if (levels.get(0).equals(indicator.getLevel())) {
-                    impactIndicators.add(indicator);
-                } else if (levels.get(1).equals(indicator.getLevel())) {
-                    outcomeIndicators.add(indicator);
-                } else {
-                    outputIndicators.add(indicator);
-                }
+        List<Indicator> impactIndicators = new ArrayList<>();
+        List<Indicator> outcomeIndicators = new ArrayList<>();
+        List<Indicator> outputIndicators = new ArrayList<>();
+        for (Indicator indicator : indicatorList) {
+            indicatorResponses.stream().filter(x -> x.getId() == indicator.getId()).findFirst().ifPresent(ind -> {
+                if (!StringUtils.isEmpty(ind.getValue()))
+                    indicator.setValue(ind.getValue());
+                if (!StringUtils.isEmpty(ind.getDate()))
+                    indicator.setDate(ind.getDate());
+                indicator.setStatement(ind.getStatement());
+            });
+
+            // Can't do switch because the values aren't known before runtime
+            if (levels.get(0).equals(indicator.getLevel())) {
+                impactIndicators.add(indicator);
+            } else if (levels.get(1).equals(indicator.getLevel())) {
+                outcomeIndicators.add(indicator);
+            } else {
+                outputIndicators.add(indicator);
             }
-            List<String> impactStatements = new ArrayList<>();
-            List<String> outcomeStatements = new ArrayList<>();
-            List<String> outputStatements = new ArrayList<>();
-            for(StatementResponse statement: statements) {
-                if (levels.get(0).getName().equalsIgnoreCase(statement.getLevel())) {
-                    impactStatements.add(statement.getStatement());
-                } else if (levels.get(1).getName().equalsIgnoreCase(statement.getLevel())) {
-                    outcomeStatements.add(statement.getStatement());
-                } else {
-                    outputStatements.add(statement.getStatement());
-                }
+        }
+        List<String> impactStatements = new ArrayList<>();
+        List<String> outcomeStatements = new ArrayList<>();
+        List<String> outputStatements = new ArrayList<>();
+        for(StatementResponse statement: statements) {
+            if (levels.get(0).getName().equalsIgnoreCase(statement.getLevel())) {
+                impactStatements.add(statement.getStatement());
+            } else if (levels.get(1).getName().equalsIgnoreCase(statement.getLevel())) {
+                outcomeStatements.add(statement.getStatement());
+            } else {
+                outputStatements.add(statement.getStatement());
             }
-            XWPFDocument document = new XWPFDocument(new ClassPathResource(Constants.WORD_FORMAT+ "_Template" + Constants.WORD_FILE_EXTENSION).getInputStream());
+        }
+        XWPFDocument template;
+        try {
+            template = templateRegistry.getWordDocument(TemplateRegistry.templateName(Constants.WORD_FORMAT, Constants.WORD_FILE_EXTENSION));
+        } catch (IOException e) {
+            logger().error("Template was not Found", e);
+            throw new TemplateNotFoundException();
+        }
+        // Failures to write are left to the caller, e.g. the client closed the connection
+        try (XWPFDocument document = template) {
             XWPFTable table = document.getTableArray(0);
             Integer rowIndex = 1;
             rowIndex = fillWordTableByLevel(impactIndicators.stream().sorted(Comparator.comparing(Indicator::getStatement,
@@ -280,13 +268,8 @@ public class IndicatorService implements Logging {
                     table, rowIndex, outputStatements);
 
             document.write(outputStream);
-            document.close();
-            indicatorRepository.saveAll(indicatorList.stream().peek(x-> x.setTimesDownloaded(x.getTimesDownloaded()+1)).collect(Collectors.toList()));
-            return outputStream;
-        } catch (IOException e) {
-            logger().error("Template was not Found", e);
-            throw new TemplateNotFoundException();
         }
+        downloadCounter.increment(indicatorList);
     }
 
     /**
@@ -359,14 +342,26 @@ public class IndicatorService implements Logging {
      * @param file Worksheet file
      */
      public List<Indicator> importIndicators(MultipartFile file) {
-       return indicatorRepository.saveAll(extractIndicatorFromFile(file));
+       List<Indicator> indicators = batchWriter.saveAll(extractIndicatorFromFile(file));
+       eventPublisher.publishEvent(new CatalogueChangedEvent("indicators imported"));
+       return indicators;
     }
 
     public List<Indicator> extractIndicatorFromFile(MultipartFile file) {
       List<Level> levels = levelRepository.findAll();
-      List<Source> sources = sourceRepository.findAll();
-      List<SDGCode> sdgCodes = sdgCodeRepository.findAll();
-      List<CRSCode> crsCodes = crsCodeRepository.findAll();
+      // indexed once, so the values of every row are resolved without searching the lists
+      Map<String, Source> sources = new HashMap<>();
+      for (Source source : sourceRepository.findAll()) {
+        sources.putIfAbsent(source.getName().toLowerCase(), source);
+      }
+      Map<String, SDGCode> sdgCodes = new HashMap<>();
+      for (SDGCode sdgCode : sdgCodeRepository.findAll()) {
+        sdgCodes.put(String.valueOf(sdgCode.getId()), sdgCode);
+      }
+      Map<String, CRSCode> crsCodes = new HashMap<>();
+      for (CRSCode crsCode : crsCodeRepository.findAll()) {
+        crsCodes.put(String.valueOf(crsCode.getId()), crsCode);
+      }
 
       Map<String, Level> levelMap = new HashMap<>();
       for (Level lvl : levels){
@@ -374,61 +369,47 @@ public class IndicatorService implements Logging {
       }
 
       logger().info("Importing indicators from xlsx, name {}", file.getOriginalFilename());
-      try {
-        List<Indicator> indicatorList = new ArrayList<>();
-        Iterator<Row> iterator = new XSSFWorkbook(file.getInputStream()).getSheetAt(0).iterator();
-        int row = 0;
-        // skip the headers row
-        if (iterator.hasNext()) {
-          iterator.next();
-          row++;
-        }
-        while (iterator.hasNext()) {
-          Row currentRow = iterator.next();
-          row++;
-          try {
-             currentRow.getCell(3).getStringCellValue();
-          } catch (NullPointerException ex) {
-            continue;
+      List<Indicator> indicatorList = new ArrayList<>();
+      try (InputStream inputStream = file.getInputStream()) {
+        WorksheetReader.read(inputStream, currentRow -> {
+          int row = currentRow.getNumber();
+          // skip the headers row and the rows without a name
+          if (row == 1 || !currentRow.hasCell(3)) {
+            return;
           }
           // key words
-          String[] keys = currentRow.getCell(2, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue().toLowerCase().split(",");
+          String[] keys = currentRow.getString(2).toLowerCase().split(",");
           for (int i = 0; i < keys.length; i++) {
-            keys[i] = keys[i].trim().replaceAll("\\s+", " ");
+            keys[i] = WHITESPACE.matcher(keys[i].trim()).replaceAll(" ");
           }
-          Level level = levelMap.get(cleanText(currentRow.getCell(0, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()).toUpperCase());
+          Level level = levelMap.get(WorksheetText.clean(currentRow.getString(0)).toUpperCase());
           if (!isNull(level)) {
-            Cell crsCodeCell = currentRow.getCell(7, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-            Cell sdgCodeCell = currentRow.getCell(8, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
             Indicator indicator = Indicator.builder()
                 .level(level)
-                .sector(cleanText(currentRow.getCell(1, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()))
-                .keywords(cleanText(String.join(",", keys).replaceAll("\\s+","")))
-                .name(cleanText(currentRow.getCell(3, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()))
-                .description(cleanText(currentRow.getCell(4, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()))
-                .disaggregation(cleanText(currentRow.getCell(6, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()).equalsIgnoreCase("yes"))
-                .sourceVerification(cleanText(currentRow.getCell(9, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()))
-                .dataSource(cleanText(currentRow.getCell(10, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()))
+                .sector(WorksheetText.clean(currentRow.getString(1)))
+                .keywords(WorksheetText.clean(WHITESPACE.matcher(String.join(",", keys)).replaceAll("")))
+                .name(WorksheetText.clean(currentRow.getString(3)))
+                .description(WorksheetText.clean(currentRow.getString(4)))
+                .disaggregation(WorksheetText.clean(currentRow.getString(6)).equalsIgnoreCase("yes"))
+                .sourceVerification(WorksheetText.clean(currentRow.getString(9)))
+                .dataSource(WorksheetText.clean(currentRow.getString(10)))
                 .build();
-            int finalRow = row;
-            if(!currentRow.getCell(5, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue().isEmpty()){
-                 indicator.setSource(Arrays.stream(cleanText(currentRow.getCell(5, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()).split(",")).map(
-                        x-> sources.stream().filter(y->y.getName().equalsIgnoreCase(x.trim())).findFirst()
-                        .orElseThrow(() -> new WorksheetInWrongFormatException("Source on row " + finalRow + " is invalid"))).collect(Collectors.toSet()));
+            if(!currentRow.getString(5).isEmpty()){
+                 indicator.setSource(Arrays.stream(WorksheetText.clean(currentRow.getString(5)).split(",")).map(
+                        x-> Optional.ofNullable(sources.get(x.trim().toLowerCase()))
+                        .orElseThrow(() -> new WorksheetInWrongFormatException("Source on row " + row + " is invalid"))).collect(Collectors.toSet()));
 
             }
-            String crsCodeContent = cleanText(crsCodeCell.getCellType().equals(CellType.NUMERIC) ? String.valueOf((int)crsCodeCell.getNumericCellValue()) : crsCodeCell.getStringCellValue());
+            String crsCodeContent = WorksheetText.clean(currentRow.getCode(7));
             if(!crsCodeContent.isEmpty()){
-                  indicator.setCrsCode(Arrays.stream(crsCodeContent.split(",")).map(x-> crsCodes.stream()
-                        .filter(y->String.valueOf(y.getId()).equalsIgnoreCase(x.trim())).findFirst()
-                        .orElseThrow(() -> new WorksheetInWrongFormatException("CRS Code on row " + finalRow + " is invalid"))).collect(Collectors.toSet()));
+                  indicator.setCrsCode(Arrays.stream(crsCodeContent.split(",")).map(x-> Optional.ofNullable(crsCodes.get(x.trim()))
+                        .orElseThrow(() -> new WorksheetInWrongFormatException("CRS Code on row " + row + " is invalid"))).collect(Collectors.toSet()));
 
             }
-            String sdgCodeContent = cleanText(sdgCodeCell.getCellType().equals(CellType.NUMERIC) ? String.valueOf((int)sdgCodeCell.getNumericCellValue()) : sdgCodeCell.getStringCellValue());
+            String sdgCodeContent = WorksheetText.clean(currentRow.getCode(8));
             if(!sdgCodeContent.isEmpty()){
-                    indicator.setSdgCode(Arrays.stream(sdgCodeContent.split(",")).map(x-> sdgCodes.stream()
-                        .filter(y->String.valueOf(y.getId()).equalsIgnoreCase(x.trim())).findFirst()
-                        .orElseThrow(() -> new WorksheetInWrongFormatException("SDG Code on row " + finalRow + " is invalid"))).collect(Collectors.toSet()));
+                    indicator.setSdgCode(Arrays.stream(sdgCodeContent.split(",")).map(x-> Optional.ofNullable(sdgCodes.get(x.trim()))
+                        .orElseThrow(() -> new WorksheetInWrongFormatException("SDG Code on row " + row + " is invalid"))).collect(Collectors.toSet()));
             }
             indicatorList.add(indicator);
             /*
@@ -438,44 +419,15 @@ public class IndicatorService implements Logging {
           } else {
               throw new WorksheetInWrongFormatException("Level on row " + row + " is invalid. Valid values: " + levelMap.keySet());
           }
-        }
+        });
         return indicatorList;
 
       } catch (IOException e) {
         logger().error("Failed to open worksheet.", e);
         throw new FailedToOpenWorksheetException();
-      }/* catch (InvalidFormatException e) {
-            logger().error("Failed to interpret worksheet. It must be in a wrong format.", e);
-            throw new WorksheetInWrongFormatException();
-        }*/
+      }
     }
 
-    /**
-     * Removes special characters and extra empty space
-     * @param text Text to be cleaned
-     * @return Cleaned text
-     */
-    private String cleanText(String text) {
-        // strips off all non-ASCII characters
-        text = text.replaceAll("[^\\x00-\\x7F]", "");
-
-        // erases all the ASCII control characters
-        text = text.replaceAll("[\\p{Cntrl}&&[^\r\n\t]]", "");
-
-        // removes non-printable characters from Unicode
-        text = text.replaceAll("\\p{C}", "");
-
-        text = text.replaceAll("[^ -~]","");
-
-        text = text.replaceAll("[^\\p{ASCII}]", "");
-
-        text = text.replaceAll("\\\\x\\p{XDigit}{2}", "");
-        text = text.replaceAll("\\\\n","");
-
-
-        text = text.replaceAll("[^\\x20-\\x7e]", "");
-        return text.trim();
-    }
     /**
      * Import Indicators from an worksheet/excel file with the extension xlsx
      * @param indicatorResponses Indicators to written in the excel file
@@ -483,18 +435,39 @@ public class IndicatorService implements Logging {
      */
     public ByteArrayOutputStream exportIndicatorsInWorksheet(List<IndicatorResponse> indicatorResponses,
                                                              List<StatementResponse> statements) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            exportIndicatorsInWorksheet(indicatorResponses, statements, outputStream);
+        } catch (IOException e) {
+            // never thrown when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return outputStream;
+    }
+
+    /**
+     * Writes the indicators in a worksheet with the extension xlsx to the output stream
+     * @param indicatorResponses Indicators to written in the excel file
+     * @param outputStream Stream to which the worksheet is written. It isn't closed
+     * @throws IOException If the stream can't be written to
+     */
+    public void exportIndicatorsInWorksheet(List<IndicatorResponse> indicatorResponses,
+                                            List<StatementResponse> statements, OutputStream outputStream) throws IOException {
 
         List<Indicator> indicatorList = indicatorRepository.findAllById(indicatorResponses.stream()
                                                            .map(IndicatorResponse::getId)
                                                            .collect(Collectors.toList()));
+        Map<Long, IndicatorResponse> responsesById = indicatorResponses.stream()
+                .collect(Collectors.toMap(IndicatorResponse::getId, x -> x, (first, second) -> first));
 
-        logger().info("Write indicators into a worksheet, indicator {}", indicatorResponses);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        logger().info("Write indicators into a worksheet, number of indicators {}", indicatorResponses.size());
 
-        XSSFWorkbook workbook = new XSSFWorkbook();
+        // Only the last rows are kept in memory, the ones before are flushed to a temporary file
+        SXSSFWorkbook workbook = new SXSSFWorkbook(WORKSHEET_ROW_WINDOW);
         Sheet sheet = workbook.createSheet();
         String[] columns = new String[]{"Level", "Sector", "Name", "Description", "Source", "Disaggregation", "DAC 5/CRS",
             "SDG", "Source of Verification", "Data Source", "Baseline Value", "Baseline Date", "Statement"};
+        int[] maxLengths = new int[columns.length];
 
         // Create a CellStyle with the font
         Font boldFont = workbook.createFont();
@@ -513,62 +486,68 @@ public class IndicatorService implements Logging {
         // add the headers row
         Row headerRow = sheet.createRow(0);
         for (int i = 0; i < columns.length; i++) {
-            addCellWithStyle(headerRow, i, columns[i], headerCellStyle);
+            addCell(headerRow, i, columns[i], headerCellStyle, maxLengths);
         }
 
         int rowNum = 1;
         IndicatorResponse response;
         for (Indicator indicator : indicatorList) {
-            response = indicatorResponses.stream().filter(x -> x.getId() == indicator.getId()).findFirst().get();
+            response = responsesById.get(indicator.getId());
             Row row = sheet.createRow(rowNum++);
-            row.createCell(0).setCellValue(indicator.getLevel().getName());
-            row.createCell(1).setCellValue(indicator.getSector());
-            row.createCell(2).setCellValue(indicator.getName());
-            row.createCell(3).setCellValue(indicator.getDescription());
-            row.createCell(4).setCellValue(indicator.getSource().stream().map(Source::getName).collect(Collectors.joining()));
-            addCellWithStyle(row, 5, isNull(indicator.getDisaggregation())? "" : (indicator.getDisaggregation() ? "Yes" : "No"), yellowCellStyle);
-            addCellWithStyle(row, 6, indicator.getCrsCode().stream().map(x-> String.valueOf(x.getId())).collect(Collectors.joining(",")), redCellStyle);
-            addCellWithStyle(row, 7, indicator.getSdgCode().stream().map(x-> String.valueOf(x.getId())).collect(Collectors.joining(",")), redCellStyle);
-            addCellWithStyle(row, 8, indicator.getSourceVerification(), yellowCellStyle);
-            row.createCell(9).setCellValue(indicator.getDataSource());
-            row.createCell(10).setCellValue(response.getValue());
-            row.createCell(11).setCellValue(response.getDate());
-            row.createCell(12).setCellValue(response.getStatement());
+            addCell(row, 0, indicator.getLevel().getName(), null, maxLengths);
+            addCell(row, 1, indicator.getSector(), null, maxLengths);
+            addCell(row, 2, indicator.getName(), null, maxLengths);
+            addCell(row, 3, indicator.getDescription(), null, maxLengths);
+            addCell(row, 4, indicator.getSource().stream().map(Source::getName).collect(Collectors.joining()), null, maxLengths);
+            addCell(row, 5, isNull(indicator.getDisaggregation())? "" : (indicator.getDisaggregation() ? "Yes" : "No"), yellowCellStyle, maxLengths);
+            addCell(row, 6, indicator.getCrsCode().stream().map(x-> String.valueOf(x.getId())).collect(Collectors.joining(",")), redCellStyle, maxLengths);
+            addCell(row, 7, indicator.getSdgCode().stream().map(x-> String.valueOf(x.getId())).collect(Collectors.joining(",")), redCellStyle, maxLengths);
+            addCell(row, 8, indicator.getSourceVerification(), yellowCellStyle, maxLengths);
+            addCell(row, 9, indicator.getDataSource(), null, maxLengths);
+            addCell(row, 10, response.getValue(), null, maxLengths);
+            addCell(row, 11, response.getDate(), null, maxLengths);
+            addCell(row, 12, response.getStatement(), null, maxLengths);
         }
 
         for (StatementResponse statement : statements) {
             Row row = sheet.createRow(rowNum++);
-            row.createCell(0).setCellValue(statement.getLevel().toUpperCase());
-            row.createCell(12).setCellValue(statement.getStatement());
+            addCell(row, 0, statement.getLevel().toUpperCase(), null, maxLengths);
+            addCell(row, 12, statement.getStatement(), null, maxLengths);
         }
 
-        // Resize all columns to fit the content size
+        // Resize all columns to fit the content size. The widths come from the lengths tracked while writing,
+        // since autosize would need every row in memory
         for(int i = 0; i < columns.length; i++) {
-            sheet.autoSizeColumn(i);
+            sheet.setColumnWidth(i, Math.min(maxLengths[i] + 2, MAX_COLUMN_WIDTH_CHARS) * 256);
         }
 
+        // Failures to write are left to the caller, e.g. the client closed the connection
         try {
             workbook.write(outputStream);
+        } finally {
             workbook.close();
-            indicatorRepository.saveAll(indicatorList.stream().peek(x-> x.setTimesDownloaded(x.getTimesDownloaded()+1)).collect(Collectors.toList()));
-        } catch (IOException e) {
-            logger().error("Failed to write/close the worksheet",e);
-            throw new FailedToCloseFileException();
+            workbook.dispose();
         }
-        return outputStream;
+        downloadCounter.increment(indicatorList);
     }
 
     /**
-     * Creates a cell with a certain style and with a set value
+     * Creates a cell with a value and tracks the length of the longest value of the column
      * @param row Row of the cell that will be created
-     * @param i Index of the column of the cell
-     * @param value Text of the cell
-     * @param cellStyle Cell style (color, font, ...)
+     * @param column Index of the cell in the row
+     * @param value Value of the cell
+     * @param cellStyle Style of the cell, can be null
+     * @param maxLengths Longest value per column
      */
-    private void addCellWithStyle(Row row, Integer i, String value, CellStyle cellStyle){
-        Cell cell = row.createCell(i);
+    private void addCell(Row row, int column, String value, CellStyle cellStyle, int[] maxLengths) {
+        Cell cell = row.createCell(column);
         cell.setCellValue(value);
-        cell.setCellStyle(cellStyle);
+        if (cellStyle != null) {
+            cell.setCellStyle(cellStyle);
+        }
+        if (value != null && value.length() > maxLengths[column]) {
+            maxLengths[column] = value.length();
+        }
     }
 
     /**
@@ -624,13 +603,17 @@ public class IndicatorService implements Logging {
      */
     public List<Indicator> getIndicators(Optional<List<String>> sector, Optional<List<Long>> sources, Optional<List<Long>> levels,
                                                  Optional<List<Long>> sdgCodes, Optional<List<Long>> crsCodes, String indicatorName) {
-        logger().info("Starting repository call with with sector: {}, sources: {}, levels: {}, sdgCodes: {}, crsCodes: {}, indicatorName: {}",
-                sector, sources, levels, sdgCodes, crsCodes, indicatorName);
-        return sector.isEmpty() && sources.isEmpty() && levels.isEmpty() && sdgCodes.isEmpty() && crsCodes.isEmpty()
-                && (indicatorName == null || indicatorName.isEmpty())?
-            indicatorRepository.findAll() :
-            indicatorRepository.findAll(
-                getIndicatorSpecification(sector, sources, levels, sdgCodes, crsCodes, indicatorName,false));
+        CatalogueSnapshot snapshot = indicatorCatalogue.getSnapshot();
+        logger().info("Searching catalogue version {} with sector: {}, sources: {}, levels: {}, sdgCodes: {}, crsCodes: {}, indicatorName: {}",
+                snapshot.getVersion(), sector, sources, levels, sdgCodes, crsCodes, indicatorName);
+        return snapshot.search(IndicatorFilter.builder()
+                .sectors(sector.orElse(null))
+                .sourceIds(sources.orElse(null))
+                .levelIds(levels.orElse(null))
+                .sdgCodeIds(sdgCodes.orElse(null))
+                .crsCodeIds(crsCodes.orElse(null))
+                .name(indicatorName)
+                .build());
     }
 
    Specification<Indicator> getIndicatorSpecification(Optional<List<String>> sector,
@@ -832,10 +815,34 @@ public class IndicatorService implements Logging {
      */
     public ByteArrayOutputStream exportIndicatorsDFIDFormat(List<IndicatorResponse> indicatorResponse,
                                                             List<StatementResponse> statements){
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
         try {
-            logger().info("Start exporting Indicators in DFID format");
-            ByteArrayOutputStream output = new ByteArrayOutputStream();
-            XSSFWorkbook wk = new XSSFWorkbook(new ClassPathResource(Constants.DFID_FORMAT+"_Template" +Constants.WORKSHEET_FILE_EXTENSION).getInputStream());
+            exportIndicatorsDFIDFormat(indicatorResponse, statements, output);
+        } catch (IOException e) {
+            // never thrown when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return output;
+    }
+
+    /**
+     * Fills the DFID template with the indicators, writing it to the output stream
+     * @param indicatorResponse Indicators to fill the indicator file
+     * @param output Stream to which the filled template is written. It isn't closed
+     * @throws IOException If the stream can't be written to
+     */
+    public void exportIndicatorsDFIDFormat(List<IndicatorResponse> indicatorResponse,
+                                           List<StatementResponse> statements, OutputStream output) throws IOException {
+        logger().info("Start exporting Indicators in DFID format");
+        XSSFWorkbook template;
+        try {
+            template = templateRegistry.getWorkbook(TemplateRegistry.templateName(Constants.DFID_FORMAT, Constants.WORKSHEET_FILE_EXTENSION));
+        } catch (IOException e) {
+            logger().error("Failed to open template worksheet.", e);
+            throw new FailedToOpenWorksheetException();
+        }
+        // Failures to write are left to the caller, e.g. the client closed the connection
+        try (XSSFWorkbook wk = template) {
             XSSFSheet sheet  = wk.getSheetAt(0);
             List<Level> levels = levelRepository.findAllByOrderByPriority();
             List<Indicator> indicatorList = indicatorRepository.findAllById(indicatorResponse.stream()
@@ -886,12 +893,7 @@ public class IndicatorService implements Logging {
                     Comparator.nullsLast(Comparator.naturalOrder()))).collect(Collectors.toList()),
                     startRowNewIndicator, OUTPUT_NUM_TEMP_INDIC, outputStatements);
             wk.write(output);
-            wk.close();
-            indicatorRepository.saveAll(indicatorList.stream().peek(x-> x.setTimesDownloaded(x.getTimesDownloaded()+1)).collect(Collectors.toList()));
-            return output;
-        } catch (IOException e) {
-            logger().error("Failed to open template worksheet.", e);
-            throw new FailedToOpenWorksheetException();
+            downloadCounter.increment(indicatorList);
         }
     }
 
@@ -1203,8 +1205,24 @@ public class IndicatorService implements Logging {
      * @return The PRM template filled with the indicators
      */
     public ByteArrayOutputStream exportIndicatorsPRMFormat(List<IndicatorResponse> indicatorResponses){
-        logger().info("Starting to export indicators using the PRM template");
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            exportIndicatorsPRMFormat(indicatorResponses, outputStream);
+        } catch (IOException e) {
+            // never thrown when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return outputStream;
+    }
+
+    /**
+     * Fills the PRM template with the indicators, writing it to the output stream
+     * @param indicatorResponses Indicators to fill the indicator file
+     * @param outputStream Stream to which the filled template is written. It isn't closed
+     * @throws IOException If the stream can't be written to
+     */
+    public void exportIndicatorsPRMFormat(List<IndicatorResponse> indicatorResponses, OutputStream outputStream) throws IOException {
+        logger().info("Starting to export indicators using the PRM template");
         List<Level> levels = levelRepository.findAllByOrderByPriority();
         List<Indicator> indicatorList = indicatorRepository.findAllById(indicatorResponses.stream()
                 .mapToLong(IndicatorResponse::getId).boxed().collect(Collectors.toList()));
@@ -1234,8 +1252,15 @@ public class IndicatorService implements Logging {
 
         }
 
+        XWPFDocument template;
         try {
-            XWPFDocument document = new XWPFDocument(new ClassPathResource(Constants.PRM_FORMAT + "_Template" + Constants.WORD_FILE_EXTENSION).getInputStream());
+            template = templateRegistry.getWordDocument(TemplateRegistry.templateName(Constants.PRM_FORMAT, Constants.WORD_FILE_EXTENSION));
+        } catch (IOException e) {
+            logger().error("Template was not found.", e);
+            throw new FailedToOpenFileException();
+        }
+        // Failures to write are left to the caller, e.g. the client closed the connection
+        try (XWPFDocument document = template) {
             XWPFTable impactTable = document.getTableArray(0);
             XWPFTable outcomeTable = document.getTableArray(1);
             XWPFTable outputTable = document.getTableArray(2);
@@ -1265,12 +1290,8 @@ public class IndicatorService implements Logging {
             logger().info("Writing the changes to the template to a outputStream");
             document.write(outputStream);
             // set download times
-            indicatorRepository.saveAll(indicatorList.stream().peek(x-> x.setTimesDownloaded(x.getTimesDownloaded()+1)).collect(Collectors.toList()));
-        } catch (IOException e) {
-            logger().error("Template was not found.", e);
-            throw new FailedToOpenFileException();
+            downloadCounter.increment(indicatorList);
         }
-        return outputStream;
     }
 
     /**
@@ -1316,9 +1337,20 @@ public class IndicatorService implements Logging {
     }
 
     public List<IndicatorResponse> scanForIndicators(String textToScan, FiltersDto filterDto) {
+        return scanForIndicators(textToScan, filterDto, null);
+    }
+
+    /**
+     * Scans the text for indicators, in chunks if the text is large
+     * @param textToScan Text extracted from the document
+     * @param filterDto Filters sent to the Machine Learning API
+     * @param progress Receives the fraction of the text scanned, if set
+     * @return Indicators found sorted by level and score
+     */
+    public List<IndicatorResponse> scanForIndicators(String textToScan, FiltersDto filterDto, @Nullable DoubleConsumer progress) {
         logger().info("Retrieved the indicators and its score found in the text");
         List<IndicatorResponse> response = new ArrayList<>();
-        List<MLScanIndicator> mlIndicators = machineLearningService.scanForIndicators(textToScan, filterDto);
+        List<MLScanIndicator> mlIndicators = chunkedScanService.scan(textToScan, filterDto, progress);
         if(!mlIndicators.isEmpty()) {
             List<Indicator> indicators = getIndicatorWithId(mlIndicators.stream().map(MLScanIndicator::getId).collect(Collectors.toList()));
             
@@ -6,43 +6,84 @@ import com.arqaam.logframelab.controller.dto.IndicatorRequestDto;
 import com.arqaam.logframelab.controller.dto.IndicatorsRequestDto;
 import com.arqaam.logframelab.controller.dto.IndicatorsRequestDto.FilterRequestDto;
 import com.arqaam.logframelab.exception.IndicatorNotFoundException;
+import com.arqaam.logframelab.model.ImportSummary;
+import com.arqaam.logframelab.model.NearDuplicate;
 import com.arqaam.logframelab.model.persistence.Indicator;
 import com.arqaam.logframelab.repository.*;
+import com.arqaam.logframelab.service.catalogue.CatalogueChangedEvent;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.service.catalogue.IndicatorFilter;
+import com.arqaam.logframelab.service.catalogue.ReferenceDataChangedEvent;
+import com.arqaam.logframelab.service.similarity.NearDuplicateDetector;
+import com.arqaam.logframelab.service.worksheet.IndicatorBatchWriter;
+import com.arqaam.logframelab.service.worksheet.WorksheetText;
 import com.arqaam.logframelab.util.Logging;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class IndicatorsManagementService implements Logging {
 
+    /** Properties the indicators can be sorted by, with the value of each indicator to be compared */
+    private static final Map<String, Function<Indicator, Comparable<?>>> SORT_KEYS = new HashMap<>();
+    private static final Comparator<Comparable<?>> COMPARE_KEYS = Comparator.nullsFirst(IndicatorsManagementService::compareValues);
+
+    static {
+        SORT_KEYS.put("id", Indicator::getId);
+        SORT_KEYS.put("name", Indicator::getName);
+        SORT_KEYS.put("description", Indicator::getDescription);
+        SORT_KEYS.put("keywords", Indicator::getKeywords);
+        SORT_KEYS.put("sector", Indicator::getSector);
+        SORT_KEYS.put("disaggregation", Indicator::getDisaggregation);
+        SORT_KEYS.put("sourceVerification", Indicator::getSourceVerification);
+        SORT_KEYS.put("dataSource", Indicator::getDataSource);
+        SORT_KEYS.put("timesDownloaded", Indicator::getTimesDownloaded);
+        // levels are compared by priority, as in Level::compareTo
+        SORT_KEYS.put("level", indicator -> indicator.getLevel() == null ? null : indicator.getLevel().getPriority());
+        SORT_KEYS.put("level.id", indicator -> indicator.getLevel() == null ? null : indicator.getLevel().getId());
+        SORT_KEYS.put("level.name", indicator -> indicator.getLevel() == null ? null : indicator.getLevel().getName());
+        SORT_KEYS.put("level.priority", indicator -> indicator.getLevel() == null ? null : indicator.getLevel().getPriority());
+    }
+
     private final IndicatorRepository indicatorRepository;
     private final LevelRepository levelRepository;
     private final SourceRepository sourceRepository;
     private final SDGCodeRepository sdgCodeRepository;
     private final CRSCodeRepository crsCodeRepository;
     private final IndicatorService indicatorService;
+    private final IndicatorCatalogue indicatorCatalogue;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IndicatorBatchWriter batchWriter;
+    private final NearDuplicateDetector nearDuplicateDetector;
 
     public IndicatorsManagementService(IndicatorRepository indicatorRepository,
                                            LevelRepository levelRepository, SourceRepository sourceRepository, SDGCodeRepository sdgCodeRepository,
-                                           CRSCodeRepository crsCodeRepository, IndicatorService indicatorService) {
+                                           CRSCodeRepository crsCodeRepository, IndicatorService indicatorService,
+                                           IndicatorCatalogue indicatorCatalogue, ApplicationEventPublisher eventPublisher,
+                                           IndicatorBatchWriter batchWriter, NearDuplicateDetector nearDuplicateDetector) {
         this.indicatorRepository = indicatorRepository;
         this.levelRepository = levelRepository;
         this.sourceRepository = sourceRepository;
         this.sdgCodeRepository = sdgCodeRepository;
         this.crsCodeRepository = crsCodeRepository;
         this.indicatorService = indicatorService;
+        this.indicatorCatalogue = indicatorCatalogue;
+        this.eventPublisher = eventPublisher;
+        this.batchWriter = batchWriter;
+        this.nearDuplicateDetector = nearDuplicateDetector;
     }
 
     public Page<Indicator> getIndicators(IndicatorsRequestDto indicatorsRequest) {
@@ -55,15 +96,25 @@ public class IndicatorsManagementService implements Logging {
                     indicatorsRequest.getSortBy().getProperty());
         }
 
-        FilterRequestDto filters = indicatorsRequest.getFilters();
+        List<Indicator> matches = indicatorCatalogue.getSnapshot().search(IndicatorFilter.from(indicatorsRequest.getFilters()));
+        if (page.getSort().isSorted()) {
+            matches = sort(matches, page.getSort());
+        }
 
-        Specification<Indicator> specification = indicatorService.specificationFromFilter(filters, false);
+        // Only the indicators of the requested page are read from the database, so values that are not part
+        // of the catalogue (e.g. times downloaded) are up to date
+        int from = (int) Math.min(page.getOffset(), matches.size());
+        int to = Math.min(from + page.getPageSize(), matches.size());
+        List<Long> ids = matches.subList(from, to).stream().map(Indicator::getId).collect(Collectors.toList());
+        Map<Long, Indicator> indicatorsById = ids.isEmpty() ? Collections.emptyMap() : indicatorRepository.findAllByIdIn(ids)
+                .stream().collect(Collectors.toMap(Indicator::getId, Function.identity(), (first, second) -> first));
 
-        return indicatorRepository.findAll(specification, page);
+        return new PageImpl<>(ids.stream().map(indicatorsById::get).filter(Objects::nonNull).collect(Collectors.toList()),
+                page, matches.size());
     }
 
     public Indicator saveIndicator(IndicatorRequestDto indicatorRequest) {
-        return indicatorRepository.save(
+        Indicator indicator = indicatorRepository.save(
                 Indicator.builder().id(indicatorRequest.getId())
                         .description(indicatorRequest.getDescription())
                         .name(indicatorRequest.getName())
@@ -77,6 +128,8 @@ public class IndicatorsManagementService implements Logging {
                         .dataSource(indicatorRequest.getDataSource())
                         .disaggregation(indicatorRequest.getDisaggregation())
                         .build());
+        eventPublisher.publishEvent(new CatalogueChangedEvent("indicator saved"));
+        return indicator;
     }
 
     public void deleteIndicator(Long id) {
@@ -87,13 +140,22 @@ public class IndicatorsManagementService implements Logging {
             logger().error("Failed to delete indicator, because it was not found. id: {}", id);
             throw new IndicatorNotFoundException();
         }
+        eventPublisher.publishEvent(new CatalogueChangedEvent("indicator deleted"));
     }
 
-    public void processFileWithTempIndicators(MultipartFile file) {
+    public ImportSummary processFileWithTempIndicators(MultipartFile file) {
         List<Indicator> indicators = indicatorService.extractIndicatorFromFile(file);
-        if (!indicators.isEmpty()) {
-            saveForApproval(indicators);
+        if (indicators.isEmpty()) {
+            return new ImportSummary();
         }
+        ImportSummary summary = saveForApproval(indicators);
+        if (summary.getUpdated() > 0) {
+            // updated indicators may be approved ones, which are now temporary and must leave the catalogue
+            eventPublisher.publishEvent(new CatalogueChangedEvent("indicators uploaded for approval"));
+        } else if (summary.getInserted() > 0) {
+            eventPublisher.publishEvent(new ReferenceDataChangedEvent("indicators uploaded for approval"));
+        }
+        return summary;
     }
 
     public Page<Indicator> getIndicatorsForApproval(IndicatorsRequestDto indicatorsRequest) {
@@ -123,6 +185,16 @@ public class IndicatorsManagementService implements Logging {
         if (unapprovedIds.size() > 0) {
             indicatorRepository.deleteDisapprovedByIds(unapprovedIds);
         }
+        eventPublisher.publishEvent(new CatalogueChangedEvent("temporary indicators processed"));
+    }
+
+    /**
+     * Retrieves the approved indicators that are near duplicates of the indicator, e.g. before creating it
+     * @param indicatorRequest Indicator to be compared
+     * @return Near duplicates, most similar first
+     */
+    public List<NearDuplicate> getNearDuplicates(IndicatorRequestDto indicatorRequest) {
+        return nearDuplicateDetector.find(indicatorRequest.getName(), indicatorRequest.getDescription());
     }
 
     public boolean indicatorExists(Long id) {
@@ -134,28 +206,127 @@ public class IndicatorsManagementService implements Logging {
     }
 
     /**
-     * Saves all the indicators that don't already exist in the database
+     * Sorts the indicators, comparing strings ignoring case and placing nulls first in ascending order.
+     * The sort keys of each indicator are extracted once, before sorting, and ties are sorted by id
+     * @param indicators Indicators to be sorted, which aren't modified
+     * @param sort Sort with properties of {@link #SORT_KEYS}. Other properties are ignored
+     * @return Sorted indicators
+     */
+    private List<Indicator> sort(List<Indicator> indicators, Sort sort) {
+        List<Function<Indicator, Comparable<?>>> extractors = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            Function<Indicator, Comparable<?>> extractor = SORT_KEYS.get(order.getProperty());
+            if (extractor == null) {
+                logger().warn("Ignoring sort by unknown property {}", order.getProperty());
+                continue;
+            }
+            extractors.add(extractor);
+            descending.add(order.isDescending());
+        }
+        extractors.add(Indicator::getId);
+        descending.add(false);
+
+        List<SortEntry> entries = new ArrayList<>(indicators.size());
+        for (Indicator indicator : indicators) {
+            Comparable<?>[] keys = new Comparable<?>[extractors.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = extractors.get(i).apply(indicator);
+            }
+            entries.add(new SortEntry(indicator, keys));
+        }
+        entries.sort((entry, other) -> {
+            for (int i = 0; i < entry.keys.length; i++) {
+                int result = COMPARE_KEYS.compare(entry.keys[i], other.keys[i]);
+                if (result != 0) {
+                    return descending.get(i) ? -result : result;
+                }
+            }
+            return 0;
+        });
+        return entries.stream().map(entry -> entry.indicator).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Comparable value, Comparable other) {
+        if (value instanceof String && other instanceof String) {
+            return String.CASE_INSENSITIVE_ORDER.compare((String) value, (String) other);
+        }
+        return value.compareTo(other);
+    }
+
+    private static final class SortEntry {
+        private final Indicator indicator;
+        private final Comparable<?>[] keys;
+
+        private SortEntry(Indicator indicator, Comparable<?>[] keys) {
+            this.indicator = indicator;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Saves the indicators as temporary ones, waiting for approval. Names are normalized once and looked up in a
+     * single query, then each indicator is matched to the existing one with the same name through a map: it is
+     * skipped if nothing changed, updated if something did, and inserted if there is none. Indicators repeating
+     * the name of an earlier one in the same file are skipped as well. Inserted indicators similar to approved
+     * ones are reported with their near duplicates
      *
      * @param indicators The indicators to be filtered and saved
+     * @return Number of indicators inserted, updated and skipped
      */
-    private void saveForApproval(List<Indicator> indicators) {
+    private ImportSummary saveForApproval(List<Indicator> indicators) {
         logger().info("Starting to check for duplicates");
-        ExampleMatcher matcher = ExampleMatcher.matching()
-                .withMatcher("name", new ExampleMatcher.GenericPropertyMatcher().ignoreCase());
-        // Filter to remove duplicated indicators
-        indicators = indicators.stream().filter(x -> !indicatorRepository.exists(Example.of(x, matcher)))
-                .peek(indicator -> indicator.setTemp(true)).collect(Collectors.toList());
-
-        // Get the ids of the indicators to be updated (they are meant to be updated if an indicator with the same name already exists)
-        logger().info("Adding the ids to the indicators that are meant to be update");
-        List<Indicator> toBeUpdated = indicatorRepository.findAllByNameIn(indicators.stream().map(Indicator::getName).collect(Collectors.toSet()));
-        if (!toBeUpdated.isEmpty()) {
-            indicators = indicators.stream().peek(indicator -> indicator.setId(toBeUpdated.stream()
-                    .filter(x -> x.getName().equals(indicator.getName())).findFirst().orElse(indicator).getId()))
-                    .collect(Collectors.toList());
+        Map<String, Indicator> uploaded = new LinkedHashMap<>();
+        for (Indicator indicator : indicators) {
+            uploaded.putIfAbsent(WorksheetText.normalizeName(indicator.getName()), indicator);
+        }
+        Map<String, Indicator> existing = new HashMap<>();
+        for (Indicator indicator : indicatorRepository.findAllByNormalizedNameIn(uploaded.keySet())) {
+            existing.putIfAbsent(WorksheetText.normalizeName(indicator.getName()), indicator);
+        }
+
+        ImportSummary summary = new ImportSummary(0, 0, indicators.size() - uploaded.size());
+        List<Indicator> toBeSaved = new ArrayList<>(uploaded.size());
+        for (Map.Entry<String, Indicator> entry : uploaded.entrySet()) {
+            Indicator indicator = entry.getValue();
+            Indicator match = existing.get(entry.getKey());
+            if (match == null) {
+                summary.setInserted(summary.getInserted() + 1);
+                List<NearDuplicate> nearDuplicates = nearDuplicateDetector.find(indicator.getName(), indicator.getDescription());
+                if (!nearDuplicates.isEmpty()) {
+                    summary.getNearDuplicates().put(indicator.getName(), nearDuplicates.stream()
+                            .map(nearDuplicate -> nearDuplicate.getIndicator().getId()).collect(Collectors.toList()));
+                }
+            } else if (hasSameContent(match, indicator)) {
+                summary.setSkipped(summary.getSkipped() + 1);
+                continue;
+            } else {
+                // updated instead of adding another indicator with the same name
+                indicator.setId(match.getId());
+                summary.setUpdated(summary.getUpdated() + 1);
+            }
+            indicator.setTemp(true);
+            toBeSaved.add(indicator);
         }
-        logger().info("Saving the indicators to the database.");
+        logger().info("Saving the indicators to the database. Inserted: {}, updated: {}, skipped: {}",
+                summary.getInserted(), summary.getUpdated(), summary.getSkipped());
         // saveAll saves and updates depending if the objects have id or not
-        indicatorRepository.saveAll(indicators);
+        batchWriter.saveAll(toBeSaved);
+        return summary;
+    }
+
+    /**
+     * Compares the values read from the worksheets of indicators that have the same normalized name
+     */
+    private static boolean hasSameContent(Indicator existing, Indicator indicator) {
+        return Objects.equals(existing.getDescription(), indicator.getDescription())
+                && Objects.equals(existing.getKeywords(), indicator.getKeywords())
+                && Objects.equals(existing.getSector(), indicator.getSector())
+                && Objects.equals(existing.getLevel() == null ? null : existing.getLevel().getId(),
+                        indicator.getLevel() == null ? null : indicator.getLevel().getId())
+                && Objects.equals(existing.getDisaggregation(), indicator.getDisaggregation())
+                && Objects.equals(existing.getSourceVerification(), indicator.getSourceVerification())
+                && Objects.equals(existing.getDataSource(), indicator.getDataSource());
     }
 }
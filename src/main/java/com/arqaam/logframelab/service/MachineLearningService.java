@@ -15,32 +15,62 @@ import com.arqaam.logframelab.model.persistence.CRSCode;
 import com.arqaam.logframelab.model.persistence.Level;
 import com.arqaam.logframelab.model.persistence.SDGCode;
 import com.arqaam.logframelab.model.persistence.Source;
+import com.arqaam.logframelab.service.scan.ScanResultCache;
 import com.arqaam.logframelab.util.Logging;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Client of the Machine Learning API. Each endpoint is called through its own circuit breaker, which stops
+ * calling it for a while once too many calls fail or are slow, and its own bulkhead, which caps the calls in flight.
+ * Calls rejected by either fail right away with {@link MLAPIRequestFailedException}.
+ */
 @Service
 public class MachineLearningService implements Logging {
 
+    static final String INDICATORS_ENDPOINT = "ml-indicators";
+    static final String STATEMENT_DETECTOR_ENDPOINT = "ml-statement-detector";
+    static final String QUALITY_CHECKER_ENDPOINT = "ml-quality-checker";
+    static final String SIMILARITY_CHECK_ENDPOINT = "ml-similarity-check";
+
     @Autowired
+    @Qualifier("machineLearningRestTemplate")
     private RestTemplate restTemplate;
 
     @Value("${logframelab.machine-learning-url}")
     private String URL;
 
+    @Autowired
+    private ScanResultCache scanResultCache;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
     /**
      * Returns list of names of the indicators that are similar to the one sent.
      * @param name Name of the indicator
@@ -48,17 +78,27 @@ public class MachineLearningService implements Logging {
      * @return List of ids of indicators that are similar
      */
     public List<Long> getSimilarIndicators(String name, Double threshold) {
+        return getSimilarityScores(name, threshold).stream().map(MLSimilarIndicatorResponse::getIndicatorId).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the indicators that are similar to the one sent, with their similarity
+     * @param name Name of the indicator
+     * @param threshold Threshold of similarity
+     * @return List of similar indicators, without the indicator itself
+     */
+    public List<MLSimilarIndicatorResponse> getSimilarityScores(String name, Double threshold) {
         logger().info("Started to retrieve similar indicators to: {} with threshold: {}", name, threshold);
         MLSimilarIndicatorRequest body = new MLSimilarIndicatorRequest(name, threshold);
         try {
-            ResponseEntity<List<MLSimilarIndicatorResponse>> responseEntity = restTemplate.exchange(URL+"indicators/similarity-check",
-                    HttpMethod.POST, new HttpEntity<>(body), new ParameterizedTypeReference<List<MLSimilarIndicatorResponse>>() {});
+            ResponseEntity<List<MLSimilarIndicatorResponse>> responseEntity = call(SIMILARITY_CHECK_ENDPOINT, () -> restTemplate.exchange(URL+"indicators/similarity-check",
+                    HttpMethod.POST, new HttpEntity<>(body), new ParameterizedTypeReference<List<MLSimilarIndicatorResponse>>() {}));
             if(responseEntity.getStatusCode()!= HttpStatus.OK || responseEntity.getBody() == null){
                 throw new HttpClientErrorException(responseEntity.getStatusCode());
             }
-            // Remove its own indicator and map
-            return responseEntity.getBody().stream().filter(x->x.getSimilarity()<0.9999).map(MLSimilarIndicatorResponse::getIndicatorId).collect(Collectors.toList());
-        } catch(HttpClientErrorException | HttpServerErrorException e) {
+            // Remove its own indicator
+            return responseEntity.getBody().stream().filter(x->x.getSimilarity()<0.9999).collect(Collectors.toList());
+        } catch(RestClientException e) {
             logger().error("Failed to retrieve similar indicators from the Machine Learning API", e);
             throw new MLAPIRequestFailedException();
         }
@@ -66,10 +106,16 @@ public class MachineLearningService implements Logging {
 
     /**
      * Calls the Machine Learning endpoint to get indicators found in the text
+     * The result is cached, so scanning the same text with the same filters again doesn't call the endpoint
      * @param text Text to be sent to the Machine Learning endpoint
      * @return List of Indicators with score of best fit
      */
     public List<MLScanIndicator> scanForIndicators(String text, @Nullable FiltersDto filtersDto) {
+        return scanResultCache.get(ScanResultCache.INDICATORS, text, filtersDto, new TypeReference<List<MLScanIndicator>>() {},
+                () -> requestScanForIndicators(text, filtersDto));
+    }
+
+    private List<MLScanIndicator> requestScanForIndicators(String text, @Nullable FiltersDto filtersDto) {
         logger().info("Started to scan for indicators");
         MLScanIndicatorRequest body = new MLScanIndicatorRequest(Collections.singletonList(text), "doc");
         try {
@@ -86,15 +132,16 @@ public class MachineLearningService implements Logging {
                 if(!filtersDto.getSource().isEmpty())
                     builder = builder.queryParam("source", filtersDto.getSource().stream().map(Source::getId).collect(Collectors.toList()));
             }
-            logger().info("Request URI: {}", builder.toUriString());
-            ResponseEntity<MLScanIndicatorResponse> responseEntity = restTemplate.exchange(builder.toUriString(),
-                    HttpMethod.POST, new HttpEntity<>(body, new HttpHeaders()), MLScanIndicatorResponse.class);
+            String uri = builder.toUriString();
+            logger().info("Request URI: {}", uri);
+            ResponseEntity<MLScanIndicatorResponse> responseEntity = call(INDICATORS_ENDPOINT, () -> restTemplate.exchange(uri,
+                    HttpMethod.POST, new HttpEntity<>(body, new HttpHeaders()), MLScanIndicatorResponse.class));
             logger().info("Response: {}", responseEntity.getBody());
             if(responseEntity.getStatusCode()!= HttpStatus.OK || responseEntity.getBody() == null){
                 throw new HttpClientErrorException(responseEntity.getStatusCode());
             }
             return responseEntity.getBody().getIndicators();
-        } catch(HttpClientErrorException | HttpServerErrorException e) {
+        } catch(RestClientException e) {
             logger().error("Failed to scan the text for indicators from the Machine Learning API", e);
             throw new MLAPIRequestFailedException();
         }
@@ -102,21 +149,27 @@ public class MachineLearningService implements Logging {
 
     /**
      * Calls the Machine Learning endpoint to get statements found in the text
+     * The result is cached, so scanning the same text again doesn't call the endpoint
      * @param text Text to be sent to the Machine Learning endpoint
      * @return Statements found in the text with its quality and divided by level
      */
     public MLStatementResponse scanForStatements(String text) {
+        return scanResultCache.get(ScanResultCache.STATEMENTS, text, null, new TypeReference<MLStatementResponse>() {},
+                () -> requestScanForStatements(text));
+    }
+
+    private MLStatementResponse requestScanForStatements(String text) {
         logger().info("Started to scan for statements");
         MLStatementRequest body = new MLStatementRequest(Collections.singletonList(text), "doc");
         try {
-            ResponseEntity<MLStatementResponse> responseEntity = restTemplate.exchange(URL+"statement-detector",
-                HttpMethod.POST, new HttpEntity<>(body, new HttpHeaders()), MLStatementResponse.class);
+            ResponseEntity<MLStatementResponse> responseEntity = call(STATEMENT_DETECTOR_ENDPOINT, () -> restTemplate.exchange(URL+"statement-detector",
+                HttpMethod.POST, new HttpEntity<>(body, new HttpHeaders()), MLStatementResponse.class));
 
             if(responseEntity.getStatusCode()!= HttpStatus.OK || responseEntity.getBody() == null){
                 throw new HttpClientErrorException(responseEntity.getStatusCode());
             }
             return responseEntity.getBody();
-        } catch(HttpClientErrorException | HttpServerErrorException e) {
+        } catch(RestClientException e) {
             logger().error("Failed to scan the text for statements from the Machine Learning API", e);
             throw new MLAPIRequestFailedException();
         }
@@ -130,15 +183,32 @@ public class MachineLearningService implements Logging {
     public MLStatement qualityCheckStatement(MLStatementQualityRequest body) {
         logger().info("Started to quality check statement: {} with level: {}", body.getStatement(), body.getLevel());
         try {
-            ResponseEntity<MLStatement> responseEntity = restTemplate.exchange(URL+"quality-checker",
-                    HttpMethod.POST, new HttpEntity<>(body, new HttpHeaders()), MLStatement.class);
+            ResponseEntity<MLStatement> responseEntity = call(QUALITY_CHECKER_ENDPOINT, () -> restTemplate.exchange(URL+"quality-checker",
+                    HttpMethod.POST, new HttpEntity<>(body, new HttpHeaders()), MLStatement.class));
             if(responseEntity.getStatusCode()!= HttpStatus.OK || responseEntity.getBody() == null){
                 throw new HttpClientErrorException(responseEntity.getStatusCode());
             }
             return responseEntity.getBody();
-        } catch(HttpClientErrorException | HttpServerErrorException e) {
+        } catch(RestClientException e) {
             logger().error("Failed to quality check the statements from the Machine Learning API", e);
             throw new MLAPIRequestFailedException();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends the request through the circuit breaker and the bulkhead of the endpoint. The bulkhead is checked
+     * first, so calls rejected for being over the limit aren't counted as failures of the endpoint
+     */
+    private <T> T call(String endpoint, Supplier<T> request) {
+        try {
+            return Bulkhead.decorateSupplier(bulkheadRegistry.bulkhead(endpoint),
+                    CircuitBreaker.decorateSupplier(circuitBreakerRegistry.circuitBreaker(endpoint), request)).get();
+        } catch (CallNotPermittedException e) {
+            logger().warn("Call to the Machine Learning API {} was not sent since its circuit breaker is open", endpoint);
+            throw new MLAPIRequestFailedException();
+        } catch (BulkheadFullException e) {
+            logger().warn("Call to the Machine Learning API {} was not sent since too many calls are in flight", endpoint);
+            throw new MLAPIRequestFailedException();
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.arqaam.logframelab.service;
 import com.arqaam.logframelab.model.persistence.Source;
 import com.arqaam.logframelab.exception.SourceNotFoundException;
 import com.arqaam.logframelab.repository.SourceRepository;
+import com.arqaam.logframelab.service.catalogue.CatalogueChangedEvent;
+import com.arqaam.logframelab.service.catalogue.ReferenceDataChangedEvent;
 import com.arqaam.logframelab.util.Logging;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,6 +17,8 @@ import java.util.Optional;
 public class SourceService implements Logging {
     @Autowired
     private SourceRepository sourceRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     /**
      * Retrieves all sources
@@ -49,7 +54,9 @@ public class SourceService implements Logging {
         validateSource(name);
         Source source = new Source();
         source.setName(name.trim());
-        return sourceRepository.save(source);
+        source = sourceRepository.save(source);
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent("source created"));
+        return source;
     }
 
     /**
@@ -63,7 +70,10 @@ public class SourceService implements Logging {
         Source source = getSourceById(id);
         validateSource(name);
         source.setName(name.trim());
-        return sourceRepository.save(source);
+        source = sourceRepository.save(source);
+        // Indicators in the catalogue embed their sources
+        eventPublisher.publishEvent(new CatalogueChangedEvent("source updated"));
+        return source;
     }
 
     /**
@@ -75,6 +85,7 @@ public class SourceService implements Logging {
         logger().info("Deleting source with id: {}", id);
         Source source = getSourceById(id);
         sourceRepository.delete(source);
+        eventPublisher.publishEvent(new CatalogueChangedEvent("source deleted"));
         return source;
     }
 
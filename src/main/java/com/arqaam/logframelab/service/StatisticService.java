@@ -4,55 +4,128 @@ import com.arqaam.logframelab.model.persistence.Statistic;
 import com.arqaam.logframelab.repository.StatisticRepository;
 import com.arqaam.logframelab.util.Constants;
 import com.arqaam.logframelab.util.Logging;
+import lombok.Value;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.List;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 @Service
 public class StatisticService implements Logging {
-    
+
+    private static final List<String> FORMATS = Arrays.asList(Constants.WORD_FORMAT, Constants.DFID_FORMAT,
+            Constants.XLSX_FORMAT, Constants.PRM_FORMAT);
+
     @Autowired
     private StatisticRepository statisticsRepository;
 
+    /** Downloads counted per month and format since startup. Counters only grow */
+    private final Map<DownloadKey, LongAdder> downloads = new ConcurrentHashMap<>();
+    /** Part of the downloads already written to the database. Guarded by this */
+    private final Map<DownloadKey, Long> flushed = new HashMap<>();
+
     /**
      * Adds to the counter of number of times a download format
-     * has been downloaded
+     * has been downloaded. The counter is written to the database by {@link #flush()}
      * @param format Download Format
-     * @return Statistic with new values
      */
-    public Statistic addDownloadStatistic(String format) {
+    public void addDownloadStatistic(String format) {
         logger().info("Adding download statistics to {} format", format);
         Date date = new GregorianCalendar(Calendar.getInstance().get(Calendar.YEAR), Calendar.getInstance().get(Calendar.MONTH),1, 0,0,0).getTime();
-        Statistic statistic = statisticsRepository.findByDate(date).orElse(new Statistic());
-        statistic.setDate(date);
-        switch(format){
-            case Constants.XLSX_FORMAT:
-                statistic.setDownloadXLSXTemplate(statistic.getDownloadXLSXTemplate() + 1);
-                break;
-            case Constants.DFID_FORMAT:
-                statistic.setDownloadDFIDTemplate(statistic.getDownloadDFIDTemplate() + 1);
-                break;
-            case Constants.PRM_FORMAT:
-                statistic.setDownloadPRMTemplate(statistic.getDownloadPRMTemplate() + 1);
-                break;
-            case Constants.WORD_FORMAT:
-            default:
-                statistic.setDownloadWordTemplate(statistic.getDownloadWordTemplate() + 1);
-                break;
-        }
-        return statisticsRepository.save(statistic);
+        downloads.computeIfAbsent(new DownloadKey(date, FORMATS.contains(format) ? format : Constants.WORD_FORMAT),
+                k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Writes the downloads counted since the last flush, incrementing the statistic of the month
+     * or creating it if it doesn't exist yet
+     */
+    @Scheduled(fixedDelayString = "${logframelab.statistic.flush-interval:30000}")
+    public synchronized void flush() {
+        Map<DownloadKey, Long> pendingDownloads = pending();
+        Map<Date, Map<String, Long>> pendingByDate = pendingDownloads.entrySet().stream().collect(Collectors.groupingBy(
+                entry -> entry.getKey().getDate(), Collectors.toMap(entry -> entry.getKey().getFormat(), Map.Entry::getValue)));
+
+        pendingByDate.forEach((date, byFormat) -> {
+            try {
+                int updated = statisticsRepository.incrementDownloads(date, count(byFormat, Constants.WORD_FORMAT),
+                        count(byFormat, Constants.DFID_FORMAT), count(byFormat, Constants.XLSX_FORMAT),
+                        count(byFormat, Constants.PRM_FORMAT));
+                if (updated == 0) {
+                    statisticsRepository.save(withDownloads(Statistic.builder().date(date).build(), byFormat));
+                }
+                byFormat.forEach((format, count) -> flushed.merge(new DownloadKey(date, format), count, Long::sum));
+            } catch (RuntimeException e) {
+                logger().error("Failed to write the download statistics of {}. They will be retried", date, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
     }
 
     /**
-     * Retrieves all statistics
+     * Retrieves all statistics, including the downloads that weren't written to the database yet
      * @return List of statistics
      */
-    public List<Statistic> getAllStatistics() {
+    public synchronized List<Statistic> getAllStatistics() {
         logger().info("Retrieving all statistics");
-        return statisticsRepository.findAll();
+        List<Statistic> statistics = statisticsRepository.findAll();
+        Map<Date, Map<String, Long>> pendingByDate = new HashMap<>();
+        pending().forEach((key, count) ->
+                pendingByDate.computeIfAbsent(key.getDate(), k -> new HashMap<>()).put(key.getFormat(), count));
+        if (pendingByDate.isEmpty()) {
+            return statistics;
+        }
+
+        List<Statistic> result = new ArrayList<>(statistics.size() + 1);
+        for (Statistic statistic : statistics) {
+            // Dates read from the database are timestamps, which aren't equal to dates with the same time
+            Map<String, Long> byFormat = statistic.getDate() == null ? null : pendingByDate.remove(new Date(statistic.getDate().getTime()));
+            result.add(byFormat == null ? statistic : withDownloads(Statistic.builder().id(statistic.getId())
+                    .date(statistic.getDate())
+                    .downloadWordTemplate(statistic.getDownloadWordTemplate())
+                    .downloadDFIDTemplate(statistic.getDownloadDFIDTemplate())
+                    .downloadXLSXTemplate(statistic.getDownloadXLSXTemplate())
+                    .downloadPRMTemplate(statistic.getDownloadPRMTemplate()).build(), byFormat));
+        }
+        pendingByDate.forEach((date, byFormat) -> result.add(withDownloads(Statistic.builder().date(date).build(), byFormat)));
+        return result;
+    }
+
+    private Map<DownloadKey, Long> pending() {
+        Map<DownloadKey, Long> pending = new HashMap<>();
+        downloads.forEach((key, counter) -> {
+            long count = counter.sum() - flushed.getOrDefault(key, 0L);
+            if (count > 0) {
+                pending.put(key, count);
+            }
+        });
+        return pending;
+    }
+
+    private static Integer count(Map<String, Long> byFormat, String format) {
+        return byFormat.getOrDefault(format, 0L).intValue();
+    }
+
+    private static Statistic withDownloads(Statistic statistic, Map<String, Long> byFormat) {
+        statistic.setDownloadWordTemplate(statistic.getDownloadWordTemplate() + count(byFormat, Constants.WORD_FORMAT));
+        statistic.setDownloadDFIDTemplate(statistic.getDownloadDFIDTemplate() + count(byFormat, Constants.DFID_FORMAT));
+        statistic.setDownloadXLSXTemplate(statistic.getDownloadXLSXTemplate() + count(byFormat, Constants.XLSX_FORMAT));
+        statistic.setDownloadPRMTemplate(statistic.getDownloadPRMTemplate() + count(byFormat, Constants.PRM_FORMAT));
+        return statistic;
+    }
+
+    @Value
+    private static class DownloadKey {
+        Date date;
+        String format;
     }
 }
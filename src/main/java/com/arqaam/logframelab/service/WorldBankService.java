@@ -7,21 +7,35 @@ import com.arqaam.logframelab.model.WorldBankCountry;
 import com.arqaam.logframelab.model.WorldBankIndicator;
 import com.arqaam.logframelab.model.WorldDevelopmentIndicator;
 import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.service.worldbank.WorldBankSeriesCache;
 import com.arqaam.logframelab.util.Logging;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -34,87 +48,227 @@ import java.util.stream.Collectors;
 public class WorldBankService implements Logging {
 
     @Autowired
+    @Qualifier("worldBankRestTemplate")
     private RestTemplate restTemplate;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private WorldBankSeriesCache seriesCache;
+
     @Value("${logframelab.world-bank-url}")
     private String URL;
 
+    @Value("${logframelab.world-bank.bulk.concurrency:4}")
+    private int bulkConcurrency;
+
+    private static final String COUNTRIES_SNAPSHOT = "world-bank/countries.json";
+    private static final Pattern INDICATOR_ID_PATTERN = Pattern.compile("[A-Z.]{2,}");
+
+    private volatile Map<String, String> countries = Collections.emptyMap();
+
+    private ExecutorService bulkExecutor;
+
     /**
-     * Retrieves all the countries in which World Bank API has indicators
-     * @return Map of where key is the country's Id and value the name of the country
+     * Retrieves all the countries in which World Bank API has indicators. The countries are loaded from a snapshot
+     * bundled with the application at startup and refreshed from the World Bank API on a schedule
+     * @return Map of where key is the country's Id and value the name of the country. The map can't be modified
      */
     public Map<String, String> getCountries(){
+        if (countries.isEmpty()) {
+            countries = Collections.unmodifiableMap(requestCountries());
+        }
+        return countries;
+    }
+
+    @PostConstruct
+    public void loadCountriesSnapshot() {
+        try (InputStream inputStream = new ClassPathResource(COUNTRIES_SNAPSHOT).getInputStream()) {
+            countries = Collections.unmodifiableMap(objectMapper.readValue(inputStream, new TypeReference<TreeMap<String, String>>() {}));
+            logger().info("Loaded {} countries from the World Bank snapshot", countries.size());
+        } catch (IOException e) {
+            logger().error("Failed to load the World Bank countries snapshot {}", COUNTRIES_SNAPSHOT, e);
+        }
+    }
+
+    /**
+     * Replaces the countries with the ones retrieved from the World Bank API.
+     * The previous countries are kept if the request fails
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${logframelab.world-bank.countries.refresh-interval:86400000}")
+    public void refreshCountries() {
+        try {
+            countries = Collections.unmodifiableMap(requestCountries());
+            logger().info("Refreshed {} countries from the World Bank API", countries.size());
+        } catch (WorldBankAPIRequestFailedException | FailedJsonMappingException e) {
+            logger().warn("Keeping the {} countries previously loaded since the World Bank API request failed", countries.size());
+        }
+    }
+
+    private Map<String, String> requestCountries() {
         logger().info("Requesting countries from the World Bank API");
-        List<Object> response = null;
         try {
             // The request has "per_page=1000" because "/all" doesn't return all and in case the list of countries increases
-            ResponseEntity<List<Object>> responseEntity = restTemplate.exchange(URL+"country?per_page=1000&format=json", HttpMethod.GET,
-                    new HttpEntity<>(new HttpHeaders()), new ParameterizedTypeReference<List<Object>>() {});
-            response = responseEntity.getBody();
-            if(responseEntity.getStatusCode()!=HttpStatus.OK || response == null || response.isEmpty()){
-                logger().error("Failed to receive countries' data from World Bank API. Response: {}", response);
+            List<WorldBankCountry> countryList = restTemplate.execute(URL+"country?per_page=1000&format=json", HttpMethod.GET, null,
+                    response -> {
+                        if (response.getStatusCode() != HttpStatus.OK) {
+                            logger().error("Failed to receive countries' data from World Bank API. Status: {}", response.getStatusCode());
+                            throw new WorldBankAPIRequestFailedException();
+                        }
+                        // The response is [pagination, countries], so the countries are read straight from the second element
+                        try (JsonParser parser = objectMapper.getFactory().createParser(response.getBody())) {
+                            if (parser.nextToken() != JsonToken.START_ARRAY || parser.nextToken() == null) {
+                                throw new WorldBankAPIRequestFailedException();
+                            }
+                            parser.skipChildren();
+                            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                                logger().error("Failed to receive countries' data from World Bank API. The response has no countries");
+                                throw new WorldBankAPIRequestFailedException();
+                            }
+                            return objectMapper.readValue(parser, new TypeReference<List<WorldBankCountry>>(){});
+                        } catch (JsonProcessingException e) {
+                            logger().error("Failed to map json to List<WorldBankCountry>", e);
+                            throw new FailedJsonMappingException();
+                        }
+                    });
+            if (countryList == null || countryList.isEmpty()) {
+                logger().error("Failed to receive countries' data from World Bank API. Response: {}", countryList);
                 throw new WorldBankAPIRequestFailedException();
             }
-            // Since it was parsed as a List it needs to be parsed to Json again so it can be mapped to the object
-            List<WorldBankCountry> countryList = objectMapper.readValue(objectMapper.writeValueAsString(response.get(1)),
-                    new TypeReference<List<WorldBankCountry>>(){});
-
-            return countryList.stream().collect(Collectors.toMap(WorldBankCountry::getId, WorldBankCountry::getName));
+            return countryList.stream().collect(Collectors.toMap(WorldBankCountry::getId, WorldBankCountry::getName,
+                    (first, second) -> first, TreeMap::new));
         // The error response is in XML so it can't be parsed
         }catch (RestClientException e){
             logger().error("Failed to receive countries' data from World Bank API", e);
             throw new WorldBankAPIRequestFailedException();
-        } catch (JsonProcessingException e) {
-            logger().error("Failed to map json to List<WorldBankCountry>. Response: {}", response, e);
-            throw new FailedJsonMappingException();
         }
     }
 
     /**
-     * Retrieves indicators from the all sources of the World Bank API filtered by country and years
+     * Retrieves indicators from the all sources of the World Bank API filtered by country and years.
+     * The whole series of the indicator is cached, so the years are filtered locally
      * @param indicator Indicator that contains the source from which the indicatorId is extracted
      * @param countryId World Bank country's Id
      * @param years List of years from which the values are form
      * @return List of WorldBankIndicator (this object is the same as the one given by the API)
      */
     public List<WorldBankIndicator> getIndicatorValues(Indicator indicator, String countryId, List<Integer> years) {
-        logger().info("Requesting from the World Bank API data for the indicator: {} with countryId: {} and years: {}",
+        logger().info("Retrieving World Bank data for the indicator: {} with countryId: {} and years: {}",
                 indicator, countryId, years);
-        if(indicator.getDataSource()!= null) {
-            Matcher matcher = Pattern.compile("[A-Z.]{2,}").matcher(indicator.getDataSource());
-            if (matcher.find()) {
-                String indicatorId = matcher.group(0);
-                try {
-                    String FULL_URL = URL + "country/" + countryId + "/indicator/" + indicatorId + "?format=jsonstat";
-                    logger().info("Requesting data from the World Bank API. URL: {} ", FULL_URL);
-                    WorldDevelopmentIndicator response = restTemplate.getForObject(FULL_URL, WorldDevelopmentIndicator.class);
-
-                    if (response == null || response.getWDI() == null) {
-                        logger().error("Failed to receive indicator's values from World Bank API. IndicatorId: {}", indicatorId);
-                        throw new WorldBankAPIRequestFailedException();
-                    }
-                    List<WorldBankIndicator> result = new ArrayList<>();
-                    List<String> valuesList = response.getWDI().getValue();
-
-                    String[] yearsList = response.getWDI().getDimension().getYear().getCategory().getLabel().values().toArray(new String[0]);
-                    for (int i = 0; i < valuesList.size(); i++) {
-                        // The API doesn't take multiple dates so the filtering is done by us
-                        if (valuesList.get(i) != null && (years==null || years.isEmpty() || years.contains(Integer.parseInt(yearsList[i])))) {
-                            result.add(WorldBankIndicator.builder().value(valuesList.get(i)).date(yearsList[i]).build());
-                        }
-                    }
-                    return result;
-                // The error response is in XML so it can't be parsed
-                }catch (RestClientException e){
-                    logger().error("Failed to receive indicator's values from World Bank API. IndicatorId: {}", indicatorId, e);
-                    throw new WorldBankAPIRequestFailedException();
+        String indicatorId = extractIndicatorId(indicator);
+        if (indicatorId == null) {
+            logger().error("Failed to extract indicator id from data source. DataSource: {}", indicator.getDataSource());
+            throw new InvalidDataSourceException();
+        }
+        return filterYears(getSeries(countryId, indicatorId), years);
+    }
+
+    /**
+     * Retrieves the values of several indicators at once, filtered by country and years. Indicators that share
+     * the same World Bank indicator are only requested once, and the requests are sent concurrently
+     * @param indicators Indicators that contain the source from which the indicatorId is extracted
+     * @param countryId World Bank country's Id
+     * @param years List of years from which the values are form
+     * @return Map where the key is the indicator's id and the value its values, in the order of the indicators given.
+     * Indicators whose data source isn't from the World Bank or whose values failed to be retrieved are left out
+     */
+    public Map<Long, List<WorldBankIndicator>> getIndicatorsValues(List<Indicator> indicators, String countryId, List<Integer> years) {
+        logger().info("Retrieving World Bank data for {} indicators with countryId: {} and years: {}",
+                indicators.size(), countryId, years);
+        Map<String, CompletableFuture<Map<String, String>>> seriesById = new HashMap<>();
+        Map<Long, String> indicatorIds = new LinkedHashMap<>();
+        for (Indicator indicator : indicators) {
+            String indicatorId = extractIndicatorId(indicator);
+            if (indicatorId == null) {
+                logger().warn("Skipping indicator {} since its data source isn't from the World Bank. DataSource: {}",
+                        indicator.getId(), indicator.getDataSource());
+                continue;
+            }
+            indicatorIds.put(indicator.getId(), indicatorId);
+            seriesById.computeIfAbsent(indicatorId,
+                    id -> CompletableFuture.supplyAsync(() -> getSeries(countryId, id), bulkExecutor));
+        }
+        Map<Long, List<WorldBankIndicator>> result = new LinkedHashMap<>();
+        indicatorIds.forEach((id, indicatorId) -> {
+            try {
+                result.put(id, filterYears(seriesById.get(indicatorId).join(), years));
+            } catch (CompletionException e) {
+                logger().warn("Skipping indicator {} since its values failed to be retrieved. IndicatorId: {}", id, indicatorId);
+            }
+        });
+        return result;
+    }
+
+    @PostConstruct
+    public void startBulkExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        bulkExecutor = Executors.newFixedThreadPool(bulkConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "world-bank-bulk-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkExecutor.shutdownNow();
+    }
+
+    @Nullable
+    private String extractIndicatorId(Indicator indicator) {
+        if (indicator.getDataSource() == null) {
+            return null;
+        }
+        Matcher matcher = INDICATOR_ID_PATTERN.matcher(indicator.getDataSource());
+        return matcher.find() ? matcher.group(0) : null;
+    }
+
+    private Map<String, String> getSeries(String countryId, String indicatorId) {
+        return seriesCache.get(countryId, indicatorId, () -> requestSeries(countryId, indicatorId));
+    }
+
+    private List<WorldBankIndicator> filterYears(Map<String, String> series, List<Integer> years) {
+        List<WorldBankIndicator> result = new ArrayList<>();
+        // The API doesn't take multiple dates so the filtering is done by us
+        series.forEach((year, value) -> {
+            if (years == null || years.isEmpty() || years.contains(Integer.parseInt(year))) {
+                result.add(WorldBankIndicator.builder().value(value).date(year).build());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Requests every value of the indicator for the country from the World Bank API
+     * @param countryId World Bank country's Id
+     * @param indicatorId World Bank indicator's Id
+     * @return Values by year, without the years that have no value
+     */
+    private Map<String, String> requestSeries(String countryId, String indicatorId) {
+        try {
+            String FULL_URL = URL + "country/" + countryId + "/indicator/" + indicatorId + "?format=jsonstat";
+            logger().info("Requesting data from the World Bank API. URL: {} ", FULL_URL);
+            WorldDevelopmentIndicator response = restTemplate.getForObject(FULL_URL, WorldDevelopmentIndicator.class);
+
+            if (response == null || response.getWDI() == null) {
+                logger().error("Failed to receive indicator's values from World Bank API. IndicatorId: {}", indicatorId);
+                throw new WorldBankAPIRequestFailedException();
+            }
+            Map<String, String> series = new LinkedHashMap<>();
+            List<String> valuesList = response.getWDI().getValue();
+
+            String[] yearsList = response.getWDI().getDimension().getYear().getCategory().getLabel().values().toArray(new String[0]);
+            for (int i = 0; i < valuesList.size(); i++) {
+                if (valuesList.get(i) != null) {
+                    series.put(yearsList[i], valuesList.get(i));
                 }
             }
+            return series;
+        // The error response is in XML so it can't be parsed
+        }catch (RestClientException e){
+            logger().error("Failed to receive indicator's values from World Bank API. IndicatorId: {}", indicatorId, e);
+            throw new WorldBankAPIRequestFailedException();
         }
-        logger().error("Failed to extract indicator id from data source. DataSource: {}", indicator.getDataSource());
-        throw new InvalidDataSourceException();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published whenever indicators (or the data embedded in them) are created, updated or deleted.
+ * The catalogue is rebuilt once the surrounding transaction commits.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class CatalogueChangedEvent {
+
+    private final String reason;
+}
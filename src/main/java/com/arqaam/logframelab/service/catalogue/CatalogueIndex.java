@@ -0,0 +1,108 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import com.arqaam.logframelab.model.persistence.CRSCode;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.model.persistence.SDGCode;
+import com.arqaam.logframelab.model.persistence.Source;
+import com.arqaam.logframelab.util.Constants;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Inverted index over the position of each indicator in a snapshot. Every sector, level, source,
+ * SDG code and CRS code has a bitset with the indicators that have it, and indicators without a value
+ * are kept under the empty bucket (<code>Constants.EMPTY_VALUE_ID</code> or an empty sector).
+ * Values of a criterion are OR'ed and the criteria are AND'ed.
+ */
+final class CatalogueIndex {
+
+    private static final String EMPTY_SECTOR = "";
+
+    private final int size;
+    private final Map<String, BitSet> bySector = new HashMap<>();
+    private final Map<Long, BitSet> byLevel = new HashMap<>();
+    private final Map<Long, BitSet> bySource = new HashMap<>();
+    private final Map<Long, BitSet> bySdgCode = new HashMap<>();
+    private final Map<Long, BitSet> byCrsCode = new HashMap<>();
+    private final String[] names;
+
+    CatalogueIndex(List<Indicator> indicators) {
+        size = indicators.size();
+        names = new String[size];
+        for (int i = 0; i < size; i++) {
+            Indicator indicator = indicators.get(i);
+            names[i] = indicator.getName() == null ? "" : indicator.getName().toLowerCase();
+            bucket(bySector, sectorKey(indicator.getSector())).set(i);
+            bucket(byLevel, indicator.getLevel() == null ? Constants.EMPTY_VALUE_ID : indicator.getLevel().getId()).set(i);
+            index(bySource, indicator.getSource(), Source::getId, i);
+            index(bySdgCode, indicator.getSdgCode(), SDGCode::getId, i);
+            index(byCrsCode, indicator.getCrsCode(), CRSCode::getId, i);
+        }
+    }
+
+    /**
+     * Evaluates the filter
+     * @param filter Criteria to be matched
+     * @return Positions of the indicators that match the filter
+     */
+    BitSet select(IndicatorFilter filter) {
+        BitSet result = new BitSet(size);
+        result.set(0, size);
+        if (!IndicatorFilter.isEmpty(filter.getSectors())) {
+            List<String> keys = new ArrayList<>(filter.getSectors().size());
+            for (String sector : filter.getSectors()) {
+                keys.add(Constants.EMPTY_VALUE.equalsIgnoreCase(sector) ? EMPTY_SECTOR : sectorKey(sector));
+            }
+            result.and(union(bySector, keys));
+        }
+        if (!IndicatorFilter.isEmpty(filter.getLevelIds())) {
+            result.and(union(byLevel, filter.getLevelIds()));
+        }
+        if (!IndicatorFilter.isEmpty(filter.getSourceIds())) {
+            result.and(union(bySource, filter.getSourceIds()));
+        }
+        if (!IndicatorFilter.isEmpty(filter.getSdgCodeIds())) {
+            result.and(union(bySdgCode, filter.getSdgCodeIds()));
+        }
+        if (!IndicatorFilter.isEmpty(filter.getCrsCodeIds())) {
+            result.and(union(byCrsCode, filter.getCrsCodeIds()));
+        }
+        if (filter.getName() != null && !filter.getName().isEmpty()) {
+            String name = filter.getName().toLowerCase();
+            for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+                if (!names[i].contains(name)) {
+                    result.clear(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String sectorKey(String sector) {
+        return sector == null ? EMPTY_SECTOR : sector.toLowerCase();
+    }
+
+    private static <K> BitSet bucket(Map<K, BitSet> index, K key) {
+        return index.computeIfAbsent(key, k -> new BitSet());
+    }
+
+    private static <T> void index(Map<Long, BitSet> index, Set<T> values, Function<T, Long> idGetter, int position) {
+        if (values == null || values.isEmpty()) {
+            bucket(index, Constants.EMPTY_VALUE_ID).set(position);
+        } else {
+            values.forEach(value -> bucket(index, idGetter.apply(value)).set(position));
+        }
+    }
+
+    private static <K> BitSet union(Map<K, BitSet> index, Collection<K> keys) {
+        BitSet union = new BitSet();
+        for (K key : keys) {
+            BitSet bits = index.get(key);
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        return union;
+    }
+}
@@ -0,0 +1,100 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import com.arqaam.logframelab.model.NearDuplicate;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Immutable view of the approved indicator catalogue at a given version.
+ * The indicators held here are detached copies and must be treated as read-only.
+ */
+@Getter
+public final class CatalogueSnapshot {
+
+    private final long version;
+    private final Instant createdAt;
+    private final List<Indicator> indicators;
+    private final Map<Long, Indicator> indicatorsById;
+    @Getter(AccessLevel.NONE)
+    private final CatalogueIndex index;
+    @Getter(AccessLevel.NONE)
+    private final NearDuplicateIndex nearDuplicateIndex;
+
+    private CatalogueSnapshot(long version, List<Indicator> indicators) {
+        this.version = version;
+        this.createdAt = Instant.now();
+        this.indicators = Collections.unmodifiableList(indicators);
+        Map<Long, Indicator> byId = new HashMap<>(indicators.size() * 2);
+        indicators.forEach(indicator -> byId.put(indicator.getId(), indicator));
+        this.indicatorsById = Collections.unmodifiableMap(byId);
+        this.index = new CatalogueIndex(indicators);
+        this.nearDuplicateIndex = new NearDuplicateIndex(indicators);
+    }
+
+    /**
+     * Builds a snapshot copying the indicators given, so it doesn't keep references to managed entities
+     * @param version Version of the snapshot
+     * @param indicators Indicators with the associations already loaded
+     * @return Snapshot with the indicators
+     */
+    public static CatalogueSnapshot of(long version, Collection<Indicator> indicators) {
+        List<Indicator> copies = new ArrayList<>(indicators.size());
+        for (Indicator indicator : indicators) {
+            copies.add(indicator.toBuilder()
+                    .source(copyOf(indicator.getSource()))
+                    .sdgCode(copyOf(indicator.getSdgCode()))
+                    .crsCode(copyOf(indicator.getCrsCode()))
+                    .build());
+        }
+        return new CatalogueSnapshot(version, copies);
+    }
+
+    /**
+     * Retrieves the indicators that match the filter, in catalogue order
+     * @param filter Criteria to be matched
+     * @return List of indicators
+     */
+    public List<Indicator> search(IndicatorFilter filter) {
+        if (filter.isEmpty()) {
+            return indicators;
+        }
+        BitSet matches = index.select(filter);
+        List<Indicator> result = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(indicators.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the indicators whose name and description are similar to the ones given, through the MinHash index
+     * @param name Name of the indicator
+     * @param description Description of the indicator, if any
+     * @param threshold Minimum estimated similarity, between 0 and 1
+     * @return Similar indicators, most similar first
+     */
+    public List<NearDuplicate> findNearDuplicates(String name, String description, double threshold) {
+        List<NearDuplicateIndex.Match> matches = nearDuplicateIndex.find(name, description, threshold);
+        List<NearDuplicate> result = new ArrayList<>(matches.size());
+        for (NearDuplicateIndex.Match match : matches) {
+            result.add(new NearDuplicate(indicators.get(match.position), match.similarity));
+        }
+        return result;
+    }
+
+    public Optional<Indicator> getIndicator(Long id) {
+        return Optional.ofNullable(indicatorsById.get(id));
+    }
+
+    public int size() {
+        return indicators.size();
+    }
+
+    private static <T> Set<T> copyOf(Set<T> set) {
+        return set == null ? null : Set.copyOf(set);
+    }
+}
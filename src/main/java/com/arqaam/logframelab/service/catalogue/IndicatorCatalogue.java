@@ -0,0 +1,79 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import com.arqaam.logframelab.util.Logging;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link CatalogueSnapshot} of the approved indicators.
+ * Readers always get a complete snapshot; a rebuild swaps the reference only once the new one is ready.
+ */
+@Service
+public class IndicatorCatalogue implements Logging {
+
+    private final IndicatorRepository indicatorRepository;
+    private final AtomicReference<CatalogueSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public IndicatorCatalogue(IndicatorRepository indicatorRepository) {
+        this.indicatorRepository = indicatorRepository;
+    }
+
+    /**
+     * Retrieves the current snapshot, loading it if it wasn't loaded yet
+     * @return Current snapshot
+     */
+    public CatalogueSnapshot getSnapshot() {
+        CatalogueSnapshot current = snapshot.get();
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot.get();
+                if (current == null) {
+                    current = refresh();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reloads the approved indicators from the database and replaces the current snapshot
+     * @return The new snapshot
+     */
+    public synchronized CatalogueSnapshot refresh() {
+        long start = System.currentTimeMillis();
+        CatalogueSnapshot next = CatalogueSnapshot.of(version.incrementAndGet(),
+                indicatorRepository.findAllApprovedWithAssociations());
+        snapshot.set(next);
+        logger().info("Loaded indicator catalogue version {} with {} indicators in {} ms",
+                next.getVersion(), next.size(), System.currentTimeMillis() - start);
+        return next;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger().error("Failed to load the indicator catalogue at startup, it will be loaded on first use", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        logger().info("Indicator catalogue changed: {}", event.getReason());
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // The change is already committed, so the stale snapshot is dropped and reloaded on the next read
+            logger().error("Failed to rebuild the indicator catalogue", e);
+            snapshot.set(null);
+        }
+    }
+}
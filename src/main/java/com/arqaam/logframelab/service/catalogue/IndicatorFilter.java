@@ -0,0 +1,69 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.controller.dto.IndicatorsRequestDto.FilterRequestDto;
+import com.arqaam.logframelab.model.persistence.CRSCode;
+import com.arqaam.logframelab.model.persistence.SDGCode;
+import com.arqaam.logframelab.model.persistence.Source;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Criteria evaluated against the catalogue index. A null or empty collection means the criterion is not applied.
+ * The ids may contain <code>Constants.EMPTY_VALUE_ID</code> and the sectors <code>Constants.EMPTY_VALUE</code>
+ * to match indicators without a value.
+ */
+@Value
+@Builder
+public class IndicatorFilter {
+
+    Collection<String> sectors;
+    Collection<Long> sourceIds;
+    Collection<Long> levelIds;
+    Collection<Long> sdgCodeIds;
+    Collection<Long> crsCodeIds;
+    String name;
+
+    public static IndicatorFilter from(FilterRequestDto filters) {
+        if (filters == null) {
+            return IndicatorFilter.builder().build();
+        }
+        return IndicatorFilter.builder()
+                .sectors(filters.getSectors())
+                .sourceIds(filters.getSourceIds())
+                .levelIds(filters.getLevelIds())
+                .sdgCodeIds(filters.getSdgCodeIds())
+                .crsCodeIds(filters.getCrsCodeIds())
+                .name(filters.getIndicatorName())
+                .build();
+    }
+
+    public static IndicatorFilter from(FiltersDto filters) {
+        if (filters == null) {
+            return IndicatorFilter.builder().build();
+        }
+        Set<Long> levelIds = new LinkedHashSet<>(filters.getLevelIds());
+        filters.getLevel().forEach(level -> levelIds.add(level.getId()));
+        return IndicatorFilter.builder()
+                .sectors(filters.getSector())
+                .sourceIds(filters.getSource().stream().map(Source::getId).collect(Collectors.toList()))
+                .levelIds(levelIds)
+                .sdgCodeIds(filters.getSdgCode().stream().map(SDGCode::getId).collect(Collectors.toList()))
+                .crsCodeIds(filters.getCrsCode().stream().map(CRSCode::getId).collect(Collectors.toList()))
+                .build();
+    }
+
+    public boolean isEmpty() {
+        return isEmpty(sectors) && isEmpty(sourceIds) && isEmpty(levelIds) && isEmpty(sdgCodeIds)
+                && isEmpty(crsCodeIds) && (name == null || name.isEmpty());
+    }
+
+    static boolean isEmpty(Collection<?> values) {
+        return values == null || values.isEmpty();
+    }
+}
@@ -0,0 +1,169 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import com.arqaam.logframelab.model.persistence.Indicator;
+
+import java.util.*;
+
+/**
+ * MinHash signatures of the name and description of each indicator in a snapshot, bucketed by locality-sensitive
+ * hashing. The text is split into overlapping shingles of {@value #SHINGLE_SIZE} characters, and the share of equal
+ * values between two signatures estimates the Jaccard similarity of their shingles. Signatures are cut into
+ * {@value #BANDS} bands of {@value #ROWS} values, and indicators sharing a band are candidates, so a lookup only
+ * compares the signature with the few indicators in its buckets instead of the whole catalogue.
+ * With these sizes, pairs above 0.7 of similarity become candidates with a probability of about 99%.
+ */
+final class NearDuplicateIndex {
+
+    static final int SHINGLE_SIZE = 4;
+    static final int BANDS = 16;
+    static final int ROWS = 4;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS;
+    /** Coefficients of the hash functions, fixed so signatures are comparable across snapshots */
+    private static final long[] MULTIPLIERS = new long[SIGNATURE_SIZE];
+    private static final long[] INCREMENTS = new long[SIGNATURE_SIZE];
+
+    static {
+        Random random = new Random(0x5eed);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            MULTIPLIERS[i] = random.nextLong() | 1;
+            INCREMENTS[i] = random.nextLong();
+        }
+    }
+
+    private final int[][] signatures;
+    private final List<Map<Long, int[]>> buckets = new ArrayList<>(BANDS);
+
+    NearDuplicateIndex(List<Indicator> indicators) {
+        signatures = new int[indicators.size()][];
+        List<Map<Long, List<Integer>>> positions = new ArrayList<>(BANDS);
+        for (int band = 0; band < BANDS; band++) {
+            positions.add(new HashMap<>());
+        }
+        for (int i = 0; i < signatures.length; i++) {
+            Indicator indicator = indicators.get(i);
+            signatures[i] = signature(indicator.getName(), indicator.getDescription());
+            if (signatures[i] != null) {
+                for (int band = 0; band < BANDS; band++) {
+                    positions.get(band).computeIfAbsent(bandKey(signatures[i], band), key -> new ArrayList<>(1)).add(i);
+                }
+            }
+        }
+        // Stored as arrays, since the buckets don't change once built
+        for (Map<Long, List<Integer>> band : positions) {
+            Map<Long, int[]> compact = new HashMap<>(band.size() * 2);
+            band.forEach((key, list) -> compact.put(key, list.stream().mapToInt(Integer::intValue).toArray()));
+            buckets.add(compact);
+        }
+    }
+
+    /**
+     * Finds the indicators whose name and description are similar to the ones given
+     * @param name Name of the indicator
+     * @param description Description of the indicator, if any
+     * @param threshold Minimum estimated similarity, between 0 and 1
+     * @return Positions of the indicators in the snapshot with their estimated similarity, most similar first
+     */
+    List<Match> find(String name, String description, double threshold) {
+        int[] signature = signature(name, description);
+        if (signature == null) {
+            return Collections.emptyList();
+        }
+        BitSet candidates = new BitSet(signatures.length);
+        for (int band = 0; band < BANDS; band++) {
+            int[] bucket = buckets.get(band).get(bandKey(signature, band));
+            if (bucket != null) {
+                for (int position : bucket) {
+                    candidates.set(position);
+                }
+            }
+        }
+        List<Match> matches = new ArrayList<>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            double similarity = similarity(signature, signatures[i]);
+            if (similarity >= threshold) {
+                matches.add(new Match(i, similarity));
+            }
+        }
+        matches.sort(Comparator.comparingDouble((Match match) -> match.similarity).reversed());
+        return matches;
+    }
+
+    /**
+     * Computes the MinHash signature of the text of an indicator
+     * @return Signature, or null if there is no text
+     */
+    static int[] signature(String name, String description) {
+        String text = normalize(name, description);
+        if (text.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, text.length() - SHINGLE_SIZE + 1);
+        for (int start = 0; start < shingles; start++) {
+            int shingle = 0;
+            for (int i = start; i < Math.min(start + SHINGLE_SIZE, text.length()); i++) {
+                shingle = 31 * shingle + text.charAt(i);
+            }
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                int hash = (int) ((MULTIPLIERS[i] * shingle + INCREMENTS[i]) >>> 32);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    static double similarity(int[] signature, int[] other) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (signature[i] == other[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    /**
+     * Lower-cases the text and replaces every run of characters that aren't letters or digits with a single space
+     */
+    private static String normalize(String name, String description) {
+        StringBuilder text = new StringBuilder();
+        for (String part : new String[]{name, description}) {
+            if (part == null) {
+                continue;
+            }
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    text.append(Character.toLowerCase(c));
+                } else if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+                    text.append(' ');
+                }
+            }
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+                text.append(' ');
+            }
+        }
+        return text.toString().trim();
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            key = key * 1_000_003L + signature[i];
+        }
+        return key;
+    }
+
+    static final class Match {
+        final int position;
+        final double similarity;
+
+        private Match(int position, double similarity) {
+            this.position = position;
+            this.similarity = similarity;
+        }
+    }
+}
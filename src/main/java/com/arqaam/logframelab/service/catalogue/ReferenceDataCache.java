@@ -0,0 +1,70 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import com.arqaam.logframelab.util.Logging;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches reference data payloads (filters, sources) that are read on every page load but rarely change.
+ * Every entry is tagged with the generation it was loaded in, and any change to the catalogue or the
+ * reference data starts a new generation, so stale entries are reloaded on their next read.
+ * The generation is also the entity tag sent to clients.
+ */
+@Component
+public class ReferenceDataCache implements Logging {
+
+    /** Seeded with the startup time so tags handed out before a restart don't match the new data */
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+    private final Map<String, Entry<?>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the cached value of the key, loading it if it is missing or stale
+     * @param key Name of the payload
+     * @param loader Loads the payload from the database
+     * @return Entry with the payload and its entity tag. The payload is shared and mustn't be modified
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Entry<T> get(String key, Supplier<T> loader) {
+        long current = generation.get();
+        Entry<?> entry = entries.get(key);
+        if (entry == null || entry.generation != current) {
+            logger().info("Loading reference data {} for generation {}", key, current);
+            // Loaded with the generation read before loading, so a change in between makes it stale again
+            entry = new Entry<>(current, "\"" + key + "-" + Long.toHexString(current) + "\"", loader.get());
+            entries.put(key, entry);
+        }
+        return (Entry<T>) entry;
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        invalidate();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReferenceDataChanged(ReferenceDataChangedEvent event) {
+        logger().info("Reference data changed: {}", event.getReason());
+        invalidate();
+    }
+
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static class Entry<T> {
+        @Getter(AccessLevel.NONE)
+        private final long generation;
+        private final String eTag;
+        private final T value;
+    }
+}
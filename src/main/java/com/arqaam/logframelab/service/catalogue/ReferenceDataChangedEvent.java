@@ -0,0 +1,17 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when data listed by the filters changes without changing the approved catalogue,
+ * e.g. a source is created or indicators are uploaded for approval.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class ReferenceDataChangedEvent {
+
+    private final String reason;
+}
@@ -0,0 +1,69 @@
+package com.arqaam.logframelab.service.counter;
+
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import com.arqaam.logframelab.util.Logging;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates the number of times each indicator was downloaded and writes them periodically,
+ * so exports don't write to the database. Each flush issues one increment update per distinct amount,
+ * so concurrent downloads of the same indicator are never lost.
+ */
+@Component
+public class IndicatorDownloadCounter implements Logging {
+
+    private final IndicatorRepository indicatorRepository;
+    private final Map<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    public IndicatorDownloadCounter(IndicatorRepository indicatorRepository) {
+        this.indicatorRepository = indicatorRepository;
+    }
+
+    /**
+     * Counts one download of each of the indicators
+     * @param indicators Indicators that were downloaded
+     */
+    public void increment(Collection<Indicator> indicators) {
+        indicators.forEach(indicator -> add(indicator.getId(), 1));
+    }
+
+    @Scheduled(fixedDelayString = "${logframelab.download-counter.flush-interval:30000}")
+    public synchronized void flush() {
+        // Counters are reset atomically and kept in the map, so increments racing with the flush go to the next one
+        Map<Long, List<Long>> idsByAmount = new HashMap<>();
+        pending.forEach((id, counter) -> {
+            long amount = counter.getAndSet(0);
+            if (amount > 0) {
+                idsByAmount.computeIfAbsent(amount, k -> new ArrayList<>()).add(id);
+            }
+        });
+        if (idsByAmount.isEmpty()) {
+            return;
+        }
+        logger().info("Writing downloads of {} indicators", idsByAmount.values().stream().mapToInt(List::size).sum());
+        for (Map.Entry<Long, List<Long>> entry : idsByAmount.entrySet()) {
+            try {
+                indicatorRepository.incrementTimesDownloaded(entry.getValue(), entry.getKey());
+            } catch (RuntimeException e) {
+                logger().error("Failed to write the downloads of the indicators {}. They will be retried", entry.getValue(), e);
+                entry.getValue().forEach(id -> add(id, entry.getKey()));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void add(Long id, long amount) {
+        pending.computeIfAbsent(id, k -> new AtomicLong()).addAndGet(amount);
+    }
+}
@@ -0,0 +1,265 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.exception.MLAPIRequestFailedException;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLScanIndicator;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLSearchResult;
+import com.arqaam.logframelab.service.MachineLearningService;
+import com.arqaam.logframelab.util.Logging;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Scans large documents for indicators by splitting their text on paragraph boundaries into chunks of
+ * a bounded size, which are sent to the Machine Learning API concurrently. The scores an indicator got
+ * in each chunk are then merged into one. Texts that fit in a single chunk are sent as they are.
+ * When the API fails or doesn't answer a chunk within the latency budget, counted from when the request of the
+ * chunk started, the text is scanned by keyword with the {@link KeywordScanEngine} instead, if the fallback is enabled.
+ */
+@Service
+public class ChunkedScanService implements Logging {
+
+    private static final Pattern PARAGRAPH = Pattern.compile("\\R");
+
+    /**
+     * How the scores of an indicator found in several chunks are merged
+     */
+    public enum ScoreMerge {
+        /** Highest score of any chunk */
+        MAX,
+        /** Average of the scores, weighted by the size of the chunks the indicator was found in */
+        WEIGHTED
+    }
+
+    private final MachineLearningService machineLearningService;
+    private final KeywordScanEngine keywordScanEngine;
+    private final MeterRegistry meterRegistry;
+    private final int maxChunkSize;
+    private final ScoreMerge scoreMerge;
+    private final boolean fallbackEnabled;
+    private final long latencyBudget;
+    private final ExecutorService executor;
+
+    public ChunkedScanService(MachineLearningService machineLearningService, KeywordScanEngine keywordScanEngine,
+                              MeterRegistry meterRegistry,
+                              @Value("${logframelab.scan.chunk.max-size:20000}") int maxChunkSize,
+                              @Value("${logframelab.scan.chunk.concurrency:4}") int concurrency,
+                              @Value("${logframelab.scan.chunk.merge:MAX}") ScoreMerge scoreMerge,
+                              @Value("${logframelab.scan.fallback.enabled:true}") boolean fallbackEnabled,
+                              @Value("${logframelab.scan.fallback.latency-budget:30000}") long latencyBudget) {
+        this.machineLearningService = machineLearningService;
+        this.keywordScanEngine = keywordScanEngine;
+        this.meterRegistry = meterRegistry;
+        this.maxChunkSize = maxChunkSize;
+        this.scoreMerge = scoreMerge;
+        this.fallbackEnabled = fallbackEnabled;
+        this.latencyBudget = latencyBudget;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "scan-chunk-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public List<MLScanIndicator> scan(String text, @Nullable FiltersDto filters) {
+        return scan(text, filters, null);
+    }
+
+    /**
+     * Scans the text for indicators, chunk by chunk if it is too large for a single request
+     * @param text Text extracted from the document
+     * @param filters Filters sent to the Machine Learning API
+     * @param progress Receives the fraction of chunks scanned after each chunk, if set
+     * @return Indicators found with their merged score, highest score first
+     */
+    public List<MLScanIndicator> scan(String text, @Nullable FiltersDto filters, @Nullable DoubleConsumer progress) {
+        try {
+            return scanWithMachineLearning(text, filters, progress);
+        } catch (MLAPIRequestFailedException | LatencyBudgetExceededException e) {
+            if (!fallbackEnabled) {
+                throw e;
+            }
+            String reason = e instanceof LatencyBudgetExceededException ? "timeout" : "error";
+            logger().warn("Scanning the text by keyword since the Machine Learning API is unavailable ({})", reason);
+            Counter.builder("logframelab.scan.fallback").description("Scans answered by the keyword engine")
+                    .tag("reason", reason).register(meterRegistry).increment();
+            List<MLScanIndicator> indicators = keywordScanEngine.scan(text, filters);
+            reportProgress(progress, 1);
+            return indicators;
+        }
+    }
+
+    private List<MLScanIndicator> scanWithMachineLearning(String text, @Nullable FiltersDto filters, @Nullable DoubleConsumer progress) {
+        List<String> chunks = split(text, maxChunkSize);
+        if (chunks.size() <= 1) {
+            chunks = Collections.singletonList(text);
+        } else {
+            logger().info("Scanning the text for indicators in {} chunks", chunks.size());
+        }
+        List<String> finalChunks = chunks;
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Integer>> scans = new ArrayList<>(chunks.size());
+        List<List<MLScanIndicator>> results = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+        // When the request of each chunk started, 0 while it waits in the queue of the pool
+        AtomicLongArray startedAt = new AtomicLongArray(chunks.size());
+        boolean[] finished = new boolean[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            int index = i;
+            scans.add(completionService.submit(() -> {
+                startedAt.set(index, System.currentTimeMillis());
+                results.set(index, machineLearningService.scanForIndicators(finalChunks.get(index), filters));
+                return index;
+            }));
+        }
+        try {
+            for (int done = 1; done <= chunks.size(); ) {
+                Future<Integer> scan;
+                if (fallbackEnabled) {
+                    // The budget only applies when there is a fallback, otherwise the scan waits for the API as before.
+                    // It is measured per chunk from when its request started, as the pool is shared with other scans
+                    long deadline = deadline(startedAt, finished);
+                    long timeout = deadline == Long.MAX_VALUE ? latencyBudget : deadline - System.currentTimeMillis();
+                    scan = completionService.poll(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+                    if (scan == null) {
+                        if (System.currentTimeMillis() >= deadline(startedAt, finished)) {
+                            throw new LatencyBudgetExceededException();
+                        }
+                        // every chunk was still queued, or the slowest one just finished
+                        continue;
+                    }
+                } else {
+                    scan = completionService.take();
+                }
+                finished[join(scan)] = true;
+                reportProgress(progress, (double) done++ / chunks.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning the text", e);
+        } finally {
+            // Stops the remaining chunks if one of them failed
+            scans.forEach(scan -> scan.cancel(true));
+        }
+        return chunks.size() == 1 ? results.get(0) : merge(chunks, results);
+    }
+
+    /**
+     * Computes when the latency budget of the chunks being scanned runs out
+     * @return Deadline of the chunk that started first among the unfinished ones, or Long.MAX_VALUE if all of them are queued
+     */
+    private long deadline(AtomicLongArray startedAt, boolean[] finished) {
+        long deadline = Long.MAX_VALUE;
+        for (int i = 0; i < finished.length; i++) {
+            long started = startedAt.get(i);
+            if (!finished[i] && started > 0) {
+                deadline = Math.min(deadline, started + latencyBudget);
+            }
+        }
+        return deadline;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private List<MLScanIndicator> merge(List<String> chunks, List<List<MLScanIndicator>> results) {
+        Map<Long, MLScanIndicator> merged = new LinkedHashMap<>();
+        Map<Long, double[]> weights = new HashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            double weight = chunks.get(i).length();
+            for (MLScanIndicator indicator : results.get(i)) {
+                double similarity = indicator.getSearchResult() == null || indicator.getSearchResult().getSimilarity() == null
+                        ? 0 : indicator.getSearchResult().getSimilarity();
+                merged.putIfAbsent(indicator.getId(), indicator);
+                double[] total = weights.computeIfAbsent(indicator.getId(), k -> new double[]{Double.NEGATIVE_INFINITY, 0, 0});
+                total[0] = Math.max(total[0], similarity);
+                total[1] += similarity * weight;
+                total[2] += weight;
+            }
+        }
+        List<MLScanIndicator> indicators = new ArrayList<>(merged.size());
+        merged.forEach((id, indicator) -> {
+            double[] total = weights.get(id);
+            double similarity = scoreMerge == ScoreMerge.MAX ? total[0] : total[1] / total[2];
+            indicators.add(new MLScanIndicator(indicator.getIndicator(), id, new MLSearchResult(similarity)));
+        });
+        indicators.sort(Comparator.comparing((MLScanIndicator indicator) -> indicator.getSearchResult().getSimilarity()).reversed());
+        return indicators;
+    }
+
+    /**
+     * Splits the text on line breaks into chunks of at most the size given. Paragraphs larger than that
+     * are split on the last whitespace that fits
+     * @param text Text to be split
+     * @param maxSize Maximum number of characters per chunk
+     * @return Chunks, without blank paragraphs
+     */
+    static List<String> split(String text, int maxSize) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null) {
+            return chunks;
+        }
+        StringBuilder current = new StringBuilder();
+        for (String line : PARAGRAPH.split(text)) {
+            String paragraph = line.strip();
+            if (paragraph.isEmpty()) {
+                continue;
+            }
+            if (current.length() > 0 && current.length() + 1 + paragraph.length() > maxSize) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            while (paragraph.length() > maxSize) {
+                int end = paragraph.lastIndexOf(' ', maxSize);
+                end = end > 0 ? end : maxSize;
+                chunks.add(paragraph.substring(0, end).strip());
+                paragraph = paragraph.substring(end).strip();
+            }
+            if (current.length() > 0) {
+                current.append('\n');
+            }
+            current.append(paragraph);
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    private void reportProgress(@Nullable DoubleConsumer progress, double fraction) {
+        if (progress != null) {
+            try {
+                progress.accept(fraction);
+            } catch (RuntimeException e) {
+                logger().warn("Failed to report the progress of the scan", e);
+            }
+        }
+    }
+
+    private static class LatencyBudgetExceededException extends RuntimeException {
+    }
+
+    private static <T> T join(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
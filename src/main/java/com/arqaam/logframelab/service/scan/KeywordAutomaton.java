@@ -0,0 +1,113 @@
+package com.arqaam.logframelab.service.scan;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Aho–Corasick automaton over the words of the indicator keywords. The text is read once, word by word,
+ * and every keyword ending at each word is found at the same time, so the cost doesn't grow with the
+ * number of keywords. Keywords only match whole words, regardless of case.
+ */
+class KeywordAutomaton {
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}_]+");
+
+    private final Node root = new Node();
+    private final long version;
+
+    /**
+     * @param version Version of the catalogue the keywords were taken from
+     * @param keywords Keywords of each indicator, by indicator id
+     */
+    KeywordAutomaton(long version, Map<Long, ? extends Collection<String>> keywords) {
+        this.version = version;
+        keywords.forEach((id, indicatorKeywords) -> indicatorKeywords.forEach(keyword -> add(id, keyword)));
+        link();
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Counts how many times the keywords of each indicator appear in the text
+     * @param text Text to be searched
+     * @return Number of keyword hits by indicator id, only for indicators with hits
+     */
+    Map<Long, Integer> count(String text) {
+        Map<Long, Integer> hits = new HashMap<>();
+        if (text == null) {
+            return hits;
+        }
+        Node state = root;
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            String word = matcher.group().toLowerCase(Locale.ROOT);
+            while (state != root && !state.next.containsKey(word)) {
+                state = state.fail;
+            }
+            state = state.next.getOrDefault(word, root);
+            for (long id : state.output) {
+                hits.merge(id, 1, Integer::sum);
+            }
+        }
+        return hits;
+    }
+
+    private void add(Long id, String keyword) {
+        if (keyword == null) {
+            return;
+        }
+        Node node = root;
+        Matcher matcher = WORD.matcher(keyword);
+        while (matcher.find()) {
+            node = node.next.computeIfAbsent(matcher.group().toLowerCase(Locale.ROOT), k -> new Node());
+        }
+        if (node != root) {
+            node.ids.add(id);
+        }
+    }
+
+    /**
+     * Sets the failure link of every node, breadth first, and merges the output of the node it links to
+     */
+    private void link() {
+        Deque<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        root.output = new long[0];
+        for (Node child : root.next.values()) {
+            child.fail = root;
+            child.output = toArray(child.ids);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<String, Node> entry : node.next.entrySet()) {
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.next.containsKey(entry.getKey())) {
+                    fail = fail.fail;
+                }
+                child.fail = fail.next.getOrDefault(entry.getKey(), root);
+                Set<Long> output = new LinkedHashSet<>(child.ids);
+                for (long id : child.fail.output) {
+                    output.add(id);
+                }
+                child.output = toArray(output);
+                queue.add(child);
+            }
+        }
+    }
+
+    private static long[] toArray(Collection<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static class Node {
+        private final Map<String, Node> next = new HashMap<>();
+        private final Set<Long> ids = new LinkedHashSet<>();
+        private Node fail;
+        private long[] output;
+    }
+}
@@ -0,0 +1,93 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLScanIndicator;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLSearchResult;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.service.catalogue.CatalogueSnapshot;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.service.catalogue.IndicatorFilter;
+import com.arqaam.logframelab.util.Logging;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Scans text for indicators by their keywords, without the Machine Learning API. The automaton is built
+ * once per catalogue version from the keywords of the approved indicators. Each indicator is scored by its
+ * keyword hits relative to the indicator with the most hits, on the same 0 to 100 scale as the API. Like
+ * the API, only the best scored indicators are returned, so that a large document doesn't match most of
+ * the catalogue.
+ */
+@Component
+public class KeywordScanEngine implements Logging {
+
+    private static final double MAX_SCORE = 100;
+
+    private final IndicatorCatalogue indicatorCatalogue;
+    private final int maxResults;
+    private final double minScore;
+    private final AtomicReference<KeywordAutomaton> automaton = new AtomicReference<>();
+
+    public KeywordScanEngine(IndicatorCatalogue indicatorCatalogue,
+                             @Value("${logframelab.scan.fallback.max-results:50}") int maxResults,
+                             @Value("${logframelab.scan.fallback.min-score:10}") double minScore) {
+        this.indicatorCatalogue = indicatorCatalogue;
+        this.maxResults = maxResults;
+        this.minScore = minScore;
+    }
+
+    /**
+     * Scans the text for the keywords of the indicators matching the filters
+     * @param text Text to be scanned
+     * @param filters Filters the indicators must match, if any
+     * @return At most the configured number of indicators found with at least the minimum score, highest score first
+     */
+    public List<MLScanIndicator> scan(String text, @Nullable FiltersDto filters) {
+        CatalogueSnapshot snapshot = indicatorCatalogue.getSnapshot();
+        Map<Long, Integer> hits = automaton(snapshot).count(text);
+        if (filters != null && !hits.isEmpty()) {
+            IndicatorFilter filter = IndicatorFilter.from(filters);
+            if (!filter.isEmpty()) {
+                Set<Long> allowed = snapshot.search(filter).stream().map(Indicator::getId).collect(Collectors.toSet());
+                hits.keySet().retainAll(allowed);
+            }
+        }
+        int maxHits = hits.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        List<MLScanIndicator> indicators = new ArrayList<>(hits.size());
+        hits.forEach((id, count) -> {
+            double score = MAX_SCORE * count / maxHits;
+            if (score >= minScore) {
+                snapshot.getIndicator(id).ifPresent(indicator -> indicators.add(
+                        new MLScanIndicator(indicator.getName(), id, new MLSearchResult(score))));
+            }
+        });
+        indicators.sort(Comparator.comparing((MLScanIndicator indicator) -> indicator.getSearchResult().getSimilarity()).reversed()
+                .thenComparing(MLScanIndicator::getId));
+        logger().info("Found {} indicators by keyword, returning at most {}", indicators.size(), maxResults);
+        return indicators.size() > maxResults ? new ArrayList<>(indicators.subList(0, maxResults)) : indicators;
+    }
+
+    private KeywordAutomaton automaton(CatalogueSnapshot snapshot) {
+        KeywordAutomaton current = automaton.get();
+        if (current == null || current.getVersion() != snapshot.getVersion()) {
+            long start = System.currentTimeMillis();
+            Map<Long, List<String>> keywords = new HashMap<>();
+            for (Indicator indicator : snapshot.getIndicators()) {
+                // Split here rather than through getKeywordsList, which caches the list in the shared snapshot copy
+                if (indicator.getKeywords() != null && !indicator.getKeywords().isBlank()) {
+                    keywords.put(indicator.getId(), Arrays.asList(indicator.getKeywords().split(",")));
+                }
+            }
+            current = new KeywordAutomaton(snapshot.getVersion(), keywords);
+            automaton.set(current);
+            logger().info("Built the keyword automaton of catalogue version {} in {} ms", snapshot.getVersion(),
+                    System.currentTimeMillis() - start);
+        }
+        return current;
+    }
+}
@@ -0,0 +1,63 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.model.IndicatorResponse;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Scan of an uploaded document running in the background. The state is updated by the worker thread
+ * and read by the requests polling the job.
+ */
+@Getter
+public class ScanJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private final String id;
+    private final Instant createdAt = Instant.now();
+    private volatile Status status = Status.QUEUED;
+    private volatile int progress;
+    private volatile Instant finishedAt;
+    @Getter(AccessLevel.NONE)
+    private final CompletableFuture<List<IndicatorResponse>> result = new CompletableFuture<>();
+
+    ScanJob(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Future completed with the indicators found, or exceptionally with the error that made the scan fail
+     */
+    public CompletableFuture<List<IndicatorResponse>> getResult() {
+        // Callers can't complete the job's own future
+        return result.copy();
+    }
+
+    public boolean isFinished() {
+        return result.isDone();
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void setProgress(int progress) {
+        this.progress = progress;
+    }
+
+    void complete(List<IndicatorResponse> indicators) {
+        finishedAt = Instant.now();
+        status = Status.DONE;
+        result.complete(indicators);
+    }
+
+    void fail(Throwable cause) {
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+        result.completeExceptionally(cause);
+    }
+}
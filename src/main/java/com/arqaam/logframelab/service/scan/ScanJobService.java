@@ -0,0 +1,174 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.exception.FailedToOpenFileException;
+import com.arqaam.logframelab.exception.ScanJobNotFoundException;
+import com.arqaam.logframelab.exception.ScanQueueFullException;
+import com.arqaam.logframelab.model.IndicatorResponse;
+import com.arqaam.logframelab.service.IndicatorService;
+import com.arqaam.logframelab.util.Logging;
+import com.arqaam.logframelab.util.Utils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs document scans in the background on a bounded pool, so uploads don't hold a servlet thread
+ * while the text is extracted and the Machine Learning API is called. Progress of each job is sent to
+ * its own web socket topic, and finished jobs are kept for a while so their result can be fetched.
+ */
+@Service
+public class ScanJobService implements Logging {
+
+    private static final int EXTRACTING_PROGRESS = 10;
+    private static final int SCANNING_PROGRESS = 40;
+    private static final int TOTAL_PROGRESS = 100;
+
+    private final IndicatorService indicatorService;
+    private final Utils utils;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ScanJob> jobs = new ConcurrentHashMap<>();
+
+    public ScanJobService(IndicatorService indicatorService, Utils utils, MeterRegistry meterRegistry,
+                          @Value("${logframelab.scan.threads:4}") int threads,
+                          @Value("${logframelab.scan.queue-capacity:20}") int queueCapacity,
+                          @Value("${logframelab.scan.job-retention:600000}") long retention) {
+        this.indicatorService = indicatorService;
+        this.utils = utils;
+        this.retention = Duration.ofMillis(retention);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("logframelab.scan.queue.size", executor, e -> e.getQueue().size())
+                .description("Scan jobs waiting for a worker").register(meterRegistry);
+        Gauge.builder("logframelab.scan.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Scan jobs running").register(meterRegistry);
+    }
+
+    /**
+     * Queues the scan of the document. The file is read before returning, since the upload is discarded
+     * once the request ends
+     * @param file Word document to be scanned
+     * @param filter Filters sent to the Machine Learning API
+     * @return Job created
+     */
+    public ScanJob submit(MultipartFile file, FiltersDto filter) {
+        String fileName = file.getOriginalFilename();
+        byte[] content;
+        try {
+            content = file.getBytes();
+        } catch (IOException e) {
+            logger().error("Failed to read word file. Name of the file: {}", fileName, e);
+            throw new FailedToOpenFileException();
+        }
+        ScanJob job = new ScanJob(UUID.randomUUID().toString());
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(new ScanTask(job, () -> run(job, fileName, content, filter)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            logger().warn("Rejected scan of file {} since the queue is full", fileName);
+            throw new ScanQueueFullException();
+        }
+        logger().info("Queued scan job {} for file {}", job.getId(), fileName);
+        return job;
+    }
+
+    /**
+     * Retrieves the job with the id
+     * @param id Id of the job
+     * @return Job found
+     */
+    public ScanJob getJob(String id) {
+        return Optional.ofNullable(jobs.get(id)).orElseThrow(() -> {
+            logger().error("Failed to find scan job with id: {}", id);
+            return new ScanJobNotFoundException();
+        });
+    }
+
+    private void run(ScanJob job, String fileName, byte[] content, FiltersDto filter) {
+        logger().info("Starting scan job {}", job.getId());
+        job.start();
+        try {
+            updateProgress(job, EXTRACTING_PROGRESS);
+            String text = utils.retrieveTextFromDocument(fileName, content);
+            updateProgress(job, SCANNING_PROGRESS);
+            List<IndicatorResponse> indicators = indicatorService.scanForIndicators(text, filter, scanned ->
+                    updateProgress(job, SCANNING_PROGRESS + (int) (scanned * (TOTAL_PROGRESS - SCANNING_PROGRESS))));
+            updateProgress(job, TOTAL_PROGRESS);
+            job.complete(indicators);
+            logger().info("Finished scan job {} with {} indicators", job.getId(), indicators.size());
+        } catch (Throwable e) {
+            // Errors too, e.g. out of memory on a large document, or the job would stay running forever
+            logger().error("Scan job {} failed", job.getId(), e);
+            job.fail(e);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+
+    private void updateProgress(ScanJob job, int progress) {
+        job.setProgress(progress);
+        try {
+            utils.sendProgressMessage(job.getId(), progress);
+        } catch (RuntimeException e) {
+            // Progress is best effort, clients can still poll the job
+            logger().warn("Failed to send progress of scan job {}", job.getId(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${logframelab.scan.job-retention:600000}")
+    public void evictFinishedJobs() {
+        Instant limit = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(limit));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Jobs still queued are never run, so they are failed for the requests waiting for their result
+        for (Runnable runnable : executor.shutdownNow()) {
+            if (runnable instanceof ScanTask) {
+                ((ScanTask) runnable).job.fail(new IllegalStateException("Scan jobs are shutting down"));
+            }
+        }
+    }
+
+    /**
+     * Scan of a job, kept with its job so the job can be failed if the scan never runs
+     */
+    private static final class ScanTask implements Runnable {
+
+        private final ScanJob job;
+        private final Runnable scan;
+
+        private ScanTask(ScanJob job, Runnable scan) {
+            this.job = job;
+            this.scan = scan;
+        }
+
+        @Override
+        public void run() {
+            scan.run();
+        }
+    }
+}
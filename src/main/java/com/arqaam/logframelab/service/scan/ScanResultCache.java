@@ -0,0 +1,265 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.model.persistence.CRSCode;
+import com.arqaam.logframelab.model.persistence.Level;
+import com.arqaam.logframelab.model.persistence.SDGCode;
+import com.arqaam.logframelab.model.persistence.Source;
+import com.arqaam.logframelab.service.catalogue.CatalogueChangedEvent;
+import com.arqaam.logframelab.util.Logging;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the results of the Machine Learning API for scanned documents, so uploading the same document
+ * again doesn't send its whole text to the API. Results are keyed by a hash of the normalized text and the
+ * filters, kept for a limited time and evicted least recently used first. When a spill directory is set,
+ * evicted results are written there instead of being dropped. Any change to the catalogue starts a new
+ * generation, which makes every cached result stale.
+ */
+@Component
+public class ScanResultCache implements Logging {
+
+    public static final String INDICATORS = "indicators";
+    public static final String STATEMENTS = "statements";
+    private static final String METRIC = "logframelab.scan.cache";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int maxEntries;
+    private final Duration ttl;
+    @Nullable
+    private final Path spillDirectory;
+    /** Seeded with the startup time, so results spilled before a restart are stale, as the catalogue may have changed meanwhile */
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter evictions;
+
+    public ScanResultCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           @Value("${logframelab.scan.cache.max-entries:200}") int maxEntries,
+                           @Value("${logframelab.scan.cache.ttl:3600000}") long ttl,
+                           @Value("${logframelab.scan.cache.spill-directory:}") String spillDirectory) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.maxEntries = maxEntries;
+        this.ttl = Duration.ofMillis(ttl);
+        this.spillDirectory = spillDirectory.isBlank() ? null : Paths.get(spillDirectory);
+        this.evictions = Counter.builder(METRIC + ".evictions").description("Scan results evicted from memory")
+                .register(meterRegistry);
+        Gauge.builder(METRIC + ".size", this, ScanResultCache::size).description("Scan results kept in memory")
+                .register(meterRegistry);
+        if (this.spillDirectory != null) {
+            try {
+                Files.createDirectories(this.spillDirectory);
+            } catch (IOException e) {
+                logger().error("Failed to create the scan cache spill directory {}", spillDirectory, e);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the cached result of the scan, loading it if it is missing or stale
+     * @param namespace Kind of scan, e.g. {@link #INDICATORS}
+     * @param text Text extracted from the document
+     * @param filters Filters sent along with the text, if any
+     * @param type Type of the result, used to read spilled results back
+     * @param loader Calls the Machine Learning API
+     * @return Result of the scan. It may be shared and mustn't be modified
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String namespace, String text, @Nullable FiltersDto filters, TypeReference<T> type, Supplier<T> loader) {
+        String key = key(namespace, text, filters);
+        long current = generation.get();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && !isValid(entry.generation, entry.createdAt, current)) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            count(namespace, "hit");
+            return (T) entry.value;
+        }
+        T spilled = readSpilled(key, type, current);
+        if (spilled != null) {
+            count(namespace, "spill-hit");
+            put(key, new Entry(current, spilled, System.currentTimeMillis()));
+            return spilled;
+        }
+        count(namespace, "miss");
+        T value = loader.get();
+        // Stored with the generation read before loading, so a change in between makes it stale right away
+        put(key, new Entry(current, value, System.currentTimeMillis()));
+        return value;
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            entries.clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        invalidate();
+    }
+
+    /**
+     * Drops the expired results, both in memory and spilled
+     */
+    @Scheduled(fixedDelayString = "${logframelab.scan.cache.ttl:3600000}")
+    public void evictExpired() {
+        long current = generation.get();
+        synchronized (this) {
+            entries.values().removeIf(entry -> !isValid(entry.generation, entry.createdAt, current));
+        }
+        if (spillDirectory != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*.json")) {
+                for (Path file : files) {
+                    if (!isValid(current, Files.getLastModifiedTime(file).toMillis(), current)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            } catch (IOException e) {
+                logger().warn("Failed to evict the expired scan results from {}", spillDirectory, e);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void put(String key, Entry entry) {
+        List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        synchronized (this) {
+            entries.put(key, entry);
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+                iterator.remove();
+            }
+        }
+        evicted.forEach(eldest -> {
+            evictions.increment();
+            spill(eldest.getKey(), eldest.getValue());
+        });
+    }
+
+    private void spill(String key, Entry entry) {
+        if (spillDirectory == null || !isValid(entry.generation, entry.createdAt, generation.get())) {
+            return;
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("generation", entry.generation);
+        node.put("createdAt", entry.createdAt);
+        node.set("value", objectMapper.valueToTree(entry.value));
+        try {
+            objectMapper.writeValue(spillDirectory.resolve(key + ".json").toFile(), node);
+        } catch (IOException e) {
+            logger().warn("Failed to spill the scan result {}", key, e);
+        }
+    }
+
+    @Nullable
+    private <T> T readSpilled(String key, TypeReference<T> type, long current) {
+        if (spillDirectory == null) {
+            return null;
+        }
+        Path file = spillDirectory.resolve(key + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(file.toFile());
+            Files.deleteIfExists(file);
+            if (!isValid(node.path("generation").asLong(), node.path("createdAt").asLong(), current)) {
+                return null;
+            }
+            return objectMapper.convertValue(node.get("value"), type);
+        } catch (IOException | IllegalArgumentException e) {
+            logger().warn("Failed to read the spilled scan result {}", key, e);
+            return null;
+        }
+    }
+
+    private boolean isValid(long entryGeneration, long createdAt, long current) {
+        return entryGeneration == current && System.currentTimeMillis() - createdAt < ttl.toMillis();
+    }
+
+    private void count(String namespace, String result) {
+        Counter.builder(METRIC + ".gets").description("Scan results requested from the cache")
+                .tag("namespace", namespace).tag("result", result).register(meterRegistry).increment();
+    }
+
+    /**
+     * Hashes the text, with its whitespace collapsed, and the filters sent to the Machine Learning API.
+     * The filters are sorted, so the order they were picked in doesn't matter
+     */
+    static String key(String namespace, String text, @Nullable FiltersDto filters) {
+        StringBuilder content = new StringBuilder(namespace).append('\n');
+        if (filters != null) {
+            content.append("level=").append(sorted(filters.getLevel(), Level::getId))
+                    .append(";sector=").append(sorted(filters.getSector(), Function.identity()))
+                    .append(";sdgCode=").append(sorted(filters.getSdgCode(), SDGCode::getId))
+                    .append(";crsCode=").append(sorted(filters.getCrsCode(), CRSCode::getId))
+                    .append(";source=").append(sorted(filters.getSource(), Source::getId));
+        }
+        content.append('\n').append(text == null ? "" : text.trim().replaceAll("\\s+", " "));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static <T> List<String> sorted(Collection<T> values, Function<T, ?> id) {
+        return values.stream().map(id).map(String::valueOf).sorted().collect(Collectors.toList());
+    }
+
+    private static class Entry {
+        private final long generation;
+        private final Object value;
+        private final long createdAt;
+
+        private Entry(long generation, Object value, long createdAt) {
+            this.generation = generation;
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.arqaam.logframelab.service.similarity;
+
+import com.arqaam.logframelab.model.NearDuplicate;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Finds indicators of the catalogue that are near duplicates of a new one, comparing the MinHash signatures of
+ * their names and descriptions kept by the catalogue snapshot. Unlike the similarity check of the Machine Learning
+ * API, nothing is sent over the network, so it can be used while indicators are uploaded or created.
+ */
+@Service
+public class NearDuplicateDetector {
+
+    private final IndicatorCatalogue indicatorCatalogue;
+    private final double threshold;
+
+    public NearDuplicateDetector(IndicatorCatalogue indicatorCatalogue,
+                                 @Value("${logframelab.near-duplicates.threshold:0.7}") double threshold) {
+        this.indicatorCatalogue = indicatorCatalogue;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Retrieves the approved indicators similar to the name and description given
+     * @param name Name of the indicator
+     * @param description Description of the indicator, if any
+     * @return Near duplicates, most similar first
+     */
+    public List<NearDuplicate> find(String name, String description) {
+        return indicatorCatalogue.getSnapshot().findNearDuplicates(name, description, threshold);
+    }
+}
@@ -0,0 +1,116 @@
+package com.arqaam.logframelab.service.similarity;
+
+import com.arqaam.logframelab.model.MLSimilarIndicatorResponse;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.model.persistence.IndicatorSimilarity;
+import com.arqaam.logframelab.model.persistence.IndicatorSimilarityState;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import com.arqaam.logframelab.repository.IndicatorSimilarityRepository;
+import com.arqaam.logframelab.repository.IndicatorSimilarityStateRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Persisted similarity between indicators, filled in the background by {@link SimilarityPrecomputeWorker}.
+ * Each indicator keeps the indicators similar to it above the minimum threshold, so reads at any higher
+ * threshold are answered from the database without calling the Machine Learning API, for the indicators
+ * whose similarity was computed for their current name.
+ */
+@Service
+public class SimilarityGraph {
+
+    private final IndicatorSimilarityRepository similarityRepository;
+    private final IndicatorSimilarityStateRepository stateRepository;
+    private final IndicatorRepository indicatorRepository;
+
+    public SimilarityGraph(IndicatorSimilarityRepository similarityRepository,
+                           IndicatorSimilarityStateRepository stateRepository,
+                           IndicatorRepository indicatorRepository) {
+        this.similarityRepository = similarityRepository;
+        this.stateRepository = stateRepository;
+        this.indicatorRepository = indicatorRepository;
+    }
+
+    /**
+     * Retrieves the indicators whose similar indicators are missing or were computed for an older name
+     * @param afterId Only indicators with a greater id are returned
+     * @param limit Maximum number of ids
+     * @return Ids in ascending order
+     */
+    public List<Long> findStaleIndicatorIds(Long afterId, int limit) {
+        return stateRepository.findStaleIndicatorIds(afterId, limit).stream().map(Number::longValue).collect(Collectors.toList());
+    }
+
+    /**
+     * Replaces the similar indicators of the indicator and marks it as computed for its current name.
+     * Similarity goes both ways, so the indicator is also stored as similar to each of its similar indicators,
+     * which keeps their edges up to date without computing them again. Similar indicators that no longer exist
+     * are left out
+     * @param indicator Indicator the similarity was computed for
+     * @param similar Similar indicators returned by the Machine Learning API
+     */
+    @Transactional
+    public void replace(Indicator indicator, List<MLSimilarIndicatorResponse> similar) {
+        similarityRepository.deleteAllByIndicatorId(indicator.getId());
+        similarityRepository.deleteAllBySimilarId(indicator.getId());
+        Map<Long, Double> scores = new HashMap<>();
+        for (MLSimilarIndicatorResponse response : similar) {
+            if (response.getIndicatorId() != null && response.getSimilarity() != null
+                    && !response.getIndicatorId().equals(indicator.getId())) {
+                scores.merge(response.getIndicatorId(), response.getSimilarity(), Math::max);
+            }
+        }
+        if (!scores.isEmpty()) {
+            List<IndicatorSimilarity> edges = new ArrayList<>(scores.size() * 2);
+            for (Long id : indicatorRepository.findExistingIds(scores.keySet())) {
+                edges.add(new IndicatorSimilarity(indicator.getId(), id, scores.get(id)));
+                edges.add(new IndicatorSimilarity(id, indicator.getId(), scores.get(id)));
+            }
+            similarityRepository.saveAll(edges);
+        }
+        stateRepository.save(new IndicatorSimilarityState(indicator.getId(), indicator.getName(), new Date()));
+    }
+
+    /**
+     * Retrieves the indicators whose similar indicators were computed for their current name. The others are
+     * missing from the graph or have outdated edges
+     * @param indicators Indicators to be checked
+     * @return Ids of the indicators whose edges are current
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> findCurrentIndicatorIds(List<Indicator> indicators) {
+        if (indicators.isEmpty()) {
+            return new HashSet<>();
+        }
+        Map<Long, String> names = new HashMap<>();
+        indicators.forEach(indicator -> names.put(indicator.getId(), nameOf(indicator.getName())));
+        return stateRepository.findAllById(names.keySet()).stream()
+                .filter(state -> nameOf(state.getName()).equals(names.get(state.getIndicatorId())))
+                .map(IndicatorSimilarityState::getIndicatorId).collect(Collectors.toSet());
+    }
+
+    /**
+     * Retrieves the persisted similar indicators of the indicators
+     * @param indicatorIds Ids of the indicators to be answered
+     * @param threshold Threshold of similarity
+     * @return Ids of the similar indicators, most similar first, by the id of the indicator. Indicators without
+     * similar ones are missing
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<Long>> getSimilarIds(Collection<Long> indicatorIds, Double threshold) {
+        Map<Long, List<Long>> similarIds = new HashMap<>();
+        if (!indicatorIds.isEmpty()) {
+            similarityRepository.findAllByIndicatorIdInAndScoreGreaterThanEqualOrderByScoreDesc(indicatorIds, threshold)
+                    .forEach(edge -> similarIds.computeIfAbsent(edge.getIndicatorId(), k -> new ArrayList<>()).add(edge.getSimilarId()));
+        }
+        return similarIds;
+    }
+
+    /** Missing names are compared as empty ones, as in the query of the stale indicators */
+    private static String nameOf(String name) {
+        return name == null ? "" : name;
+    }
+}
@@ -0,0 +1,92 @@
+package com.arqaam.logframelab.service.similarity;
+
+import com.arqaam.logframelab.model.MLSimilarIndicatorResponse;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import com.arqaam.logframelab.service.MachineLearningService;
+import com.arqaam.logframelab.util.Logging;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Computes the similar indicators of new and renamed indicators in the background and stores them in the
+ * {@link SimilarityGraph}. Each run handles at most one batch, so the load sent to the Machine Learning API
+ * is bounded by the batch size per interval. The worker walks the stale indicators by id and starts over
+ * once it reaches the end, so an indicator that keeps failing doesn't hold back the others.
+ */
+@Component
+public class SimilarityPrecomputeWorker implements Logging {
+
+    private final SimilarityGraph similarityGraph;
+    private final IndicatorRepository indicatorRepository;
+    private final MachineLearningService machineLearningService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final double minThreshold;
+    private final Counter computed;
+    private final Counter failed;
+    private long cursor;
+
+    public SimilarityPrecomputeWorker(SimilarityGraph similarityGraph, IndicatorRepository indicatorRepository,
+                                      MachineLearningService machineLearningService, MeterRegistry meterRegistry,
+                                      @Value("${logframelab.similarity.precompute.enabled:false}") boolean enabled,
+                                      @Value("${logframelab.similarity.precompute.batch-size:20}") int batchSize,
+                                      @Value("${logframelab.similarity.precompute.min-threshold:0.5}") double minThreshold) {
+        this.similarityGraph = similarityGraph;
+        this.indicatorRepository = indicatorRepository;
+        this.machineLearningService = machineLearningService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.minThreshold = minThreshold;
+        this.computed = Counter.builder("logframelab.similarity.precompute.computed")
+                .description("Indicators whose similar indicators were precomputed").register(meterRegistry);
+        this.failed = Counter.builder("logframelab.similarity.precompute.failed")
+                .description("Indicators whose similar indicators failed to be precomputed").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${logframelab.similarity.precompute.interval:10000}")
+    public void run() {
+        if (enabled) {
+            precompute();
+        }
+    }
+
+    /**
+     * Computes the similar indicators of the next batch of stale indicators
+     * @return Number of indicators computed
+     */
+    public synchronized int precompute() {
+        List<Long> ids = similarityGraph.findStaleIndicatorIds(cursor, batchSize);
+        if (ids.isEmpty()) {
+            cursor = 0;
+            return 0;
+        }
+        cursor = ids.get(ids.size() - 1);
+        List<Indicator> indicators = new ArrayList<>(indicatorRepository.findAllByIdIn(ids));
+        indicators.sort(Comparator.comparing(Indicator::getId));
+        int count = 0;
+        for (Indicator indicator : indicators) {
+            try {
+                List<MLSimilarIndicatorResponse> similar = indicator.getName() == null || indicator.getName().isBlank()
+                        ? Collections.emptyList()
+                        : machineLearningService.getSimilarityScores(indicator.getName(), minThreshold);
+                similarityGraph.replace(indicator, similar);
+                computed.increment();
+                count++;
+            } catch (RuntimeException e) {
+                failed.increment();
+                logger().warn("Failed to precompute the similar indicators of indicator {}, it will be retried", indicator.getId(), e);
+            }
+        }
+        logger().info("Precomputed the similar indicators of {} of {} indicators", count, indicators.size());
+        return count;
+    }
+}
@@ -0,0 +1,181 @@
+package com.arqaam.logframelab.service.similarity;
+
+import com.arqaam.logframelab.model.SimilarityResponse;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.service.IndicatorService;
+import com.arqaam.logframelab.service.MachineLearningService;
+import com.arqaam.logframelab.service.catalogue.CatalogueSnapshot;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.util.Logging;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Checks the unchecked indicators for similar ones. The Machine Learning API only takes one indicator per
+ * request, so the requests are sent concurrently, bounded by the concurrency setting to stay within the
+ * connection pool of the API. Once the similarity is precomputed by {@link SimilarityPrecomputeWorker}, requests
+ * at or above its minimum threshold are answered from the {@link SimilarityGraph} instead, for the indicators whose
+ * similarity was computed for their current name. New and renamed indicators are still checked by the API.
+ */
+@Service
+public class SimilarityService implements Logging {
+
+    private final IndicatorService indicatorService;
+    private final MachineLearningService machineLearningService;
+    private final IndicatorCatalogue indicatorCatalogue;
+    private final SimilarityGraph similarityGraph;
+    private final boolean precomputed;
+    private final double minThreshold;
+    private final ExecutorService executor;
+
+    public SimilarityService(IndicatorService indicatorService, MachineLearningService machineLearningService,
+                             IndicatorCatalogue indicatorCatalogue, SimilarityGraph similarityGraph,
+                             @Value("${logframelab.similarity.concurrency:8}") int concurrency,
+                             @Value("${logframelab.similarity.precompute.enabled:false}") boolean precomputed,
+                             @Value("${logframelab.similarity.precompute.min-threshold:0.5}") double minThreshold) {
+        this.indicatorService = indicatorService;
+        this.machineLearningService = machineLearningService;
+        this.indicatorCatalogue = indicatorCatalogue;
+        this.similarityGraph = similarityGraph;
+        this.precomputed = precomputed;
+        this.minThreshold = minThreshold;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "similarity-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Retrieves the unchecked indicators with their similar indicators. Indicators whose similarity is precomputed
+     * for their current name are answered from the graph and the others are checked by the Machine Learning API.
+     * The similar indicators are taken from the indicator catalogue once every check finished
+     * @param threshold Threshold of similarity
+     * @return List of indicators with their similar ones, in the order of the unchecked indicators
+     */
+    public List<SimilarityResponse> getSimilarIndicators(Double threshold) {
+        List<Indicator> unchecked = indicatorService.getIndicatorsWithSimilarity(false);
+        Map<Long, List<Long>> similarIds = new HashMap<>();
+        List<Indicator> live = answerFromGraph(unchecked, threshold, similarIds);
+        List<CompletableFuture<List<Long>>> checks = live.stream().map(indicator -> CompletableFuture.supplyAsync(
+                () -> machineLearningService.getSimilarIndicators(indicator.getName(), threshold), executor))
+                .collect(Collectors.toList());
+        try {
+            for (int i = 0; i < checks.size(); i++) {
+                similarIds.put(live.get(i).getId(), join(checks.get(i)));
+            }
+        } finally {
+            checks.forEach(check -> check.cancel(true));
+        }
+        // Resolved through the catalogue, like the streamed responses, so both list the same approved indicators
+        CatalogueSnapshot snapshot = indicatorCatalogue.getSnapshot();
+
+        List<SimilarityResponse> response = new ArrayList<>(unchecked.size());
+        for (Indicator indicator : unchecked) {
+            response.add(new SimilarityResponse(indicator, resolve(similarIds.get(indicator.getId()),
+                    id -> snapshot.getIndicator(id).orElse(null))));
+        }
+        return response;
+    }
+
+    /**
+     * Sends each unchecked indicator with its similar indicators to the consumer as soon as its check finishes.
+     * Indicators whose similarity is precomputed for their current name are sent first, answered from the graph.
+     * The similar indicators are taken from the indicator catalogue, so nothing is queried per indicator
+     * @param threshold Threshold of similarity
+     * @param consumer Receives the responses, always on the calling thread
+     */
+    public void streamSimilarIndicators(Double threshold, Consumer<SimilarityResponse> consumer) {
+        List<Indicator> unchecked = indicatorService.getIndicatorsWithSimilarity(false);
+        Map<Long, List<Long>> precomputedIds = new HashMap<>();
+        List<Indicator> live = answerFromGraph(unchecked, threshold, precomputedIds);
+        if (!precomputedIds.isEmpty()) {
+            CatalogueSnapshot snapshot = indicatorCatalogue.getSnapshot();
+            for (Indicator indicator : unchecked) {
+                if (precomputedIds.containsKey(indicator.getId())) {
+                    consumer.accept(new SimilarityResponse(indicator, resolve(precomputedIds.get(indicator.getId()),
+                            id -> snapshot.getIndicator(id).orElse(null))));
+                }
+            }
+        }
+        CompletionService<SimilarityResponse> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<SimilarityResponse>> checks = new ArrayList<>(live.size());
+        for (Indicator indicator : live) {
+            checks.add(completionService.submit(() -> {
+                List<Long> similarIds = machineLearningService.getSimilarIndicators(indicator.getName(), threshold);
+                CatalogueSnapshot snapshot = indicatorCatalogue.getSnapshot();
+                return new SimilarityResponse(indicator, resolve(similarIds, id -> snapshot.getIndicator(id).orElse(null)));
+            }));
+        }
+        try {
+            for (int i = 0; i < checks.size(); i++) {
+                consumer.accept(join(completionService.take()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking similar indicators", e);
+        } finally {
+            // Stops the remaining checks if the consumer failed, e.g. the client went away
+            checks.forEach(check -> check.cancel(true));
+        }
+    }
+
+    /**
+     * Fills the similar ids of the indicators that the graph can answer, i.e. precomputed for their current name
+     * @param indicators Unchecked indicators
+     * @param threshold Threshold of similarity
+     * @param similarIds Receives the similar ids of the indicators answered, empty if they have none
+     * @return Indicators that must be checked by the Machine Learning API, e.g. new or renamed ones
+     */
+    private List<Indicator> answerFromGraph(List<Indicator> indicators, Double threshold, Map<Long, List<Long>> similarIds) {
+        if (!usePrecomputed(threshold) || indicators.isEmpty()) {
+            return indicators;
+        }
+        Set<Long> current = similarityGraph.findCurrentIndicatorIds(indicators);
+        if (current.isEmpty()) {
+            return indicators;
+        }
+        Map<Long, List<Long>> precomputed = similarityGraph.getSimilarIds(current, threshold);
+        current.forEach(id -> similarIds.put(id, precomputed.getOrDefault(id, Collections.emptyList())));
+        return indicators.stream().filter(indicator -> !current.contains(indicator.getId())).collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean usePrecomputed(Double threshold) {
+        return precomputed && threshold != null && threshold >= minThreshold;
+    }
+
+    private List<Indicator> resolve(List<Long> ids, Function<Long, Indicator> lookup) {
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        return ids.stream().map(lookup).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking similar indicators", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
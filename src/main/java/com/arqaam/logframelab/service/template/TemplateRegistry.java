@@ -0,0 +1,172 @@
+package com.arqaam.logframelab.service.template;
+
+import com.arqaam.logframelab.util.Constants;
+import com.arqaam.logframelab.util.Logging;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Keeps the export templates in memory. The raw bytes of each template are read from the classpath once,
+ * and a small pool of already parsed copies is kept per template, so exports get a document ready to be
+ * filled instead of unzipping and parsing the template on the request thread. Used copies are replaced
+ * by parsing the bytes in the background.
+ */
+@Component
+public class TemplateRegistry implements Logging {
+
+    /** Parsed copies kept per template */
+    private static final int POOL_SIZE = 2;
+    private static final String PARSE_TIME_SAVED_METRIC = "logframelab.export.template.parse.saved";
+    private static final String PARSE_MISS_METRIC = "logframelab.export.template.parse.miss";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, byte[]> templates = new ConcurrentHashMap<>();
+    private final Map<String, BlockingQueue<Prototype<?>>> prototypes = new ConcurrentHashMap<>();
+    private final ExecutorService parserExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "template-parser");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TemplateRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void load() {
+        for (String format : new String[]{Constants.WORD_FORMAT, Constants.PRM_FORMAT}) {
+            preload(templateName(format, Constants.WORD_FILE_EXTENSION), XWPFDocument::new);
+        }
+        for (String format : new String[]{Constants.DFID_FORMAT, Constants.XLSX_FORMAT}) {
+            preload(templateName(format, Constants.WORKSHEET_FILE_EXTENSION), XSSFWorkbook::new);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parserExecutor.shutdownNow();
+    }
+
+    public static String templateName(String format, String extension) {
+        return format + "_Template" + extension;
+    }
+
+    /**
+     * Retrieves the content of the template
+     * @param name File name of the template
+     * @return Bytes of the template file. The array is shared and mustn't be modified
+     * @throws IOException If the template doesn't exist
+     */
+    public byte[] getBytes(String name) throws IOException {
+        byte[] bytes = templates.get(name);
+        if (bytes == null) {
+            try (InputStream inputStream = new ClassPathResource(name).getInputStream()) {
+                bytes = inputStream.readAllBytes();
+            }
+            templates.putIfAbsent(name, bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Retrieves a parsed copy of the word template that the caller owns
+     * @param name File name of the template
+     * @return Word document ready to be filled
+     * @throws IOException If the template doesn't exist or can't be parsed
+     */
+    public XWPFDocument getWordDocument(String name) throws IOException {
+        return take(name, XWPFDocument::new);
+    }
+
+    /**
+     * Retrieves a parsed copy of the worksheet template that the caller owns
+     * @param name File name of the template
+     * @return Workbook ready to be filled
+     * @throws IOException If the template doesn't exist or can't be parsed
+     */
+    public XSSFWorkbook getWorkbook(String name) throws IOException {
+        return take(name, XSSFWorkbook::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T take(String name, Parser<T> parser) throws IOException {
+        Prototype<?> prototype = pool(name).poll();
+        refill(name, parser);
+        if (prototype != null) {
+            Timer.builder(PARSE_TIME_SAVED_METRIC).description("Template parse time saved by using a pre-parsed copy")
+                    .tag("template", name).register(meterRegistry).record(prototype.parseTime);
+            return (T) prototype.document;
+        }
+        Counter.builder(PARSE_MISS_METRIC).description("Exports that had to parse the template on the request thread")
+                .tag("template", name).register(meterRegistry).increment();
+        return parse(name, parser).document;
+    }
+
+    private <T> void preload(String name, Parser<T> parser) {
+        try {
+            getBytes(name);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                refill(name, parser);
+            }
+        } catch (IOException e) {
+            logger().error("Failed to load template {}", name, e);
+        }
+    }
+
+    private <T> void refill(String name, Parser<T> parser) {
+        try {
+            parserExecutor.execute(() -> {
+                BlockingQueue<Prototype<?>> pool = pool(name);
+                if (pool.remainingCapacity() > 0) {
+                    try {
+                        pool.offer(parse(name, parser));
+                    } catch (IOException | RuntimeException e) {
+                        logger().error("Failed to parse template {}", name, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger().warn("Template {} was not parsed in advance since the parser is shutting down", name);
+        }
+    }
+
+    private <T> Prototype<T> parse(String name, Parser<T> parser) throws IOException {
+        byte[] bytes = getBytes(name);
+        long start = System.nanoTime();
+        T document = parser.parse(new ByteArrayInputStream(bytes));
+        return new Prototype<>(document, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private BlockingQueue<Prototype<?>> pool(String name) {
+        return prototypes.computeIfAbsent(name, k -> new ArrayBlockingQueue<>(POOL_SIZE));
+    }
+
+    @FunctionalInterface
+    private interface Parser<T> {
+        T parse(InputStream inputStream) throws IOException;
+    }
+
+    private static class Prototype<T> {
+        private final T document;
+        private final Duration parseTime;
+
+        private Prototype(T document, Duration parseTime) {
+            this.document = document;
+            this.parseTime = parseTime;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import com.arqaam.logframelab.util.Logging;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the indicators of imported worksheets in JDBC batches. The ids of the indicators are allocated in blocks,
+ * so Hibernate sends the inserts of the indicators and of their sources, SDG and CRS codes as batches of the
+ * configured size, which the MySQL driver rewrites into multi-row inserts. The persistence context is flushed and
+ * cleared after every batch, so the memory used doesn't grow with the size of the worksheet.
+ */
+@Component
+public class IndicatorBatchWriter implements Logging {
+
+    private final IndicatorRepository indicatorRepository;
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    public IndicatorBatchWriter(IndicatorRepository indicatorRepository, EntityManager entityManager,
+                                @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.indicatorRepository = indicatorRepository;
+        this.entityManager = entityManager;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Stores the indicators, new or existing ones, in a single transaction
+     * @param indicators Indicators to be stored
+     * @return Stored indicators, with their ids. They are detached from the persistence context
+     */
+    @Transactional
+    public List<Indicator> saveAll(List<Indicator> indicators) {
+        List<Indicator> saved = new ArrayList<>(indicators.size());
+        for (int from = 0; from < indicators.size(); from += batchSize) {
+            saved.addAll(indicatorRepository.saveAll(indicators.subList(from, Math.min(from + batchSize, indicators.size()))));
+            entityManager.flush();
+            entityManager.clear();
+        }
+        logger().info("Stored {} indicators in batches of {}", saved.size(), batchSize);
+        return saved;
+    }
+}
@@ -0,0 +1,188 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import com.arqaam.logframelab.model.ImportSummary;
+import com.arqaam.logframelab.model.persistence.*;
+import com.arqaam.logframelab.repository.IndicatorContentHashRepository;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import com.arqaam.logframelab.service.IndicatorService;
+import com.arqaam.logframelab.service.catalogue.CatalogueChangedEvent;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.util.Logging;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reimports the master indicator worksheet by only writing what changed since the last import. Each row gets a
+ * hash of its content, which is compared with the hash stored for the indicator with the same normalized name.
+ * Approved indicators that were never imported this way are compared with a hash of their current content,
+ * taken from the catalogue. Rows without an indicator are inserted, rows whose hash differs update their indicator,
+ * and the others aren't written at all.
+ */
+@Service
+public class IndicatorDiffImporter implements Logging {
+
+    private final IndicatorService indicatorService;
+    private final IndicatorRepository indicatorRepository;
+    private final IndicatorContentHashRepository contentHashRepository;
+    private final IndicatorBatchWriter batchWriter;
+    private final IndicatorCatalogue indicatorCatalogue;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public IndicatorDiffImporter(IndicatorService indicatorService, IndicatorRepository indicatorRepository,
+                                 IndicatorContentHashRepository contentHashRepository, IndicatorBatchWriter batchWriter,
+                                 IndicatorCatalogue indicatorCatalogue, ApplicationEventPublisher eventPublisher) {
+        this.indicatorService = indicatorService;
+        this.indicatorRepository = indicatorRepository;
+        this.contentHashRepository = contentHashRepository;
+        this.batchWriter = batchWriter;
+        this.indicatorCatalogue = indicatorCatalogue;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Imports the changes of the worksheet in a single transaction. Rows repeating the name of an earlier row are skipped
+     * @param file Worksheet file
+     * @param removeMissing Whether the approved indicators missing from the worksheet are deleted
+     * @return Number of indicators inserted, updated, unchanged (skipped) and removed
+     */
+    @Transactional
+    public ImportSummary importChanges(MultipartFile file, boolean removeMissing) {
+        List<Indicator> rows = indicatorService.extractIndicatorFromFile(file);
+        Map<String, Indicator> imported = new LinkedHashMap<>();
+        for (Indicator row : rows) {
+            imported.putIfAbsent(WorksheetText.normalizeName(row.getName()), row);
+        }
+        ImportSummary summary = new ImportSummary(0, 0, rows.size() - imported.size());
+
+        Map<String, IndicatorContentHash> existing = existingHashes();
+        List<Indicator> inserted = new ArrayList<>();
+        Map<Long, Indicator> changed = new LinkedHashMap<>();
+        imported.forEach((name, row) -> {
+            // what is left in the map at the end is missing from the worksheet
+            IndicatorContentHash current = existing.remove(name);
+            if (current == null) {
+                inserted.add(row);
+            } else if (current.getContentHash().equals(contentHash(row))) {
+                summary.setSkipped(summary.getSkipped() + 1);
+            } else {
+                changed.put(current.getIndicatorId(), row);
+            }
+        });
+
+        List<Indicator> toBeSaved = new ArrayList<>(inserted);
+        if (!changed.isEmpty()) {
+            // the indicators are updated in place, so values that aren't imported (e.g. times downloaded) are kept
+            for (Indicator indicator : indicatorRepository.findAllByIdIn(changed.keySet())) {
+                copyContent(changed.get(indicator.getId()), indicator);
+                toBeSaved.add(indicator);
+            }
+        }
+        if (!toBeSaved.isEmpty()) {
+            List<IndicatorContentHash> hashes = new ArrayList<>(toBeSaved.size());
+            for (Indicator indicator : batchWriter.saveAll(toBeSaved)) {
+                hashes.add(new IndicatorContentHash(indicator.getId(), WorksheetText.normalizeName(indicator.getName()),
+                        contentHash(indicator)));
+            }
+            contentHashRepository.saveAll(hashes);
+        }
+        summary.setInserted(inserted.size());
+        summary.setUpdated(toBeSaved.size() - inserted.size());
+
+        if (removeMissing && !existing.isEmpty()) {
+            // their hashes are deleted along with them
+            List<Indicator> removed = indicatorRepository.findAllByIdIn(existing.values().stream()
+                    .map(IndicatorContentHash::getIndicatorId).collect(Collectors.toSet()));
+            indicatorRepository.deleteAll(removed);
+            summary.setRemoved(removed.size());
+        }
+        logger().info("Imported the changes of {}. Inserted: {}, updated: {}, unchanged: {}, removed: {}",
+                file.getOriginalFilename(), summary.getInserted(), summary.getUpdated(), summary.getSkipped(), summary.getRemoved());
+        if (summary.getInserted() + summary.getUpdated() + summary.getRemoved() > 0) {
+            eventPublisher.publishEvent(new CatalogueChangedEvent("indicators reimported"));
+        }
+        return summary;
+    }
+
+    /**
+     * Retrieves the stored hashes, completed with the hashes of the approved indicators that have none
+     * @return Hashes by normalized name
+     */
+    private Map<String, IndicatorContentHash> existingHashes() {
+        Map<String, IndicatorContentHash> hashes = new HashMap<>();
+        Set<Long> hashedIds = new HashSet<>();
+        for (IndicatorContentHash hash : contentHashRepository.findAll()) {
+            hashes.putIfAbsent(hash.getNormalizedName(), hash);
+            hashedIds.add(hash.getIndicatorId());
+        }
+        for (Indicator indicator : indicatorCatalogue.getSnapshot().getIndicators()) {
+            if (!hashedIds.contains(indicator.getId())) {
+                String name = WorksheetText.normalizeName(indicator.getName());
+                hashes.putIfAbsent(name, new IndicatorContentHash(indicator.getId(), name, contentHash(indicator)));
+            }
+        }
+        return hashes;
+    }
+
+    private static void copyContent(Indicator from, Indicator to) {
+        to.setName(from.getName());
+        to.setDescription(from.getDescription());
+        to.setKeywords(from.getKeywords());
+        to.setSector(from.getSector());
+        to.setLevel(from.getLevel());
+        to.setDisaggregation(from.getDisaggregation());
+        to.setSourceVerification(from.getSourceVerification());
+        to.setDataSource(from.getDataSource());
+        to.setSource(from.getSource());
+        to.setSdgCode(from.getSdgCode());
+        to.setCrsCode(from.getCrsCode());
+    }
+
+    /**
+     * Hashes the values of the indicator that are read from the worksheet. Missing values hash like empty ones and
+     * the codes are sorted, so the hash of a row matches the one of the indicator stored from it
+     */
+    static String contentHash(Indicator indicator) {
+        StringBuilder content = new StringBuilder()
+                .append("name=").append(valueOf(indicator.getName()))
+                .append("\ndescription=").append(valueOf(indicator.getDescription()))
+                .append("\nkeywords=").append(valueOf(indicator.getKeywords()))
+                .append("\nsector=").append(valueOf(indicator.getSector()))
+                .append("\nlevel=").append(indicator.getLevel() == null ? "" : indicator.getLevel().getId())
+                .append("\ndisaggregation=").append(Boolean.TRUE.equals(indicator.getDisaggregation()))
+                .append("\nsourceVerification=").append(valueOf(indicator.getSourceVerification()))
+                .append("\ndataSource=").append(valueOf(indicator.getDataSource()))
+                .append("\nsource=").append(sorted(indicator.getSource(), Source::getId))
+                .append("\nsdgCode=").append(sorted(indicator.getSdgCode(), SDGCode::getId))
+                .append("\ncrsCode=").append(sorted(indicator.getCrsCode(), CRSCode::getId));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String valueOf(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static <T> List<String> sorted(Collection<T> values, Function<T, ?> id) {
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values.stream().map(id).map(String::valueOf).sorted().collect(Collectors.toList());
+    }
+}
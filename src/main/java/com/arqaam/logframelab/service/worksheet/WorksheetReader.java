@@ -0,0 +1,174 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.InvalidOperationException;
+import org.apache.poi.openxml4j.exceptions.NotOfficeXmlFileException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Reads the first sheet of an .xlsx file row by row with a SAX parser, instead of loading the whole workbook
+ * into POI's object model. The upload is copied to a temporary file, so the package is read from disk, and
+ * only the shared strings and the row being read are kept in memory.
+ */
+public class WorksheetReader {
+
+    private WorksheetReader() {}
+
+    /**
+     * Reads the rows of the first sheet, in order
+     * @param inputStream Content of the .xlsx file. It isn't closed
+     * @param rowConsumer Receives each row present in the sheet. Exceptions it throws stop the reading
+     * @throws IOException If the content isn't an .xlsx file or it can't be read
+     */
+    public static void read(InputStream inputStream, Consumer<WorksheetRow> rowConsumer) throws IOException {
+        Path file = Files.createTempFile("worksheet", ".xlsx");
+        try {
+            Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+            read(file, rowConsumer);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void read(Path file, Consumer<WorksheetRow> rowConsumer) throws IOException {
+        OPCPackage workbook;
+        try {
+            workbook = OPCPackage.open(file.toFile(), PackageAccess.READ);
+        } catch (OpenXML4JException | InvalidOperationException | NotOfficeXmlFileException e) {
+            throw new IOException("The file isn't a worksheet", e);
+        }
+        try {
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(workbook);
+            Iterator<InputStream> sheets = new XSSFReader(workbook).getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("The worksheet has no sheets");
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = SAXHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(sharedStrings, rowConsumer));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to read the worksheet", e);
+        } finally {
+            // Closing a read only package would try to save it
+            workbook.revert();
+        }
+    }
+
+    /**
+     * Collects the values of the cells of each row. Shared strings are looked up by their index,
+     * and the cells missing in the XML are left missing in the row
+     */
+    private static class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final Consumer<WorksheetRow> rowConsumer;
+        private final StringBuilder value = new StringBuilder();
+        private WorksheetRow row;
+        private int rowCount;
+        private int column;
+        private String cellType;
+        private boolean inCell;
+        private boolean inValue;
+
+        private SheetHandler(ReadOnlySharedStringsTable sharedStrings, Consumer<WorksheetRow> rowConsumer) {
+            this.sharedStrings = sharedStrings;
+            this.rowConsumer = rowConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    row = new WorksheetRow(++rowCount);
+                    column = 0;
+                    break;
+                case "c":
+                    String reference = attributes.getValue("r");
+                    if (reference != null) {
+                        column = columnIndex(reference);
+                    }
+                    cellType = attributes.getValue("t");
+                    value.setLength(0);
+                    inCell = true;
+                    break;
+                case "v":
+                case "t":
+                    inValue = inCell;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "c":
+                    if (row != null) {
+                        row.set(column, cellValue(), cellType == null || "n".equals(cellType));
+                    }
+                    column++;
+                    inCell = false;
+                    break;
+                case "row":
+                    rowConsumer.accept(row);
+                    row = null;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                value.append(ch, start, length);
+            }
+        }
+
+        private String cellValue() {
+            if ("s".equals(cellType)) {
+                return value.length() == 0 ? "" : sharedStrings.getItemAt(Integer.parseInt(value.toString().trim())).getString();
+            } else if ("b".equals(cellType)) {
+                return "1".equals(value.toString()) ? "TRUE" : "FALSE";
+            }
+            return value.toString();
+        }
+
+        /**
+         * @param reference Reference of the cell, e.g. AB12
+         * @return Index of the column, starting at 0
+         */
+        private static int columnIndex(String reference) {
+            int index = 0;
+            for (int i = 0; i < reference.length() && Character.isLetter(reference.charAt(i)); i++) {
+                index = index * 26 + (Character.toUpperCase(reference.charAt(i)) - 'A' + 1);
+            }
+            return index - 1;
+        }
+    }
+}
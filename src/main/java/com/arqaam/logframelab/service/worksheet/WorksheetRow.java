@@ -0,0 +1,63 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Values of the cells of a row read by the {@link WorksheetReader}, by column index
+ */
+public class WorksheetRow {
+
+    private final int number;
+    private final List<String> values = new ArrayList<>();
+    private final BitSet numeric = new BitSet();
+
+    WorksheetRow(int number) {
+        this.number = number;
+    }
+
+    /**
+     * @return Position of the row among the rows present in the sheet, starting at 1
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    public boolean hasCell(int column) {
+        return column < values.size() && values.get(column) != null;
+    }
+
+    /**
+     * @param column Index of the column, starting at 0
+     * @return Value of the cell as text, empty if the cell is missing
+     */
+    public String getString(int column) {
+        return hasCell(column) ? values.get(column) : "";
+    }
+
+    /**
+     * Retrieves the value of a cell holding a code, which may have been typed as a number
+     * @param column Index of the column, starting at 0
+     * @return Value of the cell, without decimals if it is a number, empty if the cell is missing
+     */
+    public String getCode(int column) {
+        String value = getString(column);
+        if (numeric.get(column) && !value.isEmpty()) {
+            try {
+                return String.valueOf((int) Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                return value;
+            }
+        }
+        return value;
+    }
+
+    void set(int column, String value, boolean isNumeric) {
+        while (values.size() <= column) {
+            values.add(null);
+        }
+        values.set(column, value);
+        numeric.set(column, isNumeric);
+    }
+}
@@ -0,0 +1,66 @@
+package com.arqaam.logframelab.service.worksheet;
+
+/**
+ * Normalizes the text of the cells of imported worksheets
+ */
+public class WorksheetText {
+
+    /** Characters kept by {@link #clean(String)}, the printable ASCII ones */
+    private static final boolean[] PRINTABLE = new boolean[128];
+
+    static {
+        for (char c = ' '; c <= '~'; c++) {
+            PRINTABLE[c] = true;
+        }
+    }
+
+    private WorksheetText() {}
+
+    /**
+     * Removes special characters and extra empty space in a single pass. Only printable ASCII characters are kept,
+     * and escape sequences left as text, i.e. <code>\xHH</code> and <code>\n</code>, are removed
+     * @param text Text to be cleaned
+     * @return Cleaned text
+     */
+    public static String clean(String text) {
+        StringBuilder cleaned = new StringBuilder(text.length());
+        // Escape sequences are only looked for after the last one removed, since the text isn't scanned again
+        int hexEscapeStart = 0;
+        int newLineEscapeStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= PRINTABLE.length || !PRINTABLE[c]) {
+                continue;
+            }
+            cleaned.append(c);
+            int length = cleaned.length();
+            if (length - 4 >= hexEscapeStart && isHexEscape(cleaned, length - 4)) {
+                cleaned.setLength(length - 4);
+                hexEscapeStart = cleaned.length();
+            } else if (c == 'n' && length - 2 >= newLineEscapeStart && cleaned.charAt(length - 2) == '\\') {
+                cleaned.setLength(length - 2);
+                hexEscapeStart = cleaned.length();
+                newLineEscapeStart = cleaned.length();
+            }
+        }
+        return cleaned.toString().trim();
+    }
+
+    /**
+     * Normalizes the name of an indicator to compare it with others, i.e. trimmed and in lower case
+     * @param name Name of the indicator
+     * @return Normalized name, empty if there is no name
+     */
+    public static String normalizeName(String name) {
+        return name == null ? "" : name.trim().toLowerCase();
+    }
+
+    private static boolean isHexEscape(CharSequence text, int start) {
+        return text.charAt(start) == '\\' && text.charAt(start + 1) == 'x'
+                && isHexDigit(text.charAt(start + 2)) && isHexDigit(text.charAt(start + 3));
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
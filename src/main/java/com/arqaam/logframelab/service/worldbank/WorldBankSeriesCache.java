@@ -0,0 +1,181 @@
+package com.arqaam.logframelab.service.worldbank;
+
+import com.arqaam.logframelab.model.persistence.WorldBankSeries;
+import com.arqaam.logframelab.repository.WorldBankSeriesRepository;
+import com.arqaam.logframelab.util.Logging;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the full series of values of World Bank indicators per country, so requests for some years of an
+ * indicator are answered without calling the World Bank API. Series are kept in memory, evicted least
+ * recently used first, and stored in the database, so they survive restarts and evictions. A series older
+ * than the ttl is still returned while it is fetched again in the background, which also means the last
+ * fetched series keeps being served while the World Bank API is down.
+ */
+@Component
+public class WorldBankSeriesCache implements Logging {
+
+    private static final String METRIC = "logframelab.world-bank.cache";
+    private static final TypeReference<LinkedHashMap<String, String>> SERIES_TYPE = new TypeReference<>() {};
+
+    private final WorldBankSeriesRepository repository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int maxEntries;
+    private final long ttl;
+    private final Map<WorldBankSeries.Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<WorldBankSeries.Key> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "world-bank-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WorldBankSeriesCache(WorldBankSeriesRepository repository, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                @Value("${logframelab.world-bank.cache.max-entries:500}") int maxEntries,
+                                @Value("${logframelab.world-bank.cache.ttl:604800000}") long ttl) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        Gauge.builder(METRIC + ".size", this, WorldBankSeriesCache::size).description("World Bank series kept in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retrieves the series of the indicator for the country, fetching it if it was never fetched before
+     * @param countryId World Bank country's Id
+     * @param indicatorCode World Bank indicator's Id, e.g. EG.CFT.ACCS.ZS
+     * @param loader Fetches the series from the World Bank API
+     * @return Values by year, in the order given by the World Bank API. The map is shared and can't be modified
+     */
+    public Map<String, String> get(String countryId, String indicatorCode, Supplier<Map<String, String>> loader) {
+        WorldBankSeries.Key key = new WorldBankSeries.Key(countryId.toUpperCase(), indicatorCode);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            count("memory");
+        } else {
+            entry = read(key);
+            if (entry != null) {
+                count("database");
+                put(key, entry);
+            }
+        }
+        if (entry == null) {
+            count("miss");
+            return store(key, loader.get()).values;
+        }
+        if (System.currentTimeMillis() - entry.fetchedAt >= ttl) {
+            refresh(key, loader);
+        }
+        return entry.values;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void refresh(WorldBankSeries.Key key, Supplier<Map<String, String>> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    store(key, loader.get());
+                    logger().info("Refreshed the World Bank series {} of country {}", key.getIndicatorCode(), key.getCountryId());
+                } catch (RuntimeException e) {
+                    logger().warn("Failed to refresh the World Bank series {} of country {}, the stale one is kept",
+                            key.getIndicatorCode(), key.getCountryId(), e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            logger().warn("World Bank series {} of country {} was not refreshed since the cache is shutting down",
+                    key.getIndicatorCode(), key.getCountryId());
+        }
+    }
+
+    private Entry store(WorldBankSeries.Key key, Map<String, String> values) {
+        Entry entry = new Entry(Collections.unmodifiableMap(new LinkedHashMap<>(values)), System.currentTimeMillis());
+        put(key, entry);
+        try {
+            repository.save(new WorldBankSeries(key.getCountryId(), key.getIndicatorCode(),
+                    objectMapper.writeValueAsString(entry.values), new Date(entry.fetchedAt)));
+        } catch (JsonProcessingException | DataAccessException e) {
+            logger().warn("Failed to store the World Bank series {} of country {}", key.getIndicatorCode(), key.getCountryId(), e);
+        }
+        return entry;
+    }
+
+    @Nullable
+    private Entry read(WorldBankSeries.Key key) {
+        try {
+            return repository.findById(key).map(series -> {
+                try {
+                    return new Entry(Collections.unmodifiableMap(objectMapper.readValue(series.getSeries(), SERIES_TYPE)),
+                            series.getFetchedAt().getTime());
+                } catch (JsonProcessingException e) {
+                    logger().warn("Failed to read the stored World Bank series {} of country {}",
+                            key.getIndicatorCode(), key.getCountryId(), e);
+                    return null;
+                }
+            }).orElse(null);
+        } catch (DataAccessException e) {
+            logger().warn("Failed to read the stored World Bank series {} of country {}", key.getIndicatorCode(), key.getCountryId(), e);
+            return null;
+        }
+    }
+
+    private synchronized void put(WorldBankSeries.Key key, Entry entry) {
+        entries.put(key, entry);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void count(String result) {
+        Counter.builder(METRIC + ".gets").description("World Bank series requested from the cache")
+                .tag("result", result).register(meterRegistry).increment();
+    }
+
+    private static class Entry {
+        private final Map<String, String> values;
+        private final long fetchedAt;
+
+        private Entry(Map<String, String> values, long fetchedAt) {
+            this.values = values;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.arqaam.logframelab.util;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts the text of a .docx file by streaming the body of the document (word/document.xml) out of the zip,
+ * instead of loading the whole document into POI's object model. Only the text is kept in memory, so the heap
+ * used doesn't grow with images or the size of the XML. Paragraphs and line breaks become new lines and tabs
+ * are kept, as in {@link org.apache.poi.xwpf.extractor.XWPFWordExtractor}, but headers, footers and comments are left out.
+ */
+public class DocxTextExtractor {
+
+    private static final String DOCUMENT_ENTRY = "word/document.xml";
+    private static final String WORD_NAMESPACE = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String MARKUP_COMPATIBILITY_NAMESPACE = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private DocxTextExtractor() {}
+
+    /**
+     * Extracts the text of the body of the document
+     * @param inputStream Content of the .docx file. It isn't closed
+     * @return Text of the document
+     * @throws IOException If the content isn't a .docx file or it can't be read
+     */
+    public static String extractText(InputStream inputStream) throws IOException {
+        ZipInputStream zip = new ZipInputStream(inputStream);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (DOCUMENT_ENTRY.equals(entry.getName())) {
+                try {
+                    return extractText(XML_INPUT_FACTORY.createXMLStreamReader(zip));
+                } catch (XMLStreamException e) {
+                    throw new IOException("Failed to parse " + DOCUMENT_ENTRY, e);
+                }
+            }
+        }
+        throw new IOException("The file has no " + DOCUMENT_ENTRY);
+    }
+
+    private static String extractText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        boolean inText = false;
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String namespace = reader.getNamespaceURI();
+                    String name = reader.getLocalName();
+                    if (MARKUP_COMPATIBILITY_NAMESPACE.equals(namespace) && "Fallback".equals(name)) {
+                        // Same content as the alternative chosen before it, e.g. text boxes for older versions of Word
+                        skipElement(reader);
+                    } else if (WORD_NAMESPACE.equals(namespace)) {
+                        switch (name) {
+                            case "pPr":
+                            case "rPr":
+                                // Formatting only, e.g. the tab stops of a paragraph are also w:tab elements
+                                skipElement(reader);
+                                break;
+                            case "t":
+                                inText = true;
+                                break;
+                            case "tab":
+                                text.append('\t');
+                                break;
+                            case "br":
+                            case "cr":
+                                text.append('\n');
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && WORD_NAMESPACE.equals(reader.getNamespaceURI())) {
+                    if ("t".equals(reader.getLocalName())) {
+                        inText = false;
+                    } else if ("p".equals(reader.getLocalName())) {
+                        text.append('\n');
+                    }
+                } else if (inText && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE)) {
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return text.toString();
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+}
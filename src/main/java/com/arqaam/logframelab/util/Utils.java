@@ -1,14 +1,14 @@
 package com.arqaam.logframelab.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import com.arqaam.logframelab.exception.FailedToOpenFileException;
 import com.arqaam.logframelab.model.Progress;
 
-import org.apache.poi.hwpf.HWPFDocument;
 import org.apache.poi.hwpf.extractor.WordExtractor;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
@@ -33,32 +33,64 @@ public class Utils implements Logging {
         messageSendingOperations.convertAndSend(webSocketURI, new Progress((int)value));
     }
 
+    /**
+     * Sends a progress update of a scan job to the web socket topic of the job.
+     * @param jobId Id of the job
+     * @param value Percentage value of the progress
+     */
+    public void sendProgressMessage(String jobId, float value){
+        logger().info("Preparing to send message of job {} through web socket. Value {}", jobId, value);
+        messageSendingOperations.convertAndSend(webSocketURI + "/" + jobId, new Progress((int)value));
+    }
+
+    /**
+     * Retrieves the text of an uploaded word document, streaming its content
+     * @param file Uploaded .doc or .docx file
+     * @return Text of the document
+     */
     public String retrieveTextFromDocument(MultipartFile file) {
-        String text = "";
+        try (InputStream inputStream = file.getInputStream()) {
+            return extractText(file.getOriginalFilename(), inputStream);
+        } catch (IOException e) {
+            logger().error("Failed to read word file. Name of the file: {}", file.getOriginalFilename(), e);
+            throw new FailedToOpenFileException();
+        }
+    }
+
+    /**
+     * Retrieves the text of a word document already read into memory
+     * @param fileName Name of the file, used for logging
+     * @param content Content of the file
+     * @return Text of the document
+     */
+    public String retrieveTextFromDocument(String fileName, byte[] content) {
+        return extractText(fileName, new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Extracts the text of the document, detecting whether it is a .docx or a .doc file by its first bytes.
+     * The text of .docx files is streamed out of the document without parsing it into POI's object model
+     */
+    private String extractText(String fileName, InputStream content) {
         try {
-            if(file.getOriginalFilename().toLowerCase().matches(".+\\.docx$")) {
-                logger().info("Retrieving text from a .docx file with file name: {}", file.getOriginalFilename());
-                XWPFDocument doc = new XWPFDocument(file.getInputStream());
-                text = new XWPFWordExtractor(doc).getText();
-                doc.close();
-            } else {
-                // Read .doc
-                logger().info("Retrieving text from a .doc file with file name: {}", file.getOriginalFilename()); 
-                try {           
-                    HWPFDocument doc = new HWPFDocument(file.getInputStream());
-                    text = new WordExtractor(doc).getText();
-                    doc.close();
-                } catch(IllegalArgumentException e) {
-                    logger().info("Actually its a .docx file with file name: {}", file.getOriginalFilename());
-                    XWPFDocument doc = new XWPFDocument(file.getInputStream());
-                    text = new XWPFWordExtractor(doc).getText();
-                    doc.close();
-                }
+            InputStream inputStream = FileMagic.prepareToCheckMagic(content);
+            FileMagic fileMagic = FileMagic.valueOf(inputStream);
+            switch (fileMagic) {
+                case OOXML:
+                    logger().info("Retrieving text from a .docx file with file name: {}", fileName);
+                    return DocxTextExtractor.extractText(inputStream);
+                case OLE2:
+                    logger().info("Retrieving text from a .doc file with file name: {}", fileName);
+                    try (WordExtractor extractor = new WordExtractor(inputStream)) {
+                        return extractor.getText();
+                    }
+                default:
+                    logger().error("Failed to open word file, its format is {}. Name of the file: {}", fileMagic, fileName);
+                    throw new FailedToOpenFileException();
             }
         } catch (IOException e) {
-            logger().error("Failed to open word file. Name of the file: {}", file.getOriginalFilename(), e);
+            logger().error("Failed to open word file. Name of the file: {}", fileName, e);
             throw new FailedToOpenFileException();
         }
-        return text;
     }
 }
@@ -0,0 +1,8 @@
+-- Full series of values of a World Bank indicator for a country, as JSON of year to value
+CREATE TABLE IF NOT EXISTS `WORLD_BANK_SERIES` (
+  `COUNTRY_ID` VARCHAR(10) NOT NULL,
+  `INDICATOR_CODE` VARCHAR(100) NOT NULL,
+  `SERIES` TEXT NOT NULL,
+  `FETCHED_AT` TIMESTAMP NOT NULL,
+  PRIMARY KEY (`COUNTRY_ID`, `INDICATOR_CODE`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,9 @@
+-- Hash of the content of each indicator as last imported from the master worksheet, so reimports only write the
+-- rows that changed. Indicators without a row are compared with their current content
+CREATE TABLE IF NOT EXISTS `INDICATOR_CONTENT_HASH` (
+  `INDICATOR_ID` INT NOT NULL,
+  `NORMALIZED_NAME` VARCHAR(350) NOT NULL,
+  `CONTENT_HASH` CHAR(64) NOT NULL,
+  PRIMARY KEY (`INDICATOR_ID`),
+  CONSTRAINT `FK_INDICATOR_CONTENT_HASH_INDICATOR` FOREIGN KEY (`INDICATOR_ID`) REFERENCES `IND_INDICATOR` (`ID`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
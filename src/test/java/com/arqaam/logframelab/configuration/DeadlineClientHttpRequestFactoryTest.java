@@ -0,0 +1,74 @@
+package com.arqaam.logframelab.configuration;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineClientHttpRequestFactoryTest {
+
+  private HttpServer server;
+  private DeadlineClientHttpRequestFactory requestFactory;
+
+  @BeforeEach
+  void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/fast", exchange -> {
+      byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(body);
+      }
+    });
+    // Sends the body a byte at a time, so no single read times out
+    server.createContext("/slow", exchange -> {
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        for (int i = 0; i < 50; i++) {
+          outputStream.write('a');
+          outputStream.flush();
+          Thread.sleep(100);
+        }
+      } catch (Exception e) {
+        // Client went away
+      }
+    });
+    server.start();
+    requestFactory = new DeadlineClientHttpRequestFactory(HttpClients.createDefault(), Duration.ofMillis(500), "test");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    requestFactory.destroy();
+    server.stop(0);
+  }
+
+  @Test
+  void withinDeadline() {
+    RestTemplate restTemplate = new RestTemplate(requestFactory);
+    assertEquals("ok", restTemplate.getForObject(url("/fast"), String.class));
+  }
+
+  @Test
+  void deadlineExceeded() {
+    RestTemplate restTemplate = new RestTemplate(requestFactory);
+    long start = System.nanoTime();
+    assertThrows(RestClientException.class, () -> restTemplate.getForObject(url("/slow"), String.class));
+    long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+    assertTrue(elapsed < 2000, "Request took " + elapsed + " ms");
+  }
+
+  private String url(String path) {
+    return "http://localhost:" + server.getAddress().getPort() + path;
+  }
+}
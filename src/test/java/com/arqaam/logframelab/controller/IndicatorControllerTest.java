@@ -1,6 +1,7 @@
 package com.arqaam.logframelab.controller;
 
 import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.exception.ScanJobNotFoundException;
 import com.arqaam.logframelab.exception.WrongFileExtensionException;
 import com.arqaam.logframelab.model.*;
 import com.arqaam.logframelab.model.Error;
@@ -13,6 +14,9 @@ import com.arqaam.logframelab.service.IndicatorService;
 import com.arqaam.logframelab.service.MachineLearningService;
 
 import com.arqaam.logframelab.service.StatisticService;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.service.catalogue.ReferenceDataCache;
+import com.arqaam.logframelab.service.scan.ScanJob;
 import com.arqaam.logframelab.util.Constants;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -99,6 +103,12 @@ class IndicatorControllerTest extends BaseControllerTest {
   @Autowired
   private IndicatorService indicatorService;
 
+  @Autowired
+  private IndicatorCatalogue indicatorCatalogue;
+
+  @Autowired
+  private ReferenceDataCache referenceDataCache;
+
   @BeforeEach
   void setup() {
     when(levelRepositoryMock.findAllByOrderByPriority())
@@ -111,6 +121,9 @@ class IndicatorControllerTest extends BaseControllerTest {
             .collect(Collectors.toList()));
 
     when(indicatorRepositoryMock.findAll()).thenReturn(mockIndicatorList());
+    when(indicatorRepositoryMock.findAllApprovedWithAssociations()).thenReturn(mockIndicatorList());
+    indicatorCatalogue.refresh();
+    referenceDataCache.invalidate();
 
     // generateAuthToken();
   }
@@ -302,6 +315,19 @@ class IndicatorControllerTest extends BaseControllerTest {
     assertEqualsException(response, HttpStatus.CONFLICT, 6, IllegalArgumentException.class);
   }
 
+  @Test
+  void downloadIndicators_failedExport() {
+    IndicatorDownloadRequest request = new IndicatorDownloadRequest();
+    request.setIndicators(getExpectedResult());
+    when(indicatorRepositoryMock.findAllById(any())).thenThrow(new IllegalStateException("Database is down"));
+    ResponseEntity<Error> response = testRestTemplate.exchange("/indicator/download?format=dfid", HttpMethod.POST,
+        new HttpEntity<>(request), Error.class);
+    // The error is sent instead of a document, and the download isn't counted
+    assertEqualsException(response, HttpStatus.INTERNAL_SERVER_ERROR, 0, IllegalStateException.class);
+    assertNull(response.getHeaders().get(HttpHeaders.CONTENT_DISPOSITION));
+    verify(statisticService, never()).addDownloadStatistic(any());
+  }
+
   @Test
   void handleFileUpload_doc() {
     String indicatorName = mockIndicatorList().get(0).getName();
@@ -340,6 +366,51 @@ class IndicatorControllerTest extends BaseControllerTest {
     assertEqualsIndicator(expected, response.getBody());
   }
 
+  @Test
+  void submitScanJob() {
+    List<Indicator> indicators = Arrays.asList(mockIndicatorList().get(0), mockIndicatorList().get(1));
+    List<MLScanIndicator> mlIndicators = Arrays.asList(
+        new MLScanIndicator(indicators.get(0).getName(), indicators.get(0).getId(), new MLScanIndicatorResponse.MLSearchResult(38.123456)),
+        new MLScanIndicator(indicators.get(1).getName(), indicators.get(1).getId(), new MLScanIndicatorResponse.MLSearchResult(40.123456)));
+    when(machineLearningService.scanForIndicators(any(), any())).thenReturn(mlIndicators);
+    when(indicatorRepositoryMock.findAllByIdIn(any())).thenReturn(indicators);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+    MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+    body.add("file", new ClassPathResource("test_doc.docx"));
+    body.add("filter", getSampleFilter());
+
+    ResponseEntity<ScanJobResponse> response = testRestTemplate.exchange("/indicator/upload/jobs", HttpMethod.POST,
+        new HttpEntity<>(body, headers), ScanJobResponse.class);
+
+    assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+    String id = Objects.requireNonNull(response.getBody()).getId();
+    assertNotNull(id);
+    assertNotNull(response.getHeaders().getLocation());
+    assertTrue(response.getHeaders().getLocation().getPath().endsWith("/indicator/upload/jobs/" + id));
+
+    ResponseEntity<List<IndicatorResponse>> result = testRestTemplate.exchange("/indicator/upload/jobs/" + id + "/result",
+        HttpMethod.GET, new HttpEntity<>(new HttpHeaders()), new ParameterizedTypeReference<List<IndicatorResponse>>() {});
+    assertEquals(HttpStatus.OK, result.getStatusCode());
+    assertEquals(Arrays.asList(indicators.get(1).getId(), indicators.get(0).getId()),
+        Objects.requireNonNull(result.getBody()).stream().map(IndicatorResponse::getId).collect(Collectors.toList()));
+
+    ResponseEntity<ScanJobResponse> job = testRestTemplate.exchange("/indicator/upload/jobs/" + id, HttpMethod.GET,
+        new HttpEntity<>(new HttpHeaders()), ScanJobResponse.class);
+    assertEquals(HttpStatus.OK, job.getStatusCode());
+    assertEquals(ScanJob.Status.DONE, Objects.requireNonNull(job.getBody()).getStatus());
+    assertEquals(100, job.getBody().getProgress());
+    assertEquals(2, job.getBody().getIndicators().size());
+  }
+
+  @Test
+  void getScanJob_notFound() {
+    ResponseEntity<Error> response = testRestTemplate.exchange("/indicator/upload/jobs/unknown", HttpMethod.GET,
+        new HttpEntity<>(new HttpHeaders()), Error.class);
+    assertEqualsException(response, HttpStatus.NOT_FOUND, 20, ScanJobNotFoundException.class);
+  }
+
   @Test
   void getFilters() {
     String sector = mockSectors.get(0);
@@ -401,6 +472,32 @@ class IndicatorControllerTest extends BaseControllerTest {
     assertEquals(mockSdgCodes.stream().sorted(Comparator.comparing(SDGCode::getName)).collect(Collectors.toCollection(LinkedHashSet::new)), response.getBody().getSdgCode());
   }
 
+  @Test
+  void getFilters_notModified() {
+    when(indicatorRepositoryMock.getAllBy()).thenReturn(new ArrayList<>());
+
+    ResponseEntity<FiltersDto> response = testRestTemplate
+            .exchange("/indicator/filters", HttpMethod.GET, new HttpEntity<>(new HttpHeaders()), FiltersDto.class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    String eTag = response.getHeaders().getETag();
+    assertNotNull(eTag);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch(eTag);
+    response = testRestTemplate
+            .exchange("/indicator/filters", HttpMethod.GET, new HttpEntity<>(headers), FiltersDto.class);
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertNull(response.getBody());
+    verify(indicatorRepositoryMock, times(1)).getAllBy();
+
+    referenceDataCache.invalidate();
+    response = testRestTemplate
+            .exchange("/indicator/filters", HttpMethod.GET, new HttpEntity<>(headers), FiltersDto.class);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertNotEquals(eTag, response.getHeaders().getETag());
+    verify(indicatorRepositoryMock, times(2)).getAllBy();
+  }
+
   @Test
   void getIndicators() {
     List<IndicatorResponse> expectedResult = getExpectedResult();
@@ -414,7 +511,7 @@ class IndicatorControllerTest extends BaseControllerTest {
                 });
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    verify(indicatorRepositoryMock).findAll(any(Specification.class));
+    verify(indicatorRepositoryMock, times(0)).findAll(any(Specification.class));
     verify(indicatorRepositoryMock, times(0)).findAll();
     assertEqualsIndicator(expectedResult, response.getBody());
   }
@@ -431,7 +528,7 @@ class IndicatorControllerTest extends BaseControllerTest {
                 });
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    verify(indicatorRepositoryMock).findAll(any(Specification.class));
+    verify(indicatorRepositoryMock, times(0)).findAll(any(Specification.class));
     verify(indicatorRepositoryMock, times(0)).findAll();
     assertEqualsIndicator(expectedResult, response.getBody());
   }
@@ -447,7 +544,7 @@ class IndicatorControllerTest extends BaseControllerTest {
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
     verify(indicatorRepositoryMock, times(0)).findAll(any(Specification.class));
-    verify(indicatorRepositoryMock).findAll();
+    verify(indicatorRepositoryMock, times(0)).findAll();
     assertEqualsIndicator(expectedResult, response.getBody());
   }
 
@@ -5,15 +5,21 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import com.arqaam.logframelab.model.MLScanIndicatorResponse;
 import com.arqaam.logframelab.model.MLStatementQualityRequest;
 import com.arqaam.logframelab.model.MLStatementResponse;
+import com.arqaam.logframelab.model.SimilarityResponse;
 import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLScanIndicator;
 import com.arqaam.logframelab.model.MLStatementResponse.MLStatement;
 import com.arqaam.logframelab.model.persistence.Indicator;
@@ -77,6 +83,48 @@ public class MachineLearningControllerTest extends BaseControllerTest {
         assertEquals(40, response.getBody().get(1).getScore());
     }
 
+    @Test
+    void getSimilarIndicators() {
+        List<Indicator> indicators = Arrays.asList(Indicator.builder().id(1L).name("Indicator 1").build(),
+                Indicator.builder().id(2L).name("Indicator 2").build(), Indicator.builder().id(3L).name("Indicator 3").build());
+        when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators.subList(0, 2));
+        when(machineLearningService.getSimilarIndicators("Indicator 1", 0.8)).thenReturn(Collections.singletonList(3L));
+        when(machineLearningService.getSimilarIndicators("Indicator 2", 0.8)).thenReturn(Collections.emptyList());
+
+        ResponseEntity<List<SimilarityResponse>> response = testRestTemplate
+                .exchange("/ml/similarity?threshold=0.8", HttpMethod.GET,
+                        new HttpEntity<>(new HttpHeaders()), new ParameterizedTypeReference<List<SimilarityResponse>>(){});
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(indicators.subList(0, 2), response.getBody().stream().map(SimilarityResponse::getIndicator)
+                .collect(Collectors.toList()));
+        // The similar indicators are the approved ones of the catalogue, as in the streamed responses
+        assertEquals(Collections.singletonList(3L), response.getBody().get(0).getSimilarIndicators().stream()
+                .map(Indicator::getId).collect(Collectors.toList()));
+        assertTrue(response.getBody().get(1).getSimilarIndicators().isEmpty());
+        verify(indicatorService, never()).getIndicatorWithId(any());
+    }
+
+    @Test
+    void streamSimilarIndicators() {
+        List<Indicator> indicators = Arrays.asList(Indicator.builder().id(1L).name("Indicator 1").build(),
+                Indicator.builder().id(2L).name("Indicator 2").build());
+        when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators);
+        when(machineLearningService.getSimilarIndicators(any(), any())).thenReturn(Collections.emptyList());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("application/x-ndjson")));
+        ResponseEntity<String> response = testRestTemplate
+                .exchange("/ml/similarity?threshold=0.8", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(MediaType.parseMediaType("application/x-ndjson").includes(response.getHeaders().getContentType()));
+        String[] lines = Objects.requireNonNull(response.getBody()).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(Arrays.stream(lines).allMatch(line -> line.startsWith("{\"indicator\":")));
+    }
+
     @Test
     void scanForStatements() {
         List<MLStatement> impactStatements = new ArrayList<>();
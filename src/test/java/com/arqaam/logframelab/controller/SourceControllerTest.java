@@ -2,17 +2,21 @@ package com.arqaam.logframelab.controller;
 
 import com.arqaam.logframelab.model.persistence.Source;
 import com.arqaam.logframelab.service.SourceService;
+import com.arqaam.logframelab.service.catalogue.ReferenceDataCache;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 class SourceControllerTest extends BaseControllerTest {
 
@@ -20,9 +24,12 @@ class SourceControllerTest extends BaseControllerTest {
     private SourceService sourceService;
     @InjectMocks
     private SourceController sourceController;
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
 
     @Test
     void retrieveAllSources() {
+        referenceDataCache.invalidate();
         List<Source> expected = new ArrayList<>();
         expected.add(new Source(1L,"Fake Source 1"));
         expected.add(new Source(2L,"Fake Source 2"));
@@ -36,6 +43,26 @@ class SourceControllerTest extends BaseControllerTest {
         assertEquals(expected, response.getBody());
     }
 
+    @Test
+    void retrieveAllSources_notModified() {
+        referenceDataCache.invalidate();
+        when(sourceService.getSources()).thenReturn(Collections.singletonList(new Source(1L,"Fake Source 1")));
+        ResponseEntity<List<Source>> response = testRestTemplate
+                .exchange("/source", HttpMethod.GET,
+                        new HttpEntity<>(null), new ParameterizedTypeReference<List<Source>>() {
+                        });
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(Objects.requireNonNull(response.getHeaders().getETag()));
+        response = testRestTemplate
+                .exchange("/source", HttpMethod.GET,
+                        new HttpEntity<>(headers), new ParameterizedTypeReference<List<Source>>() {
+                        });
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(sourceService, times(1)).getSources();
+    }
+
     @Test
     void retrieveSourceById() {
         Source expected = new Source(1L, "Fake Source 1");
@@ -32,8 +32,10 @@ class WorldBankControllerTest extends BaseControllerTest {
         ResponseEntity<Map<String, String>> response = testRestTemplate.exchange("/worldbank/country", HttpMethod.GET,
                 null, new ParameterizedTypeReference<Map<String, String>>() {});
         assertEquals(HttpStatus.OK,response.getStatusCode());
+        assertEquals("max-age=86400, public", response.getHeaders().getCacheControl());
         assertNotNull(response.getBody());
-        assertEquals(304, response.getBody().size());
+        // Either the bundled snapshot or the countries of the last refresh from the World Bank API
+        assertTrue(response.getBody().size() > 200);
         assertTrue(response.getBody().containsKey("NZL"));
         assertTrue(response.getBody().containsValue("New Zealand"));
     }
@@ -3,11 +3,18 @@ package com.arqaam.logframelab.service;
 import com.arqaam.logframelab.model.IndicatorResponse;
 import com.arqaam.logframelab.model.persistence.*;
 import com.arqaam.logframelab.repository.*;
+import com.arqaam.logframelab.service.catalogue.CatalogueSnapshot;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.service.counter.IndicatorDownloadCounter;
+import com.arqaam.logframelab.service.template.TemplateRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.arqaam.logframelab.util.DocManipulationUtil;
 import com.arqaam.logframelab.util.Utils;
 import org.junit.jupiter.api.BeforeEach;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Example;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.lang.Nullable;
@@ -66,6 +73,14 @@ public abstract class BaseIndicatorServiceTest {
   DocManipulationUtil docManipulationUtil;
   @Mock
   Utils utils;
+  @Mock
+  IndicatorCatalogue indicatorCatalogue;
+  @Mock
+  ApplicationEventPublisher eventPublisher;
+  @Mock
+  IndicatorDownloadCounter downloadCounter;
+  @Spy
+  TemplateRegistry templateRegistry = new TemplateRegistry(new SimpleMeterRegistry());
 
   @InjectMocks
   IndicatorService indicatorService;
@@ -80,6 +95,7 @@ public abstract class BaseIndicatorServiceTest {
         .thenAnswer(i -> i.getArguments()[0]);
     lenient().when(indicatorRepository.findAll()).thenReturn(mockIndicatorList());
     lenient().when(indicatorRepository.findAllById(any())).thenReturn(mockIndicatorList());
+    lenient().when(indicatorCatalogue.getSnapshot()).thenAnswer(i -> CatalogueSnapshot.of(1L, mockIndicatorList()));
     lenient().when(indicatorRepository.findAll(any(Specification.class))).
         thenReturn(mockIndicatorList().stream()
             .filter(x -> mockSectors.contains(x.getSector()) && mockLevelsId
@@ -7,6 +7,8 @@ import static org.mockito.Mockito.*;
 
 import com.arqaam.logframelab.controller.dto.FiltersDto;
 import com.arqaam.logframelab.exception.IndicatorNotFoundException;
+import com.arqaam.logframelab.exception.TemplateNotFoundException;
+import com.arqaam.logframelab.exception.WorksheetInWrongFormatException;
 import com.arqaam.logframelab.model.IndicatorResponse;
 import com.arqaam.logframelab.model.NumIndicatorsSectorLevel;
 import com.arqaam.logframelab.model.StatementResponse;
@@ -330,6 +332,26 @@ public class FirstIndicatorServiceTests extends BaseIndicatorServiceTest {
     }
   }
 
+  @Test
+  void extractIndicatorFromFile_invalidLevel() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      XSSFSheet sheet = workbook.createSheet();
+      sheet.createRow(0).createCell(3).setCellValue("Name");
+      // Rows missing in the sheet aren't counted
+      XSSFRow row = sheet.createRow(4);
+      row.createCell(0).setCellValue("GOAL");
+      row.createCell(3).setCellValue("Number of people receiving assistance");
+      workbook.write(outputStream);
+    }
+    MockMultipartFile file = new MockMultipartFile("Indicators.xlsx", "Indicators.xlsx",
+      MediaType.APPLICATION_OCTET_STREAM.toString(), outputStream.toByteArray());
+
+    WorksheetInWrongFormatException exception = assertThrows(WorksheetInWrongFormatException.class,
+      () -> indicatorService.extractIndicatorFromFile(file));
+    assertTrue(exception.getMessage().startsWith("Level on row 2 is invalid"));
+  }
+
   @Test
   void exportIndicatorsInWorksheet() throws IOException {
     List<Indicator> expectedResult = mockIndicatorList();
@@ -370,6 +392,22 @@ public class FirstIndicatorServiceTests extends BaseIndicatorServiceTest {
     // }
   }
 
+  @Test
+  void exportIndicatorsInWordFile_writeFailed() {
+    List<IndicatorResponse> indicatorResponse = createListIndicatorResponse(mockIndicatorList());
+    OutputStream closedConnection = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("Connection reset by peer");
+      }
+    };
+
+    // Left to the caller instead of being reported as a missing template. POI may wrap it in its own exception
+    Exception exception = assertThrows(Exception.class, () -> indicatorService
+        .exportIndicatorsInWordFile(indicatorResponse, createListStatementResponse(), closedConnection));
+    assertFalse(exception instanceof TemplateNotFoundException);
+  }
+
   @Test
   void exportIndicatorsPRMFormat() throws IOException {
     List<Indicator> indicatorList = mockIndicatorList();
@@ -527,19 +565,14 @@ public class FirstIndicatorServiceTests extends BaseIndicatorServiceTest {
         Optional.of(mockSources.stream().map(Source::getId).collect(Collectors.toList())),
         Optional.of(mockLevelsId), Optional.of(mockSdgCodes.stream().map(SDGCode::getId).collect(Collectors.toList())),
         Optional.of(mockCrsCodes.stream().map(CRSCode::getId).collect(Collectors.toList())), null);
-    verify(indicatorRepository).findAll(any(Specification.class));
+    verify(indicatorCatalogue).getSnapshot();
+    verify(indicatorRepository, times(0)).findAll(any(Specification.class));
     verify(indicatorRepository, times(0)).findAll();
     assertEquals(expectedResult, result);
   }
 
   @Test
   void getIndicators_someFilters() {
-    when(indicatorRepository.findAll(any(Specification.class))).
-        thenReturn(mockIndicatorList().stream()
-            .filter(x -> mockSectors.contains(x.getSector()) && mockLevelsId
-                .contains(x.getLevel().getId()) && mockSources.containsAll(x.getSource())
-            ).collect(Collectors.toList()));
-
     List<Indicator> expectedResult = mockIndicatorList().stream()
         .filter(
             x -> mockSectors.contains(x.getSector()) && mockLevelsId.contains(x.getLevel().getId())
@@ -548,7 +581,8 @@ public class FirstIndicatorServiceTests extends BaseIndicatorServiceTest {
 
     List<Indicator> result = indicatorService.getIndicators(Optional.of(mockSectors),
         Optional.of(mockSources.stream().map(Source::getId).collect(Collectors.toList())), Optional.of(mockLevelsId), Optional.empty(), Optional.empty(), null);
-    verify(indicatorRepository).findAll(any(Specification.class));
+    verify(indicatorCatalogue).getSnapshot();
+    verify(indicatorRepository, times(0)).findAll(any(Specification.class));
     verify(indicatorRepository, times(0)).findAll();
     assertEquals(expectedResult, result);
   }
@@ -559,8 +593,9 @@ public class FirstIndicatorServiceTests extends BaseIndicatorServiceTest {
     List<Indicator> result = indicatorService
         .getIndicators(Optional.empty(), Optional.empty(), Optional.empty(),
             Optional.empty(), Optional.empty(), null);
+    verify(indicatorCatalogue).getSnapshot();
     verify(indicatorRepository, times(0)).findAll(any(Specification.class));
-    verify(indicatorRepository).findAll();
+    verify(indicatorRepository, times(0)).findAll();
     assertEquals(expectedResult, result);
   }
 
@@ -2,10 +2,21 @@ package com.arqaam.logframelab.service;
 
 import com.arqaam.logframelab.controller.dto.IndicatorApprovalRequestDto;
 import com.arqaam.logframelab.controller.dto.IndicatorRequestDto;
+import com.arqaam.logframelab.controller.dto.IndicatorsRequestDto;
+import com.arqaam.logframelab.controller.dto.SortDto;
+import com.arqaam.logframelab.model.ImportSummary;
+import com.arqaam.logframelab.model.NearDuplicate;
 import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.model.persistence.Level;
 import com.arqaam.logframelab.repository.IndicatorRepository;
 import com.arqaam.logframelab.repository.LevelRepository;
 import com.arqaam.logframelab.repository.*;
+import com.arqaam.logframelab.service.catalogue.CatalogueChangedEvent;
+import com.arqaam.logframelab.service.catalogue.CatalogueSnapshot;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import com.arqaam.logframelab.service.catalogue.ReferenceDataChangedEvent;
+import com.arqaam.logframelab.service.similarity.NearDuplicateDetector;
+import com.arqaam.logframelab.service.worksheet.IndicatorBatchWriter;
 import org.aspectj.lang.annotation.Before;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,16 +24,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -45,6 +59,18 @@ class IndicatorsManagementServiceTest {
     @Mock
     IndicatorRepository indicatorRepository;
 
+    @Mock
+    IndicatorCatalogue indicatorCatalogue;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    IndicatorBatchWriter batchWriter;
+
+    @Mock
+    NearDuplicateDetector nearDuplicateDetector;
+
     @InjectMocks
     IndicatorsManagementService service;
 
@@ -54,6 +80,62 @@ class IndicatorsManagementServiceTest {
 
     @Test
     void getIndicators() {
+        List<Indicator> indicators = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            indicators.add(Indicator.builder().id(id).name("Indicator " + (6 - id)).sector(id % 2 == 0 ? "Poverty" : "Health").build());
+        }
+        when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+        when(indicatorRepository.findAllByIdIn(any())).thenAnswer(i -> indicators.stream()
+                .filter(x -> ((Collection<?>) i.getArgument(0)).contains(x.getId())).collect(Collectors.toList()));
+
+        IndicatorsRequestDto request = new IndicatorsRequestDto();
+        request.setPage(1);
+        request.setPageSize(2);
+        SortDto sort = new SortDto();
+        sort.setProperty("name");
+        sort.setDirection("ASC");
+        request.setSortBy(sort);
+        IndicatorsRequestDto.FilterRequestDto filters = new IndicatorsRequestDto.FilterRequestDto();
+        filters.setSectors(Collections.singletonList("health"));
+        request.setFilters(filters);
+
+        Page<Indicator> result = service.getIndicators(request);
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(Arrays.asList(5L, 3L), result.getContent().stream().map(Indicator::getId).collect(Collectors.toList()));
+        verify(indicatorRepository).findAllByIdIn(Arrays.asList(5L, 3L));
+        verify(indicatorRepository, times(0)).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void getIndicators_sortedByNestedProperty() {
+        Level output = Level.builder().id(1L).name("OUTPUT").priority(3).build();
+        Level impact = Level.builder().id(2L).name("IMPACT").priority(1).build();
+        List<Indicator> indicators = Arrays.asList(
+                Indicator.builder().id(1L).name("Indicator 1").level(output).build(),
+                Indicator.builder().id(2L).name("Indicator 2").build(),
+                Indicator.builder().id(3L).name("Indicator 3").level(impact).build(),
+                Indicator.builder().id(4L).name("Indicator 4").level(output).build());
+        when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+        when(indicatorRepository.findAllByIdIn(any())).thenAnswer(i -> indicators.stream()
+                .filter(x -> ((Collection<?>) i.getArgument(0)).contains(x.getId())).collect(Collectors.toList()));
+
+        IndicatorsRequestDto request = new IndicatorsRequestDto();
+        request.setPage(1);
+        request.setPageSize(4);
+        SortDto sort = new SortDto();
+        sort.setProperty("level.name");
+        sort.setDirection("DESC");
+        request.setSortBy(sort);
+
+        // indicators without level are last in descending order, ties are sorted by id
+        assertEquals(Arrays.asList(1L, 4L, 3L, 2L), service.getIndicators(request).getContent().stream()
+                .map(Indicator::getId).collect(Collectors.toList()));
+
+        // properties that can't be sorted by are ignored
+        sort.setProperty("source");
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), service.getIndicators(request).getContent().stream()
+                .map(Indicator::getId).collect(Collectors.toList()));
     }
 
     @Test
@@ -62,6 +144,7 @@ class IndicatorsManagementServiceTest {
         service.saveIndicator(indicatorRequestDto);
         verify(levelRepository).findById(indicatorRequestDto.getLevelId());
         verify(indicatorRepository).save(any());
+        verify(eventPublisher).publishEvent(any(CatalogueChangedEvent.class));
     }
 
     @Test
@@ -80,16 +163,64 @@ class IndicatorsManagementServiceTest {
 
         List<Indicator> indicators = Collections.singletonList(Indicator.builder().id(1L).name("Fake Name").description("Old description").build());
         when(indicatorService.extractIndicatorFromFile(file)).thenReturn(extractedIndicators);
-        when(indicatorRepository.findAllByNameIn(any())).thenReturn(indicators);
-        service.processFileWithTempIndicators(file);
+        when(indicatorRepository.findAllByNormalizedNameIn(any())).thenReturn(indicators);
+        ImportSummary summary = service.processFileWithTempIndicators(file);
 
         verify(indicatorService).extractIndicatorFromFile(file);
-        verify(indicatorRepository, times(2)).exists(any());
-        verify(indicatorRepository).findAllByNameIn(any());
+        verify(indicatorRepository).findAllByNormalizedNameIn(new HashSet<>(Arrays.asList("fake name", "fake name 2")));
         List<Indicator> expected = new ArrayList<>();
         expected.add(Indicator.builder().id(1L).name("Fake Name").description("New description").temp(true).build());
         expected.add(indicator2);
-        verify(indicatorRepository).saveAll(expected);
+        verify(batchWriter).saveAll(expected);
+        assertEquals(new ImportSummary(1, 1, 0), summary);
+        // the updated indicator may have been approved, so the catalogue is rebuilt
+        verify(eventPublisher).publishEvent(any(CatalogueChangedEvent.class));
+    }
+
+    @Test
+    void processFileWithTempIndicators_duplicates() {
+        MockMultipartFile file = new MockMultipartFile("Indicators.xlsx", new byte[0]);
+        List<Indicator> extractedIndicators = new ArrayList<>();
+        extractedIndicators.add(Indicator.builder().name(" Fake name ").description("Same description").build());
+        extractedIndicators.add(Indicator.builder().name("Other Name").description("First").build());
+        extractedIndicators.add(Indicator.builder().name("OTHER NAME").description("Second").build());
+
+        List<Indicator> indicators = Collections.singletonList(Indicator.builder().id(1L).name("Fake Name").description("Same description").build());
+        when(indicatorService.extractIndicatorFromFile(file)).thenReturn(extractedIndicators);
+        when(indicatorRepository.findAllByNormalizedNameIn(any())).thenReturn(indicators);
+        ImportSummary summary = service.processFileWithTempIndicators(file);
+
+        verify(indicatorRepository).findAllByNormalizedNameIn(new HashSet<>(Arrays.asList("fake name", "other name")));
+        verify(batchWriter).saveAll(Collections.singletonList(
+                Indicator.builder().name("Other Name").description("First").temp(true).build()));
+        assertEquals(new ImportSummary(1, 0, 2), summary);
+        verify(eventPublisher).publishEvent(any(ReferenceDataChangedEvent.class));
+        verify(eventPublisher, never()).publishEvent(any(CatalogueChangedEvent.class));
+    }
+
+    @Test
+    void processFileWithTempIndicators_nearDuplicates() {
+        MockMultipartFile file = new MockMultipartFile("Indicators.xlsx", new byte[0]);
+        Indicator indicator = Indicator.builder().name("Number of people with access to electricity (%)").description("Share").build();
+        Indicator approved = Indicator.builder().id(4L).name("Number of people with access to electricity").build();
+        when(indicatorService.extractIndicatorFromFile(file)).thenReturn(Collections.singletonList(indicator));
+        when(nearDuplicateDetector.find(indicator.getName(), "Share")).thenReturn(Collections.singletonList(new NearDuplicate(approved, 0.8)));
+
+        ImportSummary summary = service.processFileWithTempIndicators(file);
+
+        assertEquals(1, summary.getInserted());
+        assertEquals(Collections.singletonMap(indicator.getName(), Collections.singletonList(4L)), summary.getNearDuplicates());
+        verify(batchWriter).saveAll(Collections.singletonList(indicator));
+    }
+
+    @Test
+    void getNearDuplicates() {
+        Indicator approved = Indicator.builder().id(4L).name("Number of people with access to electricity").build();
+        List<NearDuplicate> nearDuplicates = Collections.singletonList(new NearDuplicate(approved, 0.8));
+        when(nearDuplicateDetector.find("Number of people with access to electricity (%)", null)).thenReturn(nearDuplicates);
+
+        assertEquals(nearDuplicates, service.getNearDuplicates(
+                IndicatorRequestDto.builder().name("Number of people with access to electricity (%)").build()));
     }
 
     @Test
@@ -0,0 +1,107 @@
+package com.arqaam.logframelab.service;
+
+import com.arqaam.logframelab.exception.MLAPIRequestFailedException;
+import com.arqaam.logframelab.model.MLSimilarIndicatorResponse;
+import com.arqaam.logframelab.service.scan.ScanResultCache;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MachineLearningServiceResilienceTest {
+
+  @Mock
+  private RestTemplate restTemplate;
+
+  @Mock
+  private ScanResultCache scanResultCache;
+
+  @Mock
+  private CircuitBreakerRegistry circuitBreakerRegistry;
+
+  @Mock
+  private BulkheadRegistry bulkheadRegistry;
+
+  @InjectMocks
+  private MachineLearningService machineLearningService;
+
+  private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+      .slidingWindowSize(2).minimumNumberOfCalls(2).failureRateThreshold(50)
+      .waitDurationInOpenState(Duration.ofMinutes(1)).build());
+
+  private final BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+      .maxConcurrentCalls(1).maxWaitDuration(Duration.ZERO).build());
+
+  @BeforeEach
+  void setup() {
+    // The registries are final classes, so the mocks hand out the breakers and bulkheads of real ones
+    when(circuitBreakerRegistry.circuitBreaker(anyString())).thenAnswer(invocation -> circuitBreakers.circuitBreaker(invocation.getArgument(0)));
+    when(bulkheadRegistry.bulkhead(anyString())).thenAnswer(invocation -> bulkheads.bulkhead(invocation.getArgument(0)));
+  }
+
+  @Test
+  void getSimilarityScores_circuitOpen() {
+    when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), any(ParameterizedTypeReference.class)))
+        .thenThrow(new ResourceAccessException("Read timed out"));
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(MLAPIRequestFailedException.class, () -> machineLearningService.getSimilarityScores("Indicator", 0.8));
+    }
+
+    assertEquals(CircuitBreaker.State.OPEN,
+        circuitBreakers.circuitBreaker(MachineLearningService.SIMILARITY_CHECK_ENDPOINT).getState());
+    // The last call was rejected without reaching the API
+    verify(restTemplate, times(2)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(ParameterizedTypeReference.class));
+    assertEquals(CircuitBreaker.State.CLOSED,
+        circuitBreakers.circuitBreaker(MachineLearningService.INDICATORS_ENDPOINT).getState());
+  }
+
+  @Test
+  void getSimilarityScores_bulkheadFull() throws Exception {
+    CountDownLatch inFlight = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<MLSimilarIndicatorResponse> similar = Collections.singletonList(new MLSimilarIndicatorResponse(2L, 0.9));
+    when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), any(ParameterizedTypeReference.class)))
+        .thenAnswer(invocation -> {
+          inFlight.countDown();
+          release.await(5, TimeUnit.SECONDS);
+          return ResponseEntity.ok(similar);
+        });
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<MLSimilarIndicatorResponse>> first = executor.submit(() -> machineLearningService.getSimilarityScores("Indicator", 0.8));
+      assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+
+      assertThrows(MLAPIRequestFailedException.class, () -> machineLearningService.getSimilarityScores("Indicator", 0.8));
+
+      release.countDown();
+      assertEquals(similar, first.get(5, TimeUnit.SECONDS));
+      verify(restTemplate, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(ParameterizedTypeReference.class));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -13,8 +13,7 @@ import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class StatisticServiceTest {
@@ -27,41 +26,44 @@ class StatisticServiceTest {
     @Test
     void addDownloadStatistic() {
         Date date = new GregorianCalendar(Calendar.getInstance().get(Calendar.YEAR), Calendar.getInstance().get(Calendar.MONTH),1, 0,0,0).getTime();
-        Statistic foundStatistic = new Statistic();
-        foundStatistic.setDownloadWordTemplate(10);
-        foundStatistic.setDate(date);
-        when(statisticRepository.findByDate(date)).thenReturn(Optional.of(foundStatistic));
-        Statistic expected = new Statistic();
-        expected.setDownloadWordTemplate(11);
-        expected.setDate(date);
-        when(statisticRepository.save(expected)).thenReturn(expected);
-        Statistic result = statisticService.addDownloadStatistic(Constants.WORD_FORMAT);
-        verify(statisticRepository).save(expected);
-        assertNotNull(result);
-        assertEquals(date, result.getDate());
-        assertEquals(11, result.getDownloadWordTemplate());
-        assertEquals(0, result.getDownloadDFIDTemplate());
-        assertEquals(0, result.getDownloadPRMTemplate());
-        assertEquals(0, result.getDownloadXLSXTemplate());
+        when(statisticRepository.incrementDownloads(date, 2, 0, 0, 1)).thenReturn(1);
+
+        statisticService.addDownloadStatistic(Constants.WORD_FORMAT);
+        statisticService.addDownloadStatistic(Constants.WORD_FORMAT);
+        statisticService.addDownloadStatistic(Constants.PRM_FORMAT);
+        verifyNoInteractions(statisticRepository);
+
+        statisticService.flush();
+        verify(statisticRepository).incrementDownloads(date, 2, 0, 0, 1);
+        verify(statisticRepository, never()).save(any());
+
+        statisticService.flush();
+        verifyNoMoreInteractions(statisticRepository);
     }
 
     @Test
     void addDownloadStatistic_noDownloadFound() {
         Date date = new GregorianCalendar(Calendar.getInstance().get(Calendar.YEAR), Calendar.getInstance().get(Calendar.MONTH),1, 0,0,0).getTime();
-        when(statisticRepository.findByDate(any())).thenReturn(Optional.empty());
+        when(statisticRepository.incrementDownloads(date, 0, 1, 0, 0)).thenReturn(0);
         Statistic expected = new Statistic();
         expected.setDownloadDFIDTemplate(1);
         expected.setDate(date);
-        when(statisticRepository.save(expected)).thenReturn(expected);
 
-        Statistic result = statisticService.addDownloadStatistic(Constants.DFID_FORMAT);
+        statisticService.addDownloadStatistic(Constants.DFID_FORMAT);
+        statisticService.flush();
         verify(statisticRepository).save(expected);
-        assertNotNull(result);
-        assertEquals(date, result.getDate());
-        assertEquals(0, result.getDownloadWordTemplate());
-        assertEquals(1, result.getDownloadDFIDTemplate());
-        assertEquals(0, result.getDownloadPRMTemplate());
-        assertEquals(0, result.getDownloadXLSXTemplate());
+    }
+
+    @Test
+    void addDownloadStatistic_flushFailed() {
+        Date date = new GregorianCalendar(Calendar.getInstance().get(Calendar.YEAR), Calendar.getInstance().get(Calendar.MONTH),1, 0,0,0).getTime();
+        when(statisticRepository.incrementDownloads(date, 1, 0, 0, 0)).thenThrow(new RuntimeException("Connection lost"));
+
+        statisticService.addDownloadStatistic(Constants.WORD_FORMAT);
+        statisticService.flush();
+        statisticService.addDownloadStatistic(Constants.WORD_FORMAT);
+        statisticService.flush();
+        verify(statisticRepository).incrementDownloads(date, 2, 0, 0, 0);
     }
 
     @Test
@@ -74,4 +76,34 @@ class StatisticServiceTest {
         List<Statistic> result = statisticService.getAllStatistics();
         assertEquals(expected, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAllStatistics_pendingDownloads() {
+        Date date = new GregorianCalendar(Calendar.getInstance().get(Calendar.YEAR), Calendar.getInstance().get(Calendar.MONTH),1, 0,0,0).getTime();
+        Statistic previous = new Statistic(1L,1,1,1,2, new Date(0));
+        Statistic current = new Statistic(2L,3,0,1,1, new java.sql.Timestamp(date.getTime()));
+        when(statisticRepository.findAll()).thenReturn(Arrays.asList(previous, current));
+
+        statisticService.addDownloadStatistic(Constants.XLSX_FORMAT);
+        List<Statistic> result = statisticService.getAllStatistics();
+        assertEquals(2, result.size());
+        assertEquals(previous, result.get(0));
+        assertEquals(2L, result.get(1).getId());
+        assertEquals(3, result.get(1).getDownloadWordTemplate());
+        assertEquals(2, result.get(1).getDownloadXLSXTemplate());
+        assertEquals(1, current.getDownloadXLSXTemplate());
+    }
+
+    @Test
+    void getAllStatistics_pendingDownloadsWithoutStatistic() {
+        Date date = new GregorianCalendar(Calendar.getInstance().get(Calendar.YEAR), Calendar.getInstance().get(Calendar.MONTH),1, 0,0,0).getTime();
+        when(statisticRepository.findAll()).thenReturn(new ArrayList<>());
+
+        statisticService.addDownloadStatistic(Constants.WORD_FORMAT);
+        List<Statistic> result = statisticService.getAllStatistics();
+        assertEquals(1, result.size());
+        assertNull(result.get(0).getId());
+        assertEquals(date, result.get(0).getDate());
+        assertEquals(1, result.get(0).getDownloadWordTemplate());
+    }
+}
@@ -0,0 +1,146 @@
+package com.arqaam.logframelab.service;
+
+import com.arqaam.logframelab.model.IndicatorResponse;
+import com.arqaam.logframelab.model.StatementResponse;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.model.persistence.Source;
+import com.arqaam.logframelab.util.HeapBenchmark;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares the streaming worksheet export with the in-memory workbook using autosize it replaced.
+ * Run with <code>mvn test -Dtest=WorksheetExportBenchmarkTest -Dbenchmark=true</code>
+ */
+@ExtendWith(MockitoExtension.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class WorksheetExportBenchmarkTest extends BaseIndicatorServiceTest {
+
+  private static final int[] ROWS = {1_000, 10_000, 100_000};
+
+  @Override
+  List<Indicator> mockIndicatorList() {
+    return indicators(1);
+  }
+
+  @Test
+  void exportIndicatorsInWorksheet() throws Exception {
+    for (int rows : ROWS) {
+      List<Indicator> indicators = indicators(rows);
+      List<IndicatorResponse> responses = indicators.stream()
+          .map(indicatorService::convertIndicatorToIndicatorResponse).collect(Collectors.toList());
+      List<StatementResponse> statements = Collections.singletonList(new StatementResponse("Statement without indicators", "OUTPUT"));
+      when(indicatorRepository.findAllById(any())).thenReturn(indicators);
+
+      HeapBenchmark.Result streaming = HeapBenchmark.measure(() -> indicatorService
+          .exportIndicatorsInWorksheet(responses, statements, OutputStream.nullOutputStream()));
+      HeapBenchmark.Result inMemory = HeapBenchmark.measure(() -> inMemoryWorksheet(indicators, responses, statements));
+
+      HeapBenchmark.report("rows=" + rows, "streaming", streaming);
+      HeapBenchmark.report("rows=" + rows, "in-memory", inMemory);
+    }
+  }
+
+  private List<Indicator> indicators(int size) {
+    List<Indicator> indicators = new ArrayList<>(size);
+    for (long id = 1; id <= size; id++) {
+      indicators.add(Indicator.builder().id(id)
+          .name("Number of people receiving assistance through EU support " + id)
+          .description("Description of the indicator " + id)
+          .level(mockLevels[(int) (id % mockLevels.length)])
+          .sector(mockSectors.get((int) (id % mockSectors.size())))
+          .disaggregation(id % 2 == 0)
+          .source(Collections.singleton(mockSources.get((int) (id % mockSources.size()))))
+          .sdgCode(Collections.singleton(mockSdgCodes.get((int) (id % mockSdgCodes.size()))))
+          .crsCode(Collections.singleton(mockCrsCodes.get((int) (id % mockCrsCodes.size()))))
+          .sourceVerification(mockSourceVerification.get((int) (id % mockSourceVerification.size())))
+          .dataSource("https://data.worldbank.org/indicator/NY.ADJ.DKAP.GN.ZS?view=chart")
+          .build());
+    }
+    return indicators;
+  }
+
+  /**
+   * Export as it was before it was streamed: an in-memory XSSFWorkbook with the same header, styles, values,
+   * response lookup and autosized columns. Only the update of the times downloaded is left out, since the
+   * repository is mocked
+   */
+  private void inMemoryWorksheet(List<Indicator> indicators, List<IndicatorResponse> indicatorResponses,
+                                 List<StatementResponse> statements) throws IOException {
+    XSSFWorkbook workbook = new XSSFWorkbook();
+    Sheet sheet = workbook.createSheet();
+    String[] columns = new String[]{"Level", "Sector", "Name", "Description", "Source", "Disaggregation", "DAC 5/CRS",
+        "SDG", "Source of Verification", "Data Source", "Baseline Value", "Baseline Date", "Statement"};
+
+    Font boldFont = workbook.createFont();
+    boldFont.setBold(true);
+    CellStyle headerCellStyle = workbook.createCellStyle();
+    headerCellStyle.setFont(boldFont);
+
+    CellStyle redCellStyle = workbook.createCellStyle();
+    redCellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    redCellStyle.setFillForegroundColor(IndexedColors.RED.getIndex());
+
+    CellStyle yellowCellStyle = workbook.createCellStyle();
+    yellowCellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    yellowCellStyle.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
+
+    Row headerRow = sheet.createRow(0);
+    for (int i = 0; i < columns.length; i++) {
+      addCellWithStyle(headerRow, i, columns[i], headerCellStyle);
+    }
+
+    int rowNum = 1;
+    IndicatorResponse response;
+    for (Indicator indicator : indicators) {
+      response = indicatorResponses.stream().filter(x -> x.getId() == indicator.getId()).findFirst().get();
+      Row row = sheet.createRow(rowNum++);
+      row.createCell(0).setCellValue(indicator.getLevel().getName());
+      row.createCell(1).setCellValue(indicator.getSector());
+      row.createCell(2).setCellValue(indicator.getName());
+      row.createCell(3).setCellValue(indicator.getDescription());
+      row.createCell(4).setCellValue(indicator.getSource().stream().map(Source::getName).collect(Collectors.joining()));
+      addCellWithStyle(row, 5, indicator.getDisaggregation() == null ? "" : (indicator.getDisaggregation() ? "Yes" : "No"), yellowCellStyle);
+      addCellWithStyle(row, 6, indicator.getCrsCode().stream().map(x -> String.valueOf(x.getId())).collect(Collectors.joining(",")), redCellStyle);
+      addCellWithStyle(row, 7, indicator.getSdgCode().stream().map(x -> String.valueOf(x.getId())).collect(Collectors.joining(",")), redCellStyle);
+      addCellWithStyle(row, 8, indicator.getSourceVerification(), yellowCellStyle);
+      row.createCell(9).setCellValue(indicator.getDataSource());
+      row.createCell(10).setCellValue(response.getValue());
+      row.createCell(11).setCellValue(response.getDate());
+      row.createCell(12).setCellValue(response.getStatement());
+    }
+
+    for (StatementResponse statement : statements) {
+      Row row = sheet.createRow(rowNum++);
+      row.createCell(0).setCellValue(statement.getLevel().toUpperCase());
+      row.createCell(12).setCellValue(statement.getStatement());
+    }
+
+    for (int i = 0; i < columns.length; i++) {
+      sheet.autoSizeColumn(i);
+    }
+
+    workbook.write(OutputStream.nullOutputStream());
+    workbook.close();
+  }
+
+  private void addCellWithStyle(Row row, Integer i, String value, CellStyle cellStyle) {
+    Cell cell = row.createCell(i);
+    cell.setCellValue(value);
+    cell.setCellStyle(cellStyle);
+  }
+}
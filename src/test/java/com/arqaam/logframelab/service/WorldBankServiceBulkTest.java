@@ -0,0 +1,99 @@
+package com.arqaam.logframelab.service;
+
+import com.arqaam.logframelab.model.WorldBankIndicator;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.repository.WorldBankSeriesRepository;
+import com.arqaam.logframelab.service.worldbank.WorldBankSeriesCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class WorldBankServiceBulkTest {
+
+  private static final String URL = "https://api.worldbank.org/v2/";
+
+  private final WorldBankService worldBankService = new WorldBankService();
+  private WorldBankSeriesCache seriesCache;
+  private MockRestServiceServer server;
+
+  @BeforeEach
+  void setUp() {
+    RestTemplate restTemplate = new RestTemplate();
+    server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+    seriesCache = new WorldBankSeriesCache(mock(WorldBankSeriesRepository.class), new ObjectMapper(),
+        new SimpleMeterRegistry(), 100, 60_000);
+    ReflectionTestUtils.setField(worldBankService, "restTemplate", restTemplate);
+    ReflectionTestUtils.setField(worldBankService, "seriesCache", seriesCache);
+    ReflectionTestUtils.setField(worldBankService, "URL", URL);
+    ReflectionTestUtils.setField(worldBankService, "bulkConcurrency", 2);
+    worldBankService.startBulkExecutor();
+  }
+
+  @AfterEach
+  void tearDown() {
+    worldBankService.shutdown();
+    seriesCache.shutdown();
+  }
+
+  @Test
+  void getIndicatorsValues() {
+    expectSeries("EG.CFT.ACCS.ZS", "\"90.5\",null,\"92.0\"");
+    expectSeries("SE.PRM.ENRR", "\"101.2\",\"100.8\",null");
+
+    Map<Long, List<WorldBankIndicator>> result = worldBankService.getIndicatorsValues(Arrays.asList(
+        indicator(3L, "https://data.worldbank.org/indicator/SE.PRM.ENRR?view=chart"),
+        indicator(1L, "https://data.worldbank.org/indicator/EG.CFT.ACCS.ZS?view=chart"),
+        indicator(2L, "https://data.worldbank.org/indicator/EG.CFT.ACCS.ZS"),
+        indicator(4L, "https://www.undp.org/indicator"),
+        indicator(5L, null)), "NZL", Collections.singletonList(2002));
+
+    server.verify();
+    assertEquals(Arrays.asList(3L, 1L, 2L), List.copyOf(result.keySet()));
+    assertTrue(result.get(3L).isEmpty());
+    assertEquals(Collections.singletonList(WorldBankIndicator.builder().date("2002").value("92.0").build()), result.get(1L));
+    assertEquals(result.get(1L), result.get(2L));
+  }
+
+  @Test
+  void getIndicatorsValues_apiFailed() {
+    expectSeries("EG.CFT.ACCS.ZS", "\"90.5\",null,\"92.0\"");
+    server.expect(ExpectedCount.once(), requestTo(URL + "country/NZL/indicator/SE.PRM.ENRR?format=jsonstat"))
+        .andRespond(withServerError());
+
+    Map<Long, List<WorldBankIndicator>> result = worldBankService.getIndicatorsValues(Arrays.asList(
+        indicator(1L, "https://data.worldbank.org/indicator/EG.CFT.ACCS.ZS?view=chart"),
+        indicator(2L, "https://data.worldbank.org/indicator/SE.PRM.ENRR?view=chart")), "NZL", null);
+
+    server.verify();
+    assertEquals(Collections.singleton(1L), result.keySet());
+    assertEquals(2, result.get(1L).size());
+  }
+
+  private void expectSeries(String indicatorId, String values) {
+    server.expect(ExpectedCount.once(), requestTo(URL + "country/NZL/indicator/" + indicatorId + "?format=jsonstat"))
+        .andRespond(withSuccess("{\"WDI\":{\"value\":[" + values + "],\"dimension\":{\"year\":{\"category\":"
+            + "{\"label\":{\"2000\":\"2000\",\"2001\":\"2001\",\"2002\":\"2002\"}}}}}}", MediaType.APPLICATION_JSON));
+  }
+
+  private Indicator indicator(Long id, String dataSource) {
+    return Indicator.builder().id(id).dataSource(dataSource).build();
+  }
+}
@@ -0,0 +1,82 @@
+package com.arqaam.logframelab.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class WorldBankServiceCountriesTest {
+
+  private static final String URL = "https://api.worldbank.org/v2/";
+
+  private final WorldBankService worldBankService = new WorldBankService();
+  private MockRestServiceServer server;
+
+  @BeforeEach
+  void setUp() {
+    RestTemplate restTemplate = new RestTemplate();
+    server = MockRestServiceServer.bindTo(restTemplate).build();
+    ReflectionTestUtils.setField(worldBankService, "restTemplate", restTemplate);
+    ReflectionTestUtils.setField(worldBankService, "objectMapper", new ObjectMapper());
+    ReflectionTestUtils.setField(worldBankService, "URL", URL);
+  }
+
+  @Test
+  void loadCountriesSnapshot() {
+    worldBankService.loadCountriesSnapshot();
+
+    Map<String, String> countries = worldBankService.getCountries();
+    assertTrue(countries.size() > 200);
+    assertEquals("New Zealand", countries.get("NZL"));
+    assertThrows(UnsupportedOperationException.class, () -> countries.put("XXX", "Nowhere"));
+  }
+
+  @Test
+  void refreshCountries() {
+    worldBankService.loadCountriesSnapshot();
+    server.expect(requestTo(URL + "country?per_page=1000&format=json")).andRespond(withSuccess(
+        "[{\"page\":1,\"pages\":1,\"per_page\":\"1000\",\"total\":2},"
+            + "[{\"id\":\"PRT\",\"iso2Code\":\"PT\",\"name\":\"Portugal\",\"region\":{\"id\":\"ECS\",\"iso2code\":\"Z7\",\"value\":\"Europe & Central Asia\"},\"capitalCity\":\"Lisbon\"},"
+            + "{\"id\":\"NZL\",\"iso2Code\":\"NZ\",\"name\":\"New Zealand\",\"capitalCity\":\"Wellington\"}]]",
+        MediaType.APPLICATION_JSON));
+
+    worldBankService.refreshCountries();
+
+    server.verify();
+    assertEquals(Map.of("NZL", "New Zealand", "PRT", "Portugal"), worldBankService.getCountries());
+  }
+
+  @Test
+  void refreshCountries_apiFailed() {
+    worldBankService.loadCountriesSnapshot();
+    Map<String, String> snapshot = worldBankService.getCountries();
+    server.expect(requestTo(URL + "country?per_page=1000&format=json")).andRespond(withServerError());
+
+    worldBankService.refreshCountries();
+
+    server.verify();
+    assertSame(snapshot, worldBankService.getCountries());
+  }
+
+  @Test
+  void refreshCountries_noCountries() {
+    worldBankService.loadCountriesSnapshot();
+    Map<String, String> snapshot = worldBankService.getCountries();
+    server.expect(requestTo(URL + "country?per_page=1000&format=json")).andRespond(withSuccess(
+        "[{\"message\":[{\"id\":\"120\",\"key\":\"Invalid value\"}]}]", MediaType.APPLICATION_JSON));
+
+    worldBankService.refreshCountries();
+
+    assertSame(snapshot, worldBankService.getCountries());
+  }
+}
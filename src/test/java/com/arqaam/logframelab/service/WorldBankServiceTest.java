@@ -28,7 +28,9 @@ class WorldBankServiceTest {
     void retrieveCountries() {
         Map<String, String> result = worldBankService.getCountries();
         assertNotNull(result);
-        assertEquals(304, result.size());
+        // Either the bundled snapshot or the countries of the last refresh from the World Bank API
+        assertTrue(result.size() > 200);
+        assertEquals("New Zealand", result.get("NZL"));
         assertFalse(result.values().stream().anyMatch(Strings::isNullOrEmpty));
     }
 
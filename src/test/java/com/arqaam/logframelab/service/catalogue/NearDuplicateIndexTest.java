@@ -0,0 +1,113 @@
+package com.arqaam.logframelab.service.catalogue;
+
+import com.arqaam.logframelab.model.NearDuplicate;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicateIndexTest {
+
+  private final List<Indicator> indicators = Arrays.asList(
+      indicator(1L, "Number of people with access to electricity", "Share of the population with access to electricity"),
+      indicator(2L, "Proportion of women in managerial positions", null),
+      indicator(3L, "Number of schools built in rural areas", "Schools built or rehabilitated with the support of the project"),
+      indicator(4L, null, null));
+
+  @Test
+  void find() {
+    CatalogueSnapshot snapshot = CatalogueSnapshot.of(1L, indicators);
+
+    List<NearDuplicate> nearDuplicates = snapshot.findNearDuplicates("Number of people with access to electricity (%)",
+        "Share of the population with access to electricity", 0.7);
+
+    assertEquals(Collections.singletonList(1L), ids(nearDuplicates));
+    assertTrue(nearDuplicates.get(0).getSimilarity() >= 0.7);
+  }
+
+  @Test
+  void find_sameText() {
+    CatalogueSnapshot snapshot = CatalogueSnapshot.of(1L, indicators);
+
+    List<NearDuplicate> nearDuplicates = snapshot.findNearDuplicates("proportion of WOMEN in managerial positions.", null, 0.7);
+
+    assertEquals(Collections.singletonList(2L), ids(nearDuplicates));
+    assertEquals(1.0, nearDuplicates.get(0).getSimilarity());
+  }
+
+  @Test
+  void find_unrelated() {
+    CatalogueSnapshot snapshot = CatalogueSnapshot.of(1L, indicators);
+
+    assertTrue(snapshot.findNearDuplicates("Tonnes of CO2 emissions avoided per year", null, 0.7).isEmpty());
+    assertTrue(snapshot.findNearDuplicates("", null, 0.7).isEmpty());
+    assertTrue(snapshot.findNearDuplicates(null, null, 0).isEmpty());
+  }
+
+  @Test
+  void similarity() {
+    // The estimate of MinHash is close to the Jaccard similarity of the shingles
+    String name = "Number of children enrolled in primary school";
+    String other = "Number of children enrolled in secondary school";
+    double jaccard = jaccard(shingles(name), shingles(other));
+
+    double estimate = NearDuplicateIndex.similarity(NearDuplicateIndex.signature(name, null),
+        NearDuplicateIndex.signature(other, null));
+
+    assertEquals(jaccard, estimate, 0.15);
+  }
+
+  @Test
+  void find_manyIndicators() {
+    Random random = new Random(7);
+    List<Indicator> catalogue = new ArrayList<>();
+    for (long id = 1; id <= 5_000; id++) {
+      catalogue.add(indicator(id, randomWords(random, 8), randomWords(random, 20)));
+    }
+    CatalogueSnapshot snapshot = CatalogueSnapshot.of(1L, catalogue);
+    Indicator target = catalogue.get(1234);
+
+    List<NearDuplicate> nearDuplicates = snapshot.findNearDuplicates(target.getName() + " total", target.getDescription(), 0.7);
+
+    assertEquals(Collections.singletonList(target.getId()), ids(nearDuplicates));
+  }
+
+  private static Indicator indicator(Long id, String name, String description) {
+    return Indicator.builder().id(id).name(name).description(description).build();
+  }
+
+  private static List<Long> ids(List<NearDuplicate> nearDuplicates) {
+    return nearDuplicates.stream().map(nearDuplicate -> nearDuplicate.getIndicator().getId()).collect(Collectors.toList());
+  }
+
+  private static Set<String> shingles(String text) {
+    String normalized = text.toLowerCase();
+    Set<String> shingles = new HashSet<>();
+    for (int i = 0; i + NearDuplicateIndex.SHINGLE_SIZE <= normalized.length(); i++) {
+      shingles.add(normalized.substring(i, i + NearDuplicateIndex.SHINGLE_SIZE));
+    }
+    return shingles;
+  }
+
+  private static double jaccard(Set<String> first, Set<String> second) {
+    Set<String> intersection = new HashSet<>(first);
+    intersection.retainAll(second);
+    Set<String> union = new HashSet<>(first);
+    union.addAll(second);
+    return (double) intersection.size() / union.size();
+  }
+
+  private static String randomWords(Random random, int count) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < 3 + random.nextInt(6); j++) {
+        text.append((char) ('a' + random.nextInt(26)));
+      }
+      text.append(' ');
+    }
+    return text.toString().trim();
+  }
+}
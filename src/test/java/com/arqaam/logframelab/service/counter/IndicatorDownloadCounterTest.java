@@ -0,0 +1,66 @@
+package com.arqaam.logframelab.service.counter;
+
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IndicatorDownloadCounterTest {
+
+  @Mock
+  private IndicatorRepository indicatorRepository;
+  @InjectMocks
+  private IndicatorDownloadCounter downloadCounter;
+
+  private final List<Indicator> indicators = Arrays.asList(Indicator.builder().id(1L).build(),
+      Indicator.builder().id(2L).build());
+
+  @Test
+  void flush() {
+    downloadCounter.increment(indicators);
+    downloadCounter.increment(Collections.singletonList(indicators.get(0)));
+
+    downloadCounter.flush();
+
+    verify(indicatorRepository).incrementTimesDownloaded(Collections.singletonList(1L), 2L);
+    verify(indicatorRepository).incrementTimesDownloaded(Collections.singletonList(2L), 1L);
+    verifyNoMoreInteractions(indicatorRepository);
+  }
+
+  @Test
+  void flush_nothingPending() {
+    downloadCounter.flush();
+    downloadCounter.increment(indicators);
+    downloadCounter.flush();
+    downloadCounter.flush();
+
+    verify(indicatorRepository, times(1)).incrementTimesDownloaded(any(), anyLong());
+  }
+
+  @Test
+  void flush_failureIsRetried() {
+    when(indicatorRepository.incrementTimesDownloaded(any(), anyLong()))
+        .thenThrow(new QueryTimeoutException("timeout")).thenReturn(1);
+    downloadCounter.increment(Collections.singletonList(indicators.get(0)));
+    downloadCounter.flush();
+    downloadCounter.increment(Collections.singletonList(indicators.get(0)));
+
+    downloadCounter.shutdown();
+
+    verify(indicatorRepository).incrementTimesDownloaded(Collections.singletonList(1L), 1L);
+    verify(indicatorRepository).incrementTimesDownloaded(Collections.singletonList(1L), 2L);
+  }
+}
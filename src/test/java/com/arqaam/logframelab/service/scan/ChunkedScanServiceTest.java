@@ -0,0 +1,147 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.exception.MLAPIRequestFailedException;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLScanIndicator;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLSearchResult;
+import com.arqaam.logframelab.service.MachineLearningService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkedScanServiceTest {
+
+  private static final String FIRST = "Number of people receiving assistance";
+  private static final String SECOND = "Share of women in parliament, with a longer paragraph";
+
+  @Mock
+  private MachineLearningService machineLearningService;
+  @Mock
+  private KeywordScanEngine keywordScanEngine;
+
+  private ChunkedScanService chunkedScanService;
+
+  @AfterEach
+  void tearDown() {
+    if (chunkedScanService != null) {
+      chunkedScanService.shutdown();
+    }
+  }
+
+  @Test
+  void split() {
+    assertEquals(Arrays.asList("one\ntwo", "three four", "five"), ChunkedScanService.split("one\r\ntwo\n\n three four five ", 10));
+    assertEquals(Collections.singletonList("one two"), ChunkedScanService.split("one two", 10));
+    assertEquals(Arrays.asList("abcdefghij", "kl"), ChunkedScanService.split("abcdefghijkl", 10));
+    assertTrue(ChunkedScanService.split("  \n ", 10).isEmpty());
+  }
+
+  @Test
+  void scan_singleChunk() {
+    chunkedScanService = service(1000, ChunkedScanService.ScoreMerge.MAX, false);
+    List<MLScanIndicator> expected = Collections.singletonList(indicator(1L, 80.0));
+    String text = FIRST + "\n" + SECOND;
+    when(machineLearningService.scanForIndicators(text, null)).thenReturn(expected);
+    List<Double> progress = new ArrayList<>();
+
+    assertEquals(expected, chunkedScanService.scan(text, null, progress::add));
+    assertEquals(Collections.singletonList(1.0), progress);
+  }
+
+  @Test
+  void scan_max() {
+    chunkedScanService = service(SECOND.length(), ChunkedScanService.ScoreMerge.MAX, false);
+    when(machineLearningService.scanForIndicators(eq(FIRST), isNull())).thenReturn(Arrays.asList(indicator(1L, 40.0), indicator(2L, 90.0)));
+    when(machineLearningService.scanForIndicators(eq(SECOND), isNull())).thenReturn(Collections.singletonList(indicator(1L, 60.0)));
+    List<Double> progress = Collections.synchronizedList(new ArrayList<>());
+
+    List<MLScanIndicator> result = chunkedScanService.scan(FIRST + "\n" + SECOND, null, progress::add);
+
+    assertEquals(Arrays.asList(2L, 1L), result.stream().map(MLScanIndicator::getId).collect(Collectors.toList()));
+    assertEquals(90.0, result.get(0).getSearchResult().getSimilarity());
+    assertEquals(60.0, result.get(1).getSearchResult().getSimilarity());
+    assertEquals(Arrays.asList(0.5, 1.0), progress);
+  }
+
+  @Test
+  void scan_weighted() {
+    chunkedScanService = service(SECOND.length(), ChunkedScanService.ScoreMerge.WEIGHTED, false);
+    when(machineLearningService.scanForIndicators(eq(FIRST), isNull())).thenReturn(Collections.singletonList(indicator(1L, 40.0)));
+    when(machineLearningService.scanForIndicators(eq(SECOND), isNull())).thenReturn(Collections.singletonList(indicator(1L, 60.0)));
+
+    List<MLScanIndicator> result = chunkedScanService.scan(FIRST + "\n" + SECOND, null);
+
+    double expected = (40.0 * FIRST.length() + 60.0 * SECOND.length()) / (FIRST.length() + SECOND.length());
+    assertEquals(1, result.size());
+    assertEquals(expected, result.get(0).getSearchResult().getSimilarity(), 1e-9);
+  }
+
+  @Test
+  void scan_failed() {
+    chunkedScanService = service(SECOND.length(), ChunkedScanService.ScoreMerge.MAX, false);
+    when(machineLearningService.scanForIndicators(any(), any())).thenThrow(new MLAPIRequestFailedException());
+
+    assertThrows(MLAPIRequestFailedException.class, () -> chunkedScanService.scan(FIRST + "\n" + SECOND, null));
+  }
+
+  @Test
+  void scan_fallback() {
+    chunkedScanService = service(1000, ChunkedScanService.ScoreMerge.MAX, true);
+    List<MLScanIndicator> expected = Collections.singletonList(indicator(1L, 100.0));
+    when(machineLearningService.scanForIndicators(any(), any())).thenThrow(new MLAPIRequestFailedException());
+    when(keywordScanEngine.scan(FIRST, null)).thenReturn(expected);
+
+    assertEquals(expected, chunkedScanService.scan(FIRST, null));
+  }
+
+  @Test
+  void scan_fallbackOverLatencyBudget() {
+    chunkedScanService = new ChunkedScanService(machineLearningService, keywordScanEngine, new SimpleMeterRegistry(),
+        1000, 2, ChunkedScanService.ScoreMerge.MAX, true, 50);
+    List<MLScanIndicator> expected = Collections.singletonList(indicator(1L, 100.0));
+    when(machineLearningService.scanForIndicators(any(), any())).thenAnswer(invocation -> {
+      Thread.sleep(5_000);
+      return Collections.emptyList();
+    });
+    when(keywordScanEngine.scan(FIRST, null)).thenReturn(expected);
+
+    assertEquals(expected, chunkedScanService.scan(FIRST, null));
+  }
+
+  @Test
+  void scan_queuedChunksWithinLatencyBudget() {
+    // A single thread, so the second chunk waits for the first one longer than the budget
+    chunkedScanService = new ChunkedScanService(machineLearningService, keywordScanEngine, new SimpleMeterRegistry(),
+        SECOND.length(), 1, ChunkedScanService.ScoreMerge.MAX, true, 1_000);
+    when(machineLearningService.scanForIndicators(any(), any())).thenAnswer(invocation -> {
+      Thread.sleep(600);
+      return Collections.singletonList(indicator(1L, 50.0));
+    });
+
+    List<MLScanIndicator> result = chunkedScanService.scan(FIRST + "\n" + SECOND, null);
+
+    assertEquals(Collections.singletonList(1L), result.stream().map(MLScanIndicator::getId).collect(Collectors.toList()));
+    verify(machineLearningService, times(2)).scanForIndicators(any(), any());
+    verifyNoInteractions(keywordScanEngine);
+  }
+
+  private ChunkedScanService service(int maxChunkSize, ChunkedScanService.ScoreMerge scoreMerge, boolean fallback) {
+    return new ChunkedScanService(machineLearningService, keywordScanEngine, new SimpleMeterRegistry(),
+        maxChunkSize, 2, scoreMerge, fallback, 30_000);
+  }
+
+  private MLScanIndicator indicator(Long id, Double similarity) {
+    return new MLScanIndicator("Indicator " + id, id, new MLSearchResult(similarity));
+  }
+}
@@ -0,0 +1,101 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLScanIndicator;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.model.persistence.Level;
+import com.arqaam.logframelab.service.catalogue.CatalogueSnapshot;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KeywordScanEngineTest {
+
+  private static final Level OUTPUT = Level.builder().id(1L).name("OUTPUT").build();
+  private static final Level OUTCOME = Level.builder().id(2L).name("OUTCOME").build();
+
+  @Mock
+  private IndicatorCatalogue indicatorCatalogue;
+
+  private KeywordScanEngine keywordScanEngine;
+
+  private final List<Indicator> indicators = Arrays.asList(
+      Indicator.builder().id(1L).name("Food insecure people").keywords("food security,food").level(OUTPUT).build(),
+      Indicator.builder().id(2L).name("Security incidents").keywords("security").level(OUTCOME).build(),
+      Indicator.builder().id(3L).name("Women in parliament").keywords("women in parliament").level(OUTPUT).build(),
+      Indicator.builder().id(4L).name("Without keywords").level(OUTPUT).build());
+
+  @BeforeEach
+  void setup() {
+    keywordScanEngine = new KeywordScanEngine(indicatorCatalogue, 50, 10);
+  }
+
+  @Test
+  void count() {
+    KeywordAutomaton automaton = new KeywordAutomaton(1L, Map.of(
+        1L, Arrays.asList("food security", "food"), 2L, List.of("security"), 3L, List.of("security council")));
+
+    Map<Long, Integer> hits = automaton.count("FOOD security, seafood and the Security council; food.");
+
+    // Overlapping keywords are all found, only as whole words and regardless of case
+    assertEquals(Map.of(1L, 3, 2L, 2, 3L, 1), hits);
+  }
+
+  @Test
+  void scan() {
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+
+    List<MLScanIndicator> result = keywordScanEngine.scan("Food security is low, as is security. Food.", null);
+
+    assertEquals(Arrays.asList(1L, 2L), result.stream().map(MLScanIndicator::getId).collect(Collectors.toList()));
+    assertEquals(100.0, result.get(0).getSearchResult().getSimilarity());
+    assertEquals(100.0 * 2 / 3, result.get(1).getSearchResult().getSimilarity(), 1e-9);
+    assertEquals("Food insecure people", result.get(0).getIndicator());
+  }
+
+  @Test
+  void scan_filters() {
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+    FiltersDto filters = new FiltersDto();
+    filters.getLevel().add(OUTCOME);
+
+    List<MLScanIndicator> result = keywordScanEngine.scan("Food security is low, as is security.", filters);
+
+    assertEquals(1, result.size());
+    assertEquals(2L, result.get(0).getId());
+    assertEquals(100.0, result.get(0).getSearchResult().getSimilarity());
+  }
+
+  @Test
+  void scan_limited() {
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+    String text = "Food security" + ", food".repeat(18) + ". Women in parliament, women in parliament.";
+
+    // Out of 20 hits of the first indicator, women in parliament scores 10 and security 5, below the minimum score
+    assertEquals(Arrays.asList(1L, 3L), keywordScanEngine.scan(text, null).stream()
+        .map(MLScanIndicator::getId).collect(Collectors.toList()));
+    assertEquals(List.of(1L), new KeywordScanEngine(indicatorCatalogue, 1, 10).scan(text, null).stream()
+        .map(MLScanIndicator::getId).collect(Collectors.toList()));
+  }
+
+  @Test
+  void scan_catalogueChanged() {
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators.subList(0, 1)));
+    assertTrue(keywordScanEngine.scan("security", null).isEmpty());
+
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(2L, indicators));
+    assertEquals(1, keywordScanEngine.scan("security", null).size());
+  }
+}
@@ -0,0 +1,159 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.exception.MLAPIRequestFailedException;
+import com.arqaam.logframelab.exception.ScanJobNotFoundException;
+import com.arqaam.logframelab.exception.ScanQueueFullException;
+import com.arqaam.logframelab.model.IndicatorResponse;
+import com.arqaam.logframelab.service.IndicatorService;
+import com.arqaam.logframelab.util.Utils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScanJobServiceTest {
+
+  private static final MockMultipartFile FILE = new MockMultipartFile("file", "test_doc.docx", null, new byte[]{1, 2, 3});
+
+  @Mock
+  private IndicatorService indicatorService;
+  @Mock
+  private Utils utils;
+
+  private ScanJobService scanJobService;
+
+  @AfterEach
+  void tearDown() {
+    if (scanJobService != null) {
+      scanJobService.shutdown();
+    }
+  }
+
+  @Test
+  void submit() throws Exception {
+    scanJobService = new ScanJobService(indicatorService, utils, new SimpleMeterRegistry(), 1, 1, 60000);
+    FiltersDto filter = new FiltersDto();
+    List<IndicatorResponse> expected = Collections.singletonList(IndicatorResponse.builder().id(1L).build());
+    when(utils.retrieveTextFromDocument(eq("test_doc.docx"), any())).thenReturn("text");
+    when(indicatorService.scanForIndicators(eq("text"), eq(filter), any())).thenAnswer(invocation -> {
+      DoubleConsumer progress = invocation.getArgument(2);
+      progress.accept(0.5);
+      progress.accept(1);
+      return expected;
+    });
+
+    ScanJob job = scanJobService.submit(FILE, filter);
+
+    assertEquals(expected, job.getResult().get(5, TimeUnit.SECONDS));
+    assertEquals(ScanJob.Status.DONE, job.getStatus());
+    assertEquals(100, job.getProgress());
+    assertSame(job, scanJobService.getJob(job.getId()));
+    verify(utils).sendProgressMessage(job.getId(), 70);
+    verify(utils, times(2)).sendProgressMessage(job.getId(), 100);
+    verify(utils, never()).sendProgressMessage(anyFloat());
+  }
+
+  @Test
+  void submit_failed() throws Exception {
+    scanJobService = new ScanJobService(indicatorService, utils, new SimpleMeterRegistry(), 1, 1, 60000);
+    when(utils.retrieveTextFromDocument(any(), any())).thenReturn("text");
+    when(indicatorService.scanForIndicators(any(), any(), any())).thenThrow(new MLAPIRequestFailedException());
+
+    ScanJob job = scanJobService.submit(FILE, new FiltersDto());
+
+    ExecutionException exception = assertThrows(ExecutionException.class, () -> job.getResult().get(5, TimeUnit.SECONDS));
+    assertTrue(exception.getCause() instanceof MLAPIRequestFailedException);
+    assertEquals(ScanJob.Status.FAILED, job.getStatus());
+  }
+
+  @Test
+  void submit_queueFull() throws Exception {
+    scanJobService = new ScanJobService(indicatorService, utils, new SimpleMeterRegistry(), 1, 1, 60000);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(utils.retrieveTextFromDocument(any(), any())).thenReturn("text");
+    when(indicatorService.scanForIndicators(any(), any(), any())).thenAnswer(invocation -> {
+      started.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return Collections.emptyList();
+    });
+
+    ScanJob running = scanJobService.submit(FILE, new FiltersDto());
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    ScanJob queued = scanJobService.submit(FILE, new FiltersDto());
+    assertThrows(ScanQueueFullException.class, () -> scanJobService.submit(FILE, new FiltersDto()));
+
+    release.countDown();
+    assertEquals(Collections.emptyList(), running.getResult().get(5, TimeUnit.SECONDS));
+    assertEquals(Collections.emptyList(), queued.getResult().get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void submit_error() throws Exception {
+    scanJobService = new ScanJobService(indicatorService, utils, new SimpleMeterRegistry(), 1, 1, 60000);
+    when(utils.retrieveTextFromDocument(any(), any())).thenThrow(new OutOfMemoryError("Java heap space"));
+
+    ScanJob job = scanJobService.submit(FILE, new FiltersDto());
+
+    ExecutionException exception = assertThrows(ExecutionException.class, () -> job.getResult().get(5, TimeUnit.SECONDS));
+    assertTrue(exception.getCause() instanceof OutOfMemoryError);
+    assertEquals(ScanJob.Status.FAILED, job.getStatus());
+  }
+
+  @Test
+  void shutdown_failsQueuedJobs() throws Exception {
+    scanJobService = new ScanJobService(indicatorService, utils, new SimpleMeterRegistry(), 1, 1, 60000);
+    CountDownLatch started = new CountDownLatch(1);
+    when(utils.retrieveTextFromDocument(any(), any())).thenReturn("text");
+    when(indicatorService.scanForIndicators(any(), any(), any())).thenAnswer(invocation -> {
+      started.countDown();
+      Thread.sleep(5_000);
+      return Collections.emptyList();
+    });
+
+    ScanJob running = scanJobService.submit(FILE, new FiltersDto());
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    ScanJob queued = scanJobService.submit(FILE, new FiltersDto());
+    scanJobService.shutdown();
+
+    assertThrows(ExecutionException.class, () -> queued.getResult().get(5, TimeUnit.SECONDS));
+    assertEquals(ScanJob.Status.FAILED, queued.getStatus());
+    assertThrows(ExecutionException.class, () -> running.getResult().get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void getJob_notFound() {
+    scanJobService = new ScanJobService(indicatorService, utils, new SimpleMeterRegistry(), 1, 1, 60000);
+    assertThrows(ScanJobNotFoundException.class, () -> scanJobService.getJob("unknown"));
+  }
+
+  @Test
+  void evictFinishedJobs() throws Exception {
+    scanJobService = new ScanJobService(indicatorService, utils, new SimpleMeterRegistry(), 1, 1, 0);
+    when(utils.retrieveTextFromDocument(any(), any())).thenReturn("text");
+    when(indicatorService.scanForIndicators(any(), any(), any())).thenReturn(Collections.emptyList());
+
+    ScanJob job = scanJobService.submit(FILE, new FiltersDto());
+    job.getResult().get(5, TimeUnit.SECONDS);
+    Thread.sleep(10);
+    scanJobService.evictFinishedJobs();
+
+    assertThrows(ScanJobNotFoundException.class, () -> scanJobService.getJob(job.getId()));
+  }
+}
@@ -0,0 +1,146 @@
+package com.arqaam.logframelab.service.scan;
+
+import com.arqaam.logframelab.controller.dto.FiltersDto;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLScanIndicator;
+import com.arqaam.logframelab.model.MLScanIndicatorResponse.MLSearchResult;
+import com.arqaam.logframelab.model.persistence.Level;
+import com.arqaam.logframelab.service.catalogue.CatalogueChangedEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanResultCacheTest {
+
+  private static final TypeReference<List<MLScanIndicator>> TYPE = new TypeReference<List<MLScanIndicator>>() {};
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private final Supplier<List<MLScanIndicator>> loader = () -> Collections.singletonList(
+      new MLScanIndicator("Indicator " + loads.incrementAndGet(), 1L, new MLSearchResult(80.0)));
+
+  @Test
+  void get() {
+    ScanResultCache cache = cache(10, 60_000, "");
+
+    List<MLScanIndicator> first = cache.get(ScanResultCache.INDICATORS, "agriculture, women", null, TYPE, loader);
+    List<MLScanIndicator> second = cache.get(ScanResultCache.INDICATORS, "  agriculture,\n women ", null, TYPE, loader);
+    cache.get(ScanResultCache.STATEMENTS, "agriculture, women", null, TYPE, loader);
+
+    assertSame(first, second);
+    assertEquals(2, loads.get());
+    assertEquals(1, count("hit"));
+    assertEquals(2, count("miss"));
+  }
+
+  @Test
+  void get_filters() {
+    ScanResultCache cache = cache(10, 60_000, "");
+    FiltersDto filters = filters(1L, 2L);
+
+    cache.get(ScanResultCache.INDICATORS, "agriculture", filters, TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "agriculture", filters(2L, 1L), TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "agriculture", filters(1L), TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "agriculture", null, TYPE, loader);
+
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  void get_catalogueChanged() {
+    ScanResultCache cache = cache(10, 60_000, "");
+
+    cache.get(ScanResultCache.INDICATORS, "agriculture", null, TYPE, loader);
+    cache.onCatalogueChanged(new CatalogueChangedEvent("test"));
+    cache.get(ScanResultCache.INDICATORS, "agriculture", null, TYPE, loader);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void get_expired() throws InterruptedException {
+    ScanResultCache cache = cache(10, 50, "");
+
+    cache.get(ScanResultCache.INDICATORS, "agriculture", null, TYPE, loader);
+    Thread.sleep(100);
+    cache.get(ScanResultCache.INDICATORS, "agriculture", null, TYPE, loader);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void get_evicted() {
+    ScanResultCache cache = cache(2, 60_000, "");
+
+    cache.get(ScanResultCache.INDICATORS, "first", null, TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "second", null, TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "first", null, TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "third", null, TYPE, loader);
+
+    assertEquals(2, cache.size());
+    // The least recently used one was evicted
+    cache.get(ScanResultCache.INDICATORS, "first", null, TYPE, loader);
+    assertEquals(3, loads.get());
+    cache.get(ScanResultCache.INDICATORS, "second", null, TYPE, loader);
+    assertEquals(4, loads.get());
+  }
+
+  @Test
+  void get_spilled(@TempDir Path directory) {
+    ScanResultCache cache = cache(1, 60_000, directory.toString());
+
+    List<MLScanIndicator> first = cache.get(ScanResultCache.INDICATORS, "first", null, TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "second", null, TYPE, loader);
+    List<MLScanIndicator> spilled = cache.get(ScanResultCache.INDICATORS, "first", null, TYPE, loader);
+
+    assertEquals(2, loads.get());
+    assertEquals(first, spilled);
+    assertEquals(1, count("spill-hit"));
+
+    cache.invalidate();
+    cache.get(ScanResultCache.INDICATORS, "second", null, TYPE, loader);
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  void get_spilledBeforeRestart(@TempDir Path directory) throws InterruptedException {
+    ScanResultCache cache = cache(1, 60_000, directory.toString());
+    cache.get(ScanResultCache.INDICATORS, "first", null, TYPE, loader);
+    cache.get(ScanResultCache.INDICATORS, "second", null, TYPE, loader);
+
+    // The catalogue may have changed while the application was down
+    Thread.sleep(5);
+    ScanResultCache restarted = cache(1, 60_000, directory.toString());
+    restarted.get(ScanResultCache.INDICATORS, "first", null, TYPE, loader);
+
+    assertEquals(3, loads.get());
+    assertEquals(3, count("miss"));
+  }
+
+  private ScanResultCache cache(int maxEntries, long ttl, String spillDirectory) {
+    return new ScanResultCache(new ObjectMapper(), meterRegistry, maxEntries, ttl, spillDirectory);
+  }
+
+  private double count(String result) {
+    return meterRegistry.get("logframelab.scan.cache.gets").tag("result", result).counters().stream()
+        .mapToDouble(counter -> counter.count()).sum();
+  }
+
+  private FiltersDto filters(Long... levelIds) {
+    FiltersDto filters = new FiltersDto();
+    for (Long id : levelIds) {
+      filters.getLevel().add(Level.builder().id(id).build());
+    }
+    return filters;
+  }
+}
@@ -0,0 +1,59 @@
+package com.arqaam.logframelab.service.similarity;
+
+import com.arqaam.logframelab.model.MLSimilarIndicatorResponse;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "test")
+@Transactional
+class SimilarityGraphTest {
+
+  @Autowired
+  private SimilarityGraph similarityGraph;
+
+  @Autowired
+  private IndicatorRepository indicatorRepository;
+
+  @Test
+  void replace() {
+    List<Indicator> indicators = indicatorRepository.findAll(PageRequest.of(0, 3)).getContent();
+    Indicator indicator = indicators.get(0);
+    Long firstId = indicator.getId() - 1;
+    assertTrue(similarityGraph.findStaleIndicatorIds(firstId, 1).contains(indicator.getId()));
+
+    similarityGraph.replace(indicator, Arrays.asList(
+        new MLSimilarIndicatorResponse(indicators.get(1).getId(), 0.6),
+        new MLSimilarIndicatorResponse(indicators.get(2).getId(), 0.9),
+        new MLSimilarIndicatorResponse(999_999L, 0.95)));
+
+    assertFalse(similarityGraph.findStaleIndicatorIds(firstId, 1).contains(indicator.getId()));
+    assertEquals(Collections.singleton(indicator.getId()), similarityGraph.findCurrentIndicatorIds(indicators));
+    Map<Long, List<Long>> similarIds = similarityGraph.getSimilarIds(Collections.singleton(indicator.getId()), 0.5);
+    assertEquals(Arrays.asList(indicators.get(2).getId(), indicators.get(1).getId()), similarIds.get(indicator.getId()));
+    assertEquals(Collections.singletonList(indicators.get(2).getId()),
+        similarityGraph.getSimilarIds(Collections.singleton(indicator.getId()), 0.8).get(indicator.getId()));
+    // The edges of the similar indicators are refreshed with the new one
+    assertEquals(Collections.singletonList(indicator.getId()),
+        similarityGraph.getSimilarIds(Collections.singleton(indicators.get(1).getId()), 0.5).get(indicators.get(1).getId()));
+
+    // Renaming the indicator makes its similarity stale again
+    indicator.setName(indicator.getName() + " renamed");
+    indicatorRepository.saveAndFlush(indicator);
+    assertTrue(similarityGraph.findStaleIndicatorIds(firstId, 1).contains(indicator.getId()));
+    assertTrue(similarityGraph.findCurrentIndicatorIds(Collections.singletonList(indicator)).isEmpty());
+  }
+}
@@ -0,0 +1,92 @@
+package com.arqaam.logframelab.service.similarity;
+
+import com.arqaam.logframelab.exception.MLAPIRequestFailedException;
+import com.arqaam.logframelab.model.MLSimilarIndicatorResponse;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.repository.IndicatorRepository;
+import com.arqaam.logframelab.service.MachineLearningService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SimilarityPrecomputeWorkerTest {
+
+  private static final double MIN_THRESHOLD = 0.5;
+
+  @Mock
+  private SimilarityGraph similarityGraph;
+  @Mock
+  private IndicatorRepository indicatorRepository;
+  @Mock
+  private MachineLearningService machineLearningService;
+
+  private SimilarityPrecomputeWorker worker;
+
+  private final List<Indicator> indicators = Arrays.asList(
+      Indicator.builder().id(1L).name("Indicator 1").build(),
+      Indicator.builder().id(2L).name("Indicator 2").build(),
+      Indicator.builder().id(3L).name(" ").build());
+
+  @BeforeEach
+  void setup() {
+    worker = new SimilarityPrecomputeWorker(similarityGraph, indicatorRepository, machineLearningService,
+        new SimpleMeterRegistry(), true, 3, MIN_THRESHOLD);
+  }
+
+  @Test
+  void precompute() {
+    List<MLSimilarIndicatorResponse> similar = Collections.singletonList(new MLSimilarIndicatorResponse(2L, 0.8));
+    when(similarityGraph.findStaleIndicatorIds(0L, 3)).thenReturn(Arrays.asList(1L, 2L, 3L));
+    when(indicatorRepository.findAllByIdIn(Arrays.asList(1L, 2L, 3L))).thenReturn(indicators);
+    when(machineLearningService.getSimilarityScores("Indicator 1", MIN_THRESHOLD)).thenReturn(similar);
+    when(machineLearningService.getSimilarityScores("Indicator 2", MIN_THRESHOLD)).thenReturn(Collections.emptyList());
+
+    assertEquals(3, worker.precompute());
+
+    verify(similarityGraph).replace(indicators.get(0), similar);
+    verify(similarityGraph).replace(indicators.get(1), Collections.emptyList());
+    // Indicators without a name are marked as computed without calling the API
+    verify(similarityGraph).replace(indicators.get(2), Collections.emptyList());
+    verify(machineLearningService, times(2)).getSimilarityScores(any(), any());
+  }
+
+  @Test
+  void precompute_failedIndicatorDoesNotBlockOthers() {
+    when(similarityGraph.findStaleIndicatorIds(0L, 3)).thenReturn(Arrays.asList(1L, 2L));
+    when(indicatorRepository.findAllByIdIn(Arrays.asList(1L, 2L))).thenReturn(indicators.subList(0, 2));
+    when(machineLearningService.getSimilarityScores("Indicator 1", MIN_THRESHOLD)).thenThrow(new MLAPIRequestFailedException());
+    when(machineLearningService.getSimilarityScores("Indicator 2", MIN_THRESHOLD)).thenReturn(Collections.emptyList());
+
+    assertEquals(1, worker.precompute());
+    verify(similarityGraph, never()).replace(eq(indicators.get(0)), any());
+    verify(similarityGraph).replace(indicators.get(1), Collections.emptyList());
+
+    // The next run continues after the batch, and starts over once the end is reached
+    when(similarityGraph.findStaleIndicatorIds(2L, 3)).thenReturn(Collections.emptyList());
+    assertEquals(0, worker.precompute());
+    worker.precompute();
+    verify(similarityGraph, times(2)).findStaleIndicatorIds(0L, 3);
+  }
+
+  @Test
+  void run_disabled() {
+    worker = new SimilarityPrecomputeWorker(similarityGraph, indicatorRepository, machineLearningService,
+        new SimpleMeterRegistry(), false, 3, MIN_THRESHOLD);
+
+    worker.run();
+
+    verifyNoInteractions(similarityGraph, machineLearningService);
+  }
+}
@@ -0,0 +1,175 @@
+package com.arqaam.logframelab.service.similarity;
+
+import com.arqaam.logframelab.exception.MLAPIRequestFailedException;
+import com.arqaam.logframelab.model.SimilarityResponse;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.service.IndicatorService;
+import com.arqaam.logframelab.service.MachineLearningService;
+import com.arqaam.logframelab.service.catalogue.CatalogueSnapshot;
+import com.arqaam.logframelab.service.catalogue.IndicatorCatalogue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SimilarityServiceTest {
+
+  private static final Double THRESHOLD = 0.8;
+
+  @Mock
+  private IndicatorService indicatorService;
+  @Mock
+  private MachineLearningService machineLearningService;
+  @Mock
+  private IndicatorCatalogue indicatorCatalogue;
+  @Mock
+  private SimilarityGraph similarityGraph;
+
+  private SimilarityService similarityService;
+
+  private final List<Indicator> indicators = Arrays.asList(
+      Indicator.builder().id(1L).name("Indicator 1").build(),
+      Indicator.builder().id(2L).name("Indicator 2").build(),
+      Indicator.builder().id(3L).name("Indicator 3").build(),
+      Indicator.builder().id(4L).name("Indicator 4").build());
+
+  @BeforeEach
+  void setup() {
+    similarityService = new SimilarityService(indicatorService, machineLearningService, indicatorCatalogue, similarityGraph, 4, false, 0.5);
+  }
+
+  @AfterEach
+  void tearDown() {
+    similarityService.shutdown();
+  }
+
+  @Test
+  void getSimilarIndicators() {
+    when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators.subList(0, 3));
+    when(machineLearningService.getSimilarIndicators("Indicator 1", THRESHOLD)).thenReturn(Arrays.asList(3L, 4L, 5L));
+    when(machineLearningService.getSimilarIndicators("Indicator 2", THRESHOLD)).thenReturn(Collections.emptyList());
+    when(machineLearningService.getSimilarIndicators("Indicator 3", THRESHOLD)).thenReturn(Collections.singletonList(4L));
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+
+    List<SimilarityResponse> result = similarityService.getSimilarIndicators(THRESHOLD);
+
+    // 5 isn't part of the catalogue, e.g. a temporary indicator, so it is left out as in the streamed responses
+    assertEquals(Arrays.asList(
+        new SimilarityResponse(indicators.get(0), indicators.subList(2, 4)),
+        new SimilarityResponse(indicators.get(1), Collections.emptyList()),
+        new SimilarityResponse(indicators.get(2), Collections.singletonList(indicators.get(3)))), result);
+    verify(indicatorService, never()).getIndicatorWithId(anyList());
+  }
+
+  @Test
+  void getSimilarIndicators_concurrently() throws Exception {
+    CountDownLatch allStarted = new CountDownLatch(indicators.size());
+    when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators);
+    when(machineLearningService.getSimilarIndicators(any(), any())).thenAnswer(invocation -> {
+      allStarted.countDown();
+      // Only returns once every check is running at the same time
+      assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+      return Collections.emptyList();
+    });
+
+    List<SimilarityResponse> result = similarityService.getSimilarIndicators(THRESHOLD);
+
+    assertEquals(indicators, result.stream().map(SimilarityResponse::getIndicator).collect(Collectors.toList()));
+    verify(indicatorService, never()).getIndicatorWithId(any());
+  }
+
+  @Test
+  void getSimilarIndicators_failed() {
+    when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators.subList(0, 1));
+    when(machineLearningService.getSimilarIndicators(any(), any())).thenThrow(new MLAPIRequestFailedException());
+
+    assertThrows(MLAPIRequestFailedException.class, () -> similarityService.getSimilarIndicators(THRESHOLD));
+  }
+
+  @Test
+  void streamSimilarIndicators() {
+    when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators.subList(0, 2));
+    when(machineLearningService.getSimilarIndicators("Indicator 1", THRESHOLD)).thenReturn(Arrays.asList(3L, 5L));
+    when(machineLearningService.getSimilarIndicators("Indicator 2", THRESHOLD)).thenReturn(Collections.singletonList(4L));
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+
+    List<SimilarityResponse> result = new ArrayList<>();
+    similarityService.streamSimilarIndicators(THRESHOLD, result::add);
+
+    assertEquals(2, result.size());
+    Map<Long, List<Long>> similarIds = result.stream().collect(Collectors.toMap(response -> response.getIndicator().getId(),
+        response -> response.getSimilarIndicators().stream().map(Indicator::getId).collect(Collectors.toList())));
+    assertEquals(Collections.singletonList(3L), similarIds.get(1L));
+    assertEquals(Collections.singletonList(4L), similarIds.get(2L));
+    verify(indicatorService, never()).getIndicatorWithId(any());
+  }
+
+  @Test
+  void getSimilarIndicators_precomputed() {
+    similarityService.shutdown();
+    similarityService = new SimilarityService(indicatorService, machineLearningService, indicatorCatalogue, similarityGraph, 4, true, 0.5);
+    List<SimilarityResponse> expected = Arrays.asList(
+        new SimilarityResponse(indicators.get(0), indicators.subList(2, 4)),
+        new SimilarityResponse(indicators.get(1), Collections.emptyList()));
+    when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators.subList(0, 2));
+    when(similarityGraph.findCurrentIndicatorIds(indicators.subList(0, 2))).thenReturn(new HashSet<>(Arrays.asList(1L, 2L)));
+    when(similarityGraph.getSimilarIds(new HashSet<>(Arrays.asList(1L, 2L)), THRESHOLD))
+        .thenReturn(Collections.singletonMap(1L, Arrays.asList(3L, 4L)));
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+
+    assertEquals(expected, similarityService.getSimilarIndicators(THRESHOLD));
+    List<SimilarityResponse> streamed = new ArrayList<>();
+    similarityService.streamSimilarIndicators(THRESHOLD, streamed::add);
+    assertEquals(expected, streamed);
+    verifyNoInteractions(machineLearningService);
+  }
+
+  @Test
+  void getSimilarIndicators_precomputedPending() {
+    similarityService.shutdown();
+    similarityService = new SimilarityService(indicatorService, machineLearningService, indicatorCatalogue, similarityGraph, 4, true, 0.5);
+    when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators.subList(0, 2));
+    // Indicator 2 wasn't processed by the worker yet, or was renamed since
+    when(similarityGraph.findCurrentIndicatorIds(indicators.subList(0, 2))).thenReturn(Collections.singleton(1L));
+    when(similarityGraph.getSimilarIds(Collections.singleton(1L), THRESHOLD))
+        .thenReturn(Collections.singletonMap(1L, Collections.singletonList(3L)));
+    when(machineLearningService.getSimilarIndicators("Indicator 2", THRESHOLD)).thenReturn(Collections.singletonList(4L));
+    when(indicatorCatalogue.getSnapshot()).thenReturn(CatalogueSnapshot.of(1L, indicators));
+    List<SimilarityResponse> expected = Arrays.asList(
+        new SimilarityResponse(indicators.get(0), Collections.singletonList(indicators.get(2))),
+        new SimilarityResponse(indicators.get(1), Collections.singletonList(indicators.get(3))));
+
+    assertEquals(expected, similarityService.getSimilarIndicators(THRESHOLD));
+    List<SimilarityResponse> streamed = new ArrayList<>();
+    similarityService.streamSimilarIndicators(THRESHOLD, streamed::add);
+    assertEquals(expected, streamed);
+    verify(machineLearningService, times(2)).getSimilarIndicators(any(), any());
+    verify(machineLearningService, never()).getSimilarIndicators("Indicator 1", THRESHOLD);
+  }
+
+  @Test
+  void getSimilarIndicators_belowPrecomputedThreshold() {
+    similarityService.shutdown();
+    similarityService = new SimilarityService(indicatorService, machineLearningService, indicatorCatalogue, similarityGraph, 4, true, 0.5);
+    when(indicatorService.getIndicatorsWithSimilarity(false)).thenReturn(indicators.subList(0, 1));
+    when(machineLearningService.getSimilarIndicators("Indicator 1", 0.3)).thenReturn(Collections.emptyList());
+
+    List<SimilarityResponse> result = similarityService.getSimilarIndicators(0.3);
+
+    assertEquals(Collections.singletonList(new SimilarityResponse(indicators.get(0), Collections.emptyList())), result);
+    verifyNoInteractions(similarityGraph);
+  }
+}
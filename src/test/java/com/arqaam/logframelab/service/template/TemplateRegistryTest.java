@@ -0,0 +1,64 @@
+package com.arqaam.logframelab.service.template;
+
+import com.arqaam.logframelab.util.Constants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateRegistryTest {
+
+  private static final String WORD_TEMPLATE = TemplateRegistry.templateName(Constants.WORD_FORMAT, Constants.WORD_FILE_EXTENSION);
+
+  private SimpleMeterRegistry meterRegistry;
+  private TemplateRegistry templateRegistry;
+
+  @BeforeEach
+  void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    templateRegistry = new TemplateRegistry(meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    templateRegistry.shutdown();
+  }
+
+  @Test
+  void getBytes() throws IOException {
+    byte[] expected = new ClassPathResource(WORD_TEMPLATE).getInputStream().readAllBytes();
+    assertArrayEquals(expected, templateRegistry.getBytes(WORD_TEMPLATE));
+  }
+
+  @Test
+  void getBytes_notFound() {
+    assertThrows(IOException.class, () -> templateRegistry.getBytes("NOT_A_Template.docx"));
+  }
+
+  @Test
+  void getWordDocument_returnsDistinctCopies() throws IOException {
+    XWPFDocument first = templateRegistry.getWordDocument(WORD_TEMPLATE);
+    XWPFDocument second = templateRegistry.getWordDocument(WORD_TEMPLATE);
+
+    assertNotSame(first, second);
+    assertFalse(first.getTables().isEmpty());
+    assertEquals(first.getTables().size(), second.getTables().size());
+  }
+
+  @Test
+  void getWordDocument_usesPreParsedCopy() throws Exception {
+    templateRegistry.load();
+    // Wait for the background parse of the pool
+    for (int i = 0; i < 100 && meterRegistry.find("logframelab.export.template.parse.saved").timer() == null; i++) {
+      templateRegistry.getWordDocument(WORD_TEMPLATE);
+      Thread.sleep(50);
+    }
+    assertNotNull(meterRegistry.find("logframelab.export.template.parse.saved").tag("template", WORD_TEMPLATE).timer());
+  }
+}
@@ -0,0 +1,78 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import com.arqaam.logframelab.model.persistence.*;
+import com.arqaam.logframelab.repository.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "test")
+@Transactional
+class IndicatorBatchWriterTest {
+
+  @Autowired
+  private IndicatorBatchWriter batchWriter;
+
+  @Autowired
+  private IndicatorRepository indicatorRepository;
+
+  @Autowired
+  private LevelRepository levelRepository;
+
+  @Autowired
+  private SourceRepository sourceRepository;
+
+  @Autowired
+  private SDGCodeRepository sdgCodeRepository;
+
+  @Autowired
+  private CRSCodeRepository crsCodeRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void saveAll() {
+    Level level = levelRepository.findAll().get(0);
+    Set<Source> sources = new HashSet<>(sourceRepository.findAll().subList(0, 2));
+    Set<SDGCode> sdgCodes = Collections.singleton(sdgCodeRepository.findAll().get(0));
+    Set<CRSCode> crsCodes = Collections.singleton(crsCodeRepository.findAll().get(0));
+    long indicatorsBefore = indicatorRepository.count();
+    List<Indicator> indicators = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      indicators.add(Indicator.builder().name("Batched indicator " + i).level(level).sector("Batch")
+          .source(sources).sdgCode(sdgCodes).crsCode(crsCodes).build());
+    }
+
+    List<Indicator> saved = batchWriter.saveAll(indicators);
+
+    Set<Long> ids = saved.stream().map(Indicator::getId).collect(Collectors.toSet());
+    assertEquals(120, ids.size());
+    assertFalse(ids.contains(null));
+    assertEquals(indicatorsBefore + 120, indicatorRepository.count());
+    assertEquals(240, countRows("INDICATOR_SOURCE", ids));
+    assertEquals(120, countRows("INDICATOR_SDG_CODE", ids));
+    assertEquals(120, countRows("INDICATOR_CRS_CODE", ids));
+    assertEquals("Batched indicator 7", indicatorRepository.findById(saved.get(7).getId()).map(Indicator::getName).orElse(null));
+
+    // Indicators stored one by one keep getting ids from the same blocks
+    Indicator single = indicatorRepository.saveAndFlush(Indicator.builder().name("Single indicator").level(level).build());
+    assertFalse(ids.contains(single.getId()));
+  }
+
+  private long countRows(String table, Set<Long> ids) {
+    String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(","));
+    Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE INDICATOR_ID IN (" + placeholders + ")",
+        Long.class, ids.toArray());
+    return count == null ? 0 : count;
+  }
+}
@@ -0,0 +1,132 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import com.arqaam.logframelab.model.ImportSummary;
+import com.arqaam.logframelab.model.persistence.Indicator;
+import com.arqaam.logframelab.model.persistence.SDGCode;
+import com.arqaam.logframelab.model.persistence.Source;
+import com.arqaam.logframelab.repository.*;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "test")
+@Transactional
+class IndicatorDiffImporterTest {
+
+  @Autowired
+  private IndicatorDiffImporter diffImporter;
+
+  @Autowired
+  private IndicatorRepository indicatorRepository;
+
+  @Autowired
+  private IndicatorContentHashRepository contentHashRepository;
+
+  @Autowired
+  private LevelRepository levelRepository;
+
+  @Autowired
+  private SourceRepository sourceRepository;
+
+  @Autowired
+  private SDGCodeRepository sdgCodeRepository;
+
+  private String level;
+  private Source source;
+  private SDGCode sdgCode;
+
+  @BeforeEach
+  void setUp() {
+    level = levelRepository.findAll().get(0).getName();
+    source = sourceRepository.findAll().get(0);
+    sdgCode = sdgCodeRepository.findAll().get(0);
+  }
+
+  @Test
+  void importChanges() throws IOException {
+    ImportSummary first = diffImporter.importChanges(worksheet(new String[][]{
+        {"Diff indicator one", "First description"},
+        {"Diff indicator two", "Second description"},
+        {"Diff indicator three", "Third description"}}), false);
+
+    assertEquals(3, first.getInserted());
+    assertEquals(0, first.getUpdated());
+    assertEquals(0, first.getSkipped());
+    Indicator one = indicator("Diff indicator one");
+    Indicator two = indicator("Diff indicator two");
+    Indicator three = indicator("Diff indicator three");
+    assertEquals(Collections.singleton(source), one.getSource());
+    assertTrue(contentHashRepository.existsById(one.getId()));
+    two.setTimesDownloaded(7L);
+    indicatorRepository.saveAndFlush(two);
+
+    ImportSummary second = diffImporter.importChanges(worksheet(new String[][]{
+        {"Diff indicator one", "First description"},
+        {" DIFF INDICATOR TWO", "Changed description"},
+        {"Diff indicator four", "Fourth description"},
+        {"Diff indicator one", "Repeated row"}}), true);
+
+    assertEquals(1, second.getInserted());
+    assertEquals(1, second.getUpdated());
+    assertEquals(2, second.getSkipped());
+    assertTrue(second.getRemoved() >= 1);
+    Indicator updated = indicatorRepository.findById(two.getId()).orElseThrow();
+    assertEquals("Changed description", updated.getDescription());
+    assertEquals(7L, updated.getTimesDownloaded());
+    assertEquals("First description", indicatorRepository.findById(one.getId()).orElseThrow().getDescription());
+    assertFalse(indicatorRepository.existsById(three.getId()));
+    assertFalse(contentHashRepository.existsById(three.getId()));
+    assertNotNull(indicator("Diff indicator four"));
+
+    ImportSummary third = diffImporter.importChanges(worksheet(new String[][]{
+        {"Diff indicator one", "First description"},
+        {"DIFF INDICATOR TWO", "Changed description"},
+        {"Diff indicator four", "Fourth description"}}), true);
+
+    assertEquals(0, third.getInserted());
+    assertEquals(0, third.getUpdated());
+    assertEquals(3, third.getSkipped());
+    assertEquals(0, third.getRemoved());
+  }
+
+  private Indicator indicator(String name) {
+    List<Indicator> indicators = indicatorRepository.findAllByNameIn(Collections.singleton(name));
+    assertEquals(1, indicators.size());
+    return indicators.get(0);
+  }
+
+  private MockMultipartFile worksheet(String[][] rows) throws IOException {
+    try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+      XSSFSheet sheet = workbook.createSheet("Indicators");
+      sheet.createRow(0).createCell(3).setCellValue("Name");
+      for (int i = 0; i < rows.length; i++) {
+        XSSFRow row = sheet.createRow(i + 1);
+        row.createCell(0).setCellValue(level);
+        row.createCell(1).setCellValue("Diff");
+        row.createCell(2).setCellValue("diff, import");
+        row.createCell(3).setCellValue(rows[i][0]);
+        row.createCell(4).setCellValue(rows[i][1]);
+        row.createCell(5).setCellValue(source.getName());
+        row.createCell(6).setCellValue("Yes");
+        row.createCell(8).setCellValue(sdgCode.getId());
+      }
+      workbook.write(output);
+      return new MockMultipartFile("Indicators.xlsx", "Indicators.xlsx", null, output.toByteArray());
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorksheetReaderTest {
+
+  @Test
+  void read() throws IOException {
+    List<WorksheetRow> rows = new ArrayList<>();
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      XSSFSheet sheet = workbook.createSheet("Indicators");
+      sheet.createRow(0).createCell(0).setCellValue("Level");
+      XSSFRow row = sheet.createRow(3);
+      row.createCell(0).setCellValue("OUTPUT");
+      row.createCell(2).setCellValue(12345);
+      row.createCell(3).setCellValue(true);
+      CellStyle style = workbook.createCellStyle();
+      row.createCell(5).setCellStyle(style);
+      workbook.createSheet("Other").createRow(0).createCell(0).setCellValue("Ignored");
+
+      WorksheetReader.read(new ByteArrayInputStream(write(workbook)), rows::add);
+    }
+
+    assertEquals(2, rows.size());
+    assertEquals(1, rows.get(0).getNumber());
+    assertEquals("Level", rows.get(0).getString(0));
+    WorksheetRow row = rows.get(1);
+    assertEquals(2, row.getNumber());
+    assertEquals("OUTPUT", row.getString(0));
+    assertFalse(row.hasCell(1));
+    assertEquals("", row.getString(1));
+    assertEquals("12345", row.getCode(2));
+    assertEquals("TRUE", row.getString(3));
+    assertTrue(row.hasCell(5));
+    assertEquals("", row.getString(5));
+    assertFalse(row.hasCell(20));
+  }
+
+  @Test
+  void read_consumerFails() throws IOException {
+    try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+      XSSFSheet sheet = workbook.createSheet();
+      sheet.createRow(0).createCell(0).setCellValue("Level");
+      sheet.createRow(1).createCell(0).setCellValue("OUTPUT");
+      byte[] content = write(workbook);
+
+      List<Integer> rows = new ArrayList<>();
+      assertThrows(IllegalStateException.class, () -> WorksheetReader.read(new ByteArrayInputStream(content), row -> {
+        rows.add(row.getNumber());
+        throw new IllegalStateException();
+      }));
+      assertEquals(List.of(1), rows);
+    }
+  }
+
+  @Test
+  void read_notWorksheet() {
+    assertThrows(IOException.class, () -> WorksheetReader.read(
+        new ByteArrayInputStream("Not a worksheet".getBytes(StandardCharsets.UTF_8)), row -> {}));
+  }
+
+  private static byte[] write(XSSFWorkbook workbook) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    workbook.write(outputStream);
+    return outputStream.toByteArray();
+  }
+}
@@ -0,0 +1,46 @@
+package com.arqaam.logframelab.service.worksheet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WorksheetTextTest {
+
+  @Test
+  void clean() {
+    assertEquals("Number of people", WorksheetText.clean("\u00a0 Number of \tpeople\u200b\n "));
+    assertEquals("Proportion of women", WorksheetText.clean("Proportion\\x41 of\\n women"));
+    assertEquals("Caf", WorksheetText.clean("Café"));
+  }
+
+  @Test
+  void clean_sameAsRegexes() {
+    String alphabet = "\\\\xxnnA4f9g ,\t\r\n\u0000\u007fé ​ ";
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(12);
+      for (int j = 0; j < length; j++) {
+        text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      assertEquals(cleanWithRegexes(text.toString()), WorksheetText.clean(text.toString()), text.toString());
+    }
+  }
+
+  /**
+   * Previous implementation, kept as the reference
+   */
+  private static String cleanWithRegexes(String text) {
+    text = text.replaceAll("[^\\x00-\\x7F]", "");
+    text = text.replaceAll("[\\p{Cntrl}&&[^\r\n\t]]", "");
+    text = text.replaceAll("\\p{C}", "");
+    text = text.replaceAll("[^ -~]", "");
+    text = text.replaceAll("[^\\p{ASCII}]", "");
+    text = text.replaceAll("\\\\x\\p{XDigit}{2}", "");
+    text = text.replaceAll("\\\\n", "");
+    text = text.replaceAll("[^\\x20-\\x7e]", "");
+    return text.trim();
+  }
+}
@@ -0,0 +1,138 @@
+package com.arqaam.logframelab.service.worldbank;
+
+import com.arqaam.logframelab.exception.WorldBankAPIRequestFailedException;
+import com.arqaam.logframelab.model.persistence.WorldBankSeries;
+import com.arqaam.logframelab.repository.WorldBankSeriesRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WorldBankSeriesCacheTest {
+
+  @Mock
+  private WorldBankSeriesRepository repository;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger loads = new AtomicInteger();
+  private WorldBankSeriesCache cache;
+
+  private final Supplier<Map<String, String>> loader = () -> {
+    loads.incrementAndGet();
+    Map<String, String> series = new LinkedHashMap<>();
+    series.put("2019", "90.5");
+    series.put("2018", "89.1");
+    return series;
+  };
+
+  @AfterEach
+  void tearDown() {
+    if (cache != null) {
+      cache.shutdown();
+    }
+  }
+
+  @Test
+  void get() {
+    cache = cache(10, 60_000);
+
+    Map<String, String> first = cache.get("nzl", "EG.CFT.ACCS.ZS", loader);
+    Map<String, String> second = cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+
+    assertSame(first, second);
+    assertEquals(Arrays.asList("2019", "2018"), new ArrayList<>(first.keySet()));
+    assertEquals(1, loads.get());
+    ArgumentCaptor<WorldBankSeries> stored = ArgumentCaptor.forClass(WorldBankSeries.class);
+    verify(repository).save(stored.capture());
+    assertEquals("NZL", stored.getValue().getCountryId());
+    assertEquals("{\"2019\":\"90.5\",\"2018\":\"89.1\"}", stored.getValue().getSeries());
+    assertEquals(1, count("memory"));
+    assertEquals(1, count("miss"));
+  }
+
+  @Test
+  void get_stored() {
+    cache = cache(10, 60_000);
+    when(repository.findById(new WorldBankSeries.Key("NZL", "EG.CFT.ACCS.ZS"))).thenReturn(Optional.of(
+        new WorldBankSeries("NZL", "EG.CFT.ACCS.ZS", "{\"2017\":\"88.0\"}", new Date())));
+
+    Map<String, String> series = cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+    cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+
+    assertEquals(Collections.singletonMap("2017", "88.0"), series);
+    assertEquals(0, loads.get());
+    verify(repository, times(1)).findById(any());
+    assertEquals(1, count("database"));
+    assertEquals(1, count("memory"));
+  }
+
+  @Test
+  void get_evicted() {
+    cache = cache(1, 60_000);
+
+    cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+    cache.get("PRT", "EG.CFT.ACCS.ZS", loader);
+    cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+
+    assertEquals(1, cache.size());
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  void get_staleRefreshedInBackground() throws InterruptedException {
+    cache = cache(10, 0);
+    Map<String, String> first = cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+
+    Map<String, String> stale = cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+
+    assertSame(first, stale);
+    verify(repository, timeout(5_000).times(2)).save(any());
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void get_staleKeptWhenApiFails() {
+    cache = cache(10, 0);
+    Map<String, String> first = cache.get("NZL", "EG.CFT.ACCS.ZS", loader);
+
+    Supplier<Map<String, String>> failing = () -> {
+      loads.incrementAndGet();
+      throw new WorldBankAPIRequestFailedException();
+    };
+    assertSame(first, cache.get("NZL", "EG.CFT.ACCS.ZS", failing));
+    verify(repository, after(200).times(1)).save(any());
+    assertEquals(2, loads.get());
+    assertSame(first, cache.get("NZL", "EG.CFT.ACCS.ZS", failing));
+  }
+
+  @Test
+  void get_apiFailsWithoutSeries() {
+    cache = cache(10, 60_000);
+
+    assertThrows(WorldBankAPIRequestFailedException.class, () -> cache.get("NZL", "EG.CFT.ACCS.ZS", () -> {
+      throw new WorldBankAPIRequestFailedException();
+    }));
+    verify(repository, never()).save(any());
+  }
+
+  private WorldBankSeriesCache cache(int maxEntries, long ttl) {
+    return new WorldBankSeriesCache(repository, new ObjectMapper(), meterRegistry, maxEntries, ttl);
+  }
+
+  private double count(String result) {
+    return meterRegistry.counter("logframelab.world-bank.cache.gets", "result", result).count();
+  }
+}
@@ -0,0 +1,51 @@
+package com.arqaam.logframelab.util;
+
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compares the streaming text extraction of .docx files with POI's extractor, which parses the whole document.
+ * Run with <code>mvn test -Dtest=DocumentTextExtractionBenchmarkTest -Dbenchmark=true</code>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class DocumentTextExtractionBenchmarkTest {
+
+  private static final int[] PARAGRAPHS = {10_000, 100_000, 500_000};
+
+  @Test
+  void extractText() throws Exception {
+    for (int paragraphs : PARAGRAPHS) {
+      byte[] content = docx(paragraphs);
+
+      HeapBenchmark.Result streaming = HeapBenchmark.measure(() -> DocxTextExtractor.extractText(new ByteArrayInputStream(content)));
+      HeapBenchmark.Result poi = HeapBenchmark.measure(() -> {
+        try (XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(new ByteArrayInputStream(content)))) {
+          extractor.getText();
+        }
+      });
+
+      String scenario = "paragraphs=" + paragraphs + " size=" + (content.length >> 20) + " MB";
+      HeapBenchmark.report(scenario, "streaming", streaming);
+      HeapBenchmark.report(scenario, "POI", poi);
+    }
+  }
+
+  private byte[] docx(int paragraphs) throws IOException {
+    try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      for (int i = 0; i < paragraphs; i++) {
+        XWPFParagraph paragraph = document.createParagraph();
+        paragraph.createRun().setText("Number of people receiving assistance through EU support " + i + ". ");
+        paragraph.createRun().setText("Proportion of the population with access to basic services, disaggregated by sex.");
+      }
+      document.write(outputStream);
+      return outputStream.toByteArray();
+    }
+  }
+}
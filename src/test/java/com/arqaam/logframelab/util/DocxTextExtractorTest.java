@@ -0,0 +1,112 @@
+package com.arqaam.logframelab.util;
+
+import com.arqaam.logframelab.exception.FailedToOpenFileException;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocxTextExtractorTest {
+
+  private final Utils utils = new Utils();
+
+  @Test
+  void extractText() throws IOException {
+    byte[] content = read("test_doc.docx");
+    String expected;
+    try (XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(new ByteArrayInputStream(content)))) {
+      expected = extractor.getText();
+    }
+
+    String text = DocxTextExtractor.extractText(new ByteArrayInputStream(content));
+
+    // The POI extractor adds the footnotes, headers and footers, which are left out here
+    assertFalse(text.isBlank());
+    String normalizedExpected = normalize(expected.replaceAll("\\[footnoteRef:\\d+]|\\[\\d+: [^\\]]*]", ""));
+    text.lines().map(DocxTextExtractorTest::normalize).filter(line -> !line.isEmpty())
+        .forEach(line -> assertTrue(normalizedExpected.contains(line), line));
+  }
+
+  @Test
+  void extractText_runsAndAlternateContent() throws IOException {
+    byte[] content = docx("<w:body>"
+        + "<w:p><w:r><w:t>Number of </w:t></w:r><w:r><w:t xml:space=\"preserve\">people</w:t><w:tab/><w:t>reached</w:t></w:r></w:p>"
+        + "<w:p><w:r><w:t>First line</w:t><w:br/><w:t>Second line</w:t></w:r><w:r><w:delText>Deleted</w:delText></w:r></w:p>"
+        + "<w:p><w:r><mc:AlternateContent><mc:Choice Requires=\"wps\"><w:txbxContent><w:p><w:r><w:t>Text box</w:t></w:r></w:p>"
+        + "</w:txbxContent></mc:Choice><mc:Fallback><w:txbxContent><w:p><w:r><w:t>Text box</w:t></w:r></w:p></w:txbxContent>"
+        + "</mc:Fallback></mc:AlternateContent></w:r></w:p>"
+        + "</w:body>");
+
+    String text = DocxTextExtractor.extractText(new ByteArrayInputStream(content));
+
+    assertEquals("Number of people\treached\nFirst line\nSecond line\nText box\n\n", text);
+  }
+
+  @Test
+  void extractText_tabStops() throws IOException {
+    byte[] content = docx("<w:body>"
+        + "<w:p><w:pPr><w:tabs><w:tab w:val=\"left\" w:pos=\"2880\"/><w:tab w:val=\"right\" w:pos=\"9360\"/></w:tabs></w:pPr>"
+        + "<w:r><w:rPr><w:b/></w:rPr><w:t>Baseline</w:t></w:r><w:r><w:tab/><w:t>2020</w:t></w:r></w:p>"
+        + "</w:body>");
+
+    String text = DocxTextExtractor.extractText(new ByteArrayInputStream(content));
+
+    // Only the tab of the run is text, the ones of the paragraph properties are tab stops
+    assertEquals("Baseline\t2020\n", text);
+  }
+
+  @Test
+  void extractText_notDocx() {
+    assertThrows(IOException.class, () -> DocxTextExtractor.extractText(
+        new ByteArrayInputStream("Not a word document".getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @Test
+  void retrieveTextFromDocument_detectsFormatByContent() throws IOException {
+    String docx = utils.retrieveTextFromDocument("test_doc.doc", read("test_doc.docx"));
+    String doc = utils.retrieveTextFromDocument("test doc.docx", read("test doc.doc"));
+
+    assertFalse(docx.isBlank());
+    assertFalse(doc.isBlank());
+  }
+
+  @Test
+  void retrieveTextFromDocument_notWord() {
+    assertThrows(FailedToOpenFileException.class, () -> utils.retrieveTextFromDocument("test_doc.docx",
+        "Not a word document".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static byte[] read(String name) throws IOException {
+    try (InputStream inputStream = new ClassPathResource(name).getInputStream()) {
+      return inputStream.readAllBytes();
+    }
+  }
+
+  private static byte[] docx(String body) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(outputStream)) {
+      zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+      zip.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\"/>".getBytes(StandardCharsets.UTF_8));
+      zip.putNextEntry(new ZipEntry("word/document.xml"));
+      zip.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+          + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\""
+          + " xmlns:mc=\"http://schemas.openxmlformats.org/markup-compatibility/2006\">" + body + "</w:document>")
+          .getBytes(StandardCharsets.UTF_8));
+    }
+    return outputStream.toByteArray();
+  }
+
+  private static String normalize(String text) {
+    return text.trim().replaceAll("\\s+", " ");
+  }
+}
@@ -0,0 +1,75 @@
+package com.arqaam.logframelab.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time and the peak heap used by a task, for the benchmarks run with <code>-Dbenchmark=true</code>.
+ * The heap is sampled every few milliseconds, so the peak is an estimate.
+ */
+public final class HeapBenchmark {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HeapBenchmark.class);
+  private static final long SAMPLE_INTERVAL = 5;
+
+  private HeapBenchmark() {}
+
+  /**
+   * Runs the task after a garbage collection, sampling the heap while it runs
+   * @param task Task to be measured
+   * @return Time taken and peak heap used above the heap used before the task
+   */
+  public static Result measure(Task task) throws Exception {
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    long baseline = runtime.totalMemory() - runtime.freeMemory();
+    AtomicLong peak = new AtomicLong(baseline);
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread sampler = new Thread(() -> {
+      while (running.get()) {
+        peak.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+        try {
+          Thread.sleep(SAMPLE_INTERVAL);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    });
+    sampler.start();
+    long start = System.nanoTime();
+    try {
+      task.run();
+    } finally {
+      running.set(false);
+      sampler.join();
+    }
+    return new Result((System.nanoTime() - start) / 1_000_000, peak.get() - baseline);
+  }
+
+  /**
+   * Logs the results of the implementations compared in a scenario
+   * @param scenario Size of the input, e.g. "rows=1000"
+   * @param name Implementation measured
+   * @param result Result of {@link #measure(Task)}
+   */
+  public static void report(String scenario, String name, Result result) {
+    LOGGER.info("{} {}: {} ms, peak heap {} MB", scenario, name, result.millis, result.peakHeap >> 20);
+  }
+
+  public interface Task {
+    void run() throws Exception;
+  }
+
+  public static final class Result {
+    public final long millis;
+    public final long peakHeap;
+
+    private Result(long millis, long peakHeap) {
+      this.millis = millis;
+      this.peakHeap = peakHeap;
+    }
+  }
+}
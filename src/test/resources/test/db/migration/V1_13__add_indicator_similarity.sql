@@ -0,0 +1,19 @@
+CREATE TABLE IF NOT EXISTS `INDICATOR_SIMILARITY` (
+  `INDICATOR_ID` INT NOT NULL,
+  `SIMILAR_ID` INT NOT NULL,
+  `SCORE` DOUBLE NOT NULL,
+  PRIMARY KEY (`INDICATOR_ID`, `SIMILAR_ID`),
+  CONSTRAINT `FK_INDICATOR_SIMILARITY_INDICATOR` FOREIGN KEY (`INDICATOR_ID`) REFERENCES `IND_INDICATOR` (`ID`) ON DELETE CASCADE,
+  CONSTRAINT `FK_INDICATOR_SIMILARITY_SIMILAR` FOREIGN KEY (`SIMILAR_ID`) REFERENCES `IND_INDICATOR` (`ID`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE INDEX `IDX_INDICATOR_SIMILARITY_SCORE` ON `INDICATOR_SIMILARITY` (`INDICATOR_ID`, `SCORE`);
+
+-- Name of the indicator when its similarity was computed. Indicators without a row, or whose name changed, are stale
+CREATE TABLE IF NOT EXISTS `INDICATOR_SIMILARITY_STATE` (
+  `INDICATOR_ID` INT NOT NULL,
+  `NAME` VARCHAR(350),
+  `COMPUTED_AT` TIMESTAMP NOT NULL,
+  PRIMARY KEY (`INDICATOR_ID`),
+  CONSTRAINT `FK_INDICATOR_SIMILARITY_STATE_INDICATOR` FOREIGN KEY (`INDICATOR_ID`) REFERENCES `IND_INDICATOR` (`ID`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
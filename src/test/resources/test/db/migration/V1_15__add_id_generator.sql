@@ -0,0 +1,9 @@
+-- Ids of the indicators are allocated in blocks from this table, so Hibernate can batch their inserts.
+-- The next id starts after the ones already given by AUTO_INCREMENT
+CREATE TABLE IF NOT EXISTS `ID_GENERATOR` (
+  `SEQUENCE_NAME` VARCHAR(100) NOT NULL,
+  `NEXT_VAL` BIGINT NOT NULL,
+  PRIMARY KEY (`SEQUENCE_NAME`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO `ID_GENERATOR` (`SEQUENCE_NAME`, `NEXT_VAL`) SELECT 'IND_INDICATOR', COALESCE(MAX(`ID`), 0) + 1 FROM `IND_INDICATOR`;